@@ -0,0 +1,122 @@
+package com.example.weather.api.controller;
+
+import com.example.weather.api.service.BenchmarkApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test over HTTP: many concurrent clients sending single-reading
+ * ingests and latest-data queries, with request handling on Tomcat's
+ * platform-thread pool ({@code virtualThreads=false}, the default setup)
+ * and on virtual threads.
+ *
+ * <p>Every JMH thread is one client with its own sensor; raise the number of
+ * concurrent connections with {@code -t}, e.g.
+ * {@code -Djmh.args="VirtualThreadLoadBenchmark -t 1000"}. Start the JVM with
+ * {@code -Djdk.tracePinnedThreads=short} (via {@code -jvmArgsAppend}) to have
+ * any pinned virtual thread reported.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(400)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VirtualThreadLoadBenchmark {
+
+    @Param({"false", "true"})
+    boolean virtualThreads;
+
+    @Param({"10"})
+    int poolSize;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI ingest;
+    private URI query;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApplication.startServer(
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "weather.telemetry.slow-query=0");
+        String base = "http://localhost:" + BenchmarkApplication.port(context) + "/api/metrics";
+        ingest = URI.create(base + "/ingest");
+        query = URI.create(base + "/query");
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        client.close();
+        context.close();
+    }
+
+    /**
+     * One client connection.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        String sensorId;
+
+        @Setup(Level.Trial)
+        public void name(ThreadParams thread) {
+            sensorId = "load-" + thread.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public int ingest(Client client) throws IOException, InterruptedException {
+        return send(ingest, """
+                {"sensorId":"%s","metric":"TEMPERATURE","value":21.5,"timestamp":"%s"}"""
+                .formatted(client.sensorId, Instant.now()), 201);
+    }
+
+    @Benchmark
+    public int queryLatest(Client client) throws IOException, InterruptedException {
+        return send(query, """
+                {"sensorIds":["%s"],"metrics":["TEMPERATURE"],"statistic":"AVG"}"""
+                .formatted(client.sensorId), 200);
+    }
+
+    private int send(URI uri, String json, int expected) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != expected) {
+            throw new IllegalStateException(uri + " answered " + status);
+        }
+        return status;
+    }
+}
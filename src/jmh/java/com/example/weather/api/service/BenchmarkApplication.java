@@ -0,0 +1,52 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.WeatherSensorApiApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Starts the application on its own in-memory database, so every benchmark
+ * fork measures a fresh instance.
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Without a web server, for benchmarks that call the services directly.
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * With Tomcat on a random port, see {@link #port}.
+     */
+    public static ConfigurableApplicationContext startServer(String... properties) {
+        List<String> all = new ArrayList<>(List.of("server.port=0"));
+        all.addAll(List.of(properties));
+        return run(WebApplicationType.SERVLET, all.toArray(String[]::new));
+    }
+
+    public static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType type, String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "logging.level.root=WARN"));
+        all.addAll(List.of(properties));
+        return new SpringApplicationBuilder(WeatherSensorApiApplication.class)
+                .web(type)
+                .properties(all.toArray(String[]::new))
+                .run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MetricIngestionService#ingest} (one reading per transaction) against
+ * {@link MetricIngestionService#ingestAll} (one batch per transaction), on top
+ * of an already loaded fleet. Both are reported per reading.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricIngestionBenchmark {
+
+    static final int BATCH_SIZE = 500;
+
+    @Param({"10", "1000"})
+    int sensors;
+
+    @Param({"100"})
+    int readingsPerSeries;
+
+    @Param({"1", "3"})
+    int metrics;
+
+    private ConfigurableApplicationContext context;
+    private MetricIngestionService ingestionService;
+    private SyntheticFleet fleet;
+    private long sequence;
+    private List<MetricIngestionRequest> batch;
+
+    @Setup(Level.Trial)
+    public void load() {
+        context = BenchmarkApplication.start();
+        ingestionService = context.getBean(MetricIngestionService.class);
+        fleet = new SyntheticFleet(sensors, readingsPerSeries, metrics);
+        List<MetricIngestionRequest> readings = fleet.readings();
+        for (int start = 0; start < readings.size(); start += 10_000) {
+            ingestionService.ingestAll(readings.subList(start, Math.min(readings.size(), start + 10_000)));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        // generated outside the measured call
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(fleet.next(sequence++));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public void single() {
+        ingestionService.ingest(batch.get(0));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batch() {
+        ingestionService.ingestAll(batch);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.dto.MetricQueryRequest;
+import com.example.weather.api.dto.MetricStatisticResponse;
+import com.example.weather.api.enums.StatisticType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MetricQueryService#query(MetricQueryRequest)} over a synthetic fleet,
+ * in latest-data and range mode, with each storage engine.
+ *
+ * <p>The result cache is off, so every invocation runs the engine; the
+ * latest-value index stays on, as in production.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricQueryBenchmark {
+
+    @Param({"10", "100"})
+    int sensors;
+
+    @Param({"100", "1000"})
+    int readingsPerSeries;
+
+    @Param({"1", "3"})
+    int metrics;
+
+    @Param({"jpa", "columnar"})
+    String engine;
+
+    private ConfigurableApplicationContext context;
+    private MetricQueryService queryService;
+    private MetricQueryRequest latest;
+    private MetricQueryRequest range;
+
+    @Setup(Level.Trial)
+    public void load() {
+        context = BenchmarkApplication.start(
+                "weather.query.engine=" + engine,
+                "weather.query.cache.enabled=false");
+        queryService = context.getBean(MetricQueryService.class);
+
+        SyntheticFleet fleet = new SyntheticFleet(sensors, readingsPerSeries, metrics);
+        MetricIngestionService ingestionService = context.getBean(MetricIngestionService.class);
+        List<MetricIngestionRequest> readings = fleet.readings();
+        for (int start = 0; start < readings.size(); start += 10_000) {
+            ingestionService.ingestAll(readings.subList(start, Math.min(readings.size(), start + 10_000)));
+        }
+
+        latest = new MetricQueryRequest(fleet.sensorIds(), fleet.metrics(), StatisticType.AVG, null, null);
+        range = new MetricQueryRequest(fleet.sensorIds(), fleet.metrics(), StatisticType.AVG,
+                fleet.from(), fleet.to());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MetricStatisticResponse> latest() {
+        return queryService.query(latest);
+    }
+
+    @Benchmark
+    public List<MetricStatisticResponse> range() {
+        return queryService.query(range);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.aggregation.ScaledAccumulator;
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.StatisticType;
+import com.example.weather.api.repository.MetricAggregate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code MetricQueryService.computeStatistic} for every {@link StatisticType},
+ * on one group of a synthetic series. No database or Spring context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticBenchmark {
+
+    // every constant when no values are given
+    @Param
+    StatisticType statistic;
+
+    @Param({"100", "10000"})
+    int readings;
+
+    private MetricAggregate aggregate;
+
+    @Setup
+    public void aggregate() {
+        SyntheticFleet fleet = new SyntheticFleet(1, readings, 1);
+        ScaledAccumulator acc = new ScaledAccumulator();
+        Distribution distribution = new Distribution();
+        for (MetricIngestionRequest reading : fleet.readings()) {
+            long scaled = FixedPoint.toScaled(reading.value());
+            acc.add(scaled);
+            distribution.add(scaled);
+        }
+        aggregate = new MetricAggregate(fleet.sensorIds().get(0), MetricType.TEMPERATURE, acc.count(),
+                acc.sum(), acc.min(), acc.max(), fleet.to(), distribution);
+    }
+
+    @Benchmark
+    public BigDecimal computeStatistic() {
+        return MetricQueryService.computeStatistic(aggregate, statistic);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.enums.MetricType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic readings of a fleet of {@code sensors} sensors reporting
+ * {@code metrics} metrics each, {@code readingsPerSeries} times over the last
+ * day, in arrival order (all series interleaved by time).
+ *
+ * <p>Values are random walks with two decimals, roughly like real weather
+ * data, so compression and sketch sizes are realistic.</p>
+ */
+final class SyntheticFleet {
+
+    static final Duration SPAN = Duration.ofDays(1);
+
+    private final List<String> sensorIds;
+    private final List<MetricType> metrics;
+    private final int readingsPerSeries;
+    private final Instant from;
+    private final Instant to;
+    private final Random random = new Random(42);
+    private final long[] walk;
+
+    SyntheticFleet(int sensors, int readingsPerSeries, int metricCount) {
+        this.sensorIds = new ArrayList<>(sensors);
+        for (int i = 0; i < sensors; i++) {
+            sensorIds.add(String.format("bench-%05d", i));
+        }
+        this.metrics = List.copyOf(Arrays.asList(MetricType.values()).subList(0, metricCount));
+        this.readingsPerSeries = readingsPerSeries;
+        this.to = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        this.from = to.minus(SPAN);
+        this.walk = new long[sensors * metricCount];
+        Arrays.fill(walk, 2_000);
+    }
+
+    List<String> sensorIds() {
+        return sensorIds;
+    }
+
+    List<MetricType> metrics() {
+        return metrics;
+    }
+
+    Instant from() {
+        return from;
+    }
+
+    Instant to() {
+        return to;
+    }
+
+    /**
+     * Every reading of the fleet, oldest first.
+     */
+    List<MetricIngestionRequest> readings() {
+        List<MetricIngestionRequest> readings = new ArrayList<>(sensorIds.size() * metrics.size() * readingsPerSeries);
+        long step = SPAN.toNanos() / readingsPerSeries;
+        for (int n = 0; n < readingsPerSeries; n++) {
+            Instant timestamp = from.plusNanos(step * n);
+            for (int s = 0; s < sensorIds.size(); s++) {
+                for (int m = 0; m < metrics.size(); m++) {
+                    readings.add(reading(s, m, timestamp));
+                }
+            }
+        }
+        return readings;
+    }
+
+    /**
+     * The {@code n}-th reading of a live feed continuing after the fleet's data.
+     */
+    MetricIngestionRequest next(long n) {
+        int series = (int) (n % walk.length);
+        return reading(series / metrics.size(), series % metrics.size(), to.plusMillis(n));
+    }
+
+    private MetricIngestionRequest reading(int sensor, int metric, Instant timestamp) {
+        int series = sensor * metrics.size() + metric;
+        walk[series] += random.nextInt(21) - 10;
+        return new MetricIngestionRequest(sensorIds.get(sensor), metrics.get(metric),
+                BigDecimal.valueOf(walk[series], 2), timestamp);
+    }
+}
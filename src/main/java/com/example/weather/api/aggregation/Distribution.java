@@ -0,0 +1,78 @@
+package com.example.weather.api.aggregation;
+
+/**
+ * Shape of a group of readings beyond count / sum / min / max: running
+ * variance (Welford) and a {@link QuantileSketch} for percentiles.
+ *
+ * <p>Both parts are mergeable. Variance state combines with Chan's parallel
+ * formula, so groups aggregated separately (rollup buckets, parallel slices,
+ * cached partials) produce the same result as one pass over all readings,
+ * up to floating-point rounding. Not thread-safe; treated as read-only once
+ * the aggregate carrying it has been built.</p>
+ */
+public final class Distribution {
+
+    private static final double SCALE_FACTOR = 1e-4;
+
+    private long count;
+    private double mean;
+    // sum of squared differences from the mean
+    private double m2;
+    private final QuantileSketch sketch = new QuantileSketch();
+
+    /**
+     * Adds one scaled value (value x 10^4).
+     */
+    public void add(long scaled) {
+        double value = scaled * SCALE_FACTOR;
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        sketch.add(scaled);
+    }
+
+    public void merge(Distribution other) {
+        mergeMoments(other.count, other.mean, other.m2);
+        sketch.merge(other.sketch);
+    }
+
+    /**
+     * Adds the variance state of a group aggregated elsewhere (e.g. a rollup
+     * row); its values go into the sketch separately, through {@link #sketch()}.
+     */
+    public void mergeMoments(long otherCount, double otherMean, double otherM2) {
+        if (otherCount == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = otherCount;
+            mean = otherMean;
+            m2 = otherM2;
+            return;
+        }
+        long total = count + otherCount;
+        double delta = otherMean - mean;
+        mean += delta * otherCount / total;
+        m2 += otherM2 + delta * delta * ((double) count * otherCount / total);
+        count = total;
+    }
+
+    public QuantileSketch sketch() {
+        return sketch;
+    }
+
+    /**
+     * Sum of squared differences from the mean, as stored in rollups.
+     */
+    public double m2() {
+        return m2;
+    }
+
+    /**
+     * Population standard deviation, 0 for a single reading.
+     */
+    public double standardDeviation() {
+        return count == 0 ? Double.NaN : Math.sqrt(Math.max(0, m2) / count);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.weather.api.aggregation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point helpers for metric values held as longs scaled by 10^4.
+ *
+ * <p>Ingested values have at most 14 integer and 4 fraction digits, so every
+ * value is exact as a scaled long. Results match what {@link BigDecimal}
+ * arithmetic at scale 4 with {@link RoundingMode#HALF_UP} produces.</p>
+ */
+public final class FixedPoint {
+
+    public static final int SCALE = 4;
+
+    // a scaled long holds up to 18 digits, 4 of them fraction digits
+    private static final int MAX_INTEGER_DIGITS = 14;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Value x 10^4, rounded half-up to four fraction digits.
+     */
+    public static long toScaled(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long scaled) {
+        return BigDecimal.valueOf(scaled, SCALE);
+    }
+
+    /**
+     * {@code sum / count} at scale 4, rounded half-up; the same value as
+     * {@code sum.divide(BigDecimal.valueOf(count), 4, RoundingMode.HALF_UP)}.
+     *
+     * <p>Divides in long arithmetic whenever the sum fits a scaled long, which
+     * covers every realistic aggregate; larger sums take the BigDecimal path.</p>
+     */
+    public static BigDecimal average(BigDecimal sum, long count) {
+        if (count <= 0) {
+            throw new ArithmeticException("Average of no values");
+        }
+        if (sum.scale() > SCALE || sum.precision() - sum.scale() > MAX_INTEGER_DIGITS) {
+            return sum.divide(BigDecimal.valueOf(count), SCALE, RoundingMode.HALF_UP);
+        }
+        // exact: at most four fraction digits and 18 digits in total
+        long scaledSum = sum.scaleByPowerOfTen(SCALE).longValueExact();
+        return toDecimal(divideHalfUp(scaledSum, count));
+    }
+
+    /**
+     * {@code dividend / divisor} rounded half-up (ties away from zero) for a
+     * positive divisor.
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        // remainder >= divisor / 2, without overflowing remainder * 2
+        if (remainder >= divisor - remainder) {
+            quotient += dividend < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
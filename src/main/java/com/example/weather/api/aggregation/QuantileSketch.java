@@ -0,0 +1,199 @@
+package com.example.weather.api.aggregation;
+
+/**
+ * Mergeable quantile sketch over scaled values, in the style of DDSketch.
+ *
+ * <p>Values are counted in logarithmic bins: bin {@code i} covers magnitudes
+ * {@code (γ^(i-1), γ^i]} of the scaled value, with {@code γ = (1 + α) / (1 - α)}.
+ * Any quantile is therefore answered within a relative error of
+ * {@link #RELATIVE_ACCURACY}, whatever the distribution. Two sketches merge by
+ * adding their bin counts, so sketches of rollup buckets or of parallel slices
+ * combine without going back to the raw readings.</p>
+ *
+ * <p>Bins are identified by a signed key, see {@link #binOf}; ascending keys
+ * mean ascending values. Not thread-safe.</p>
+ */
+public final class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final BinCounts positive = new BinCounts();
+    private final BinCounts negative = new BinCounts();
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Bin key of a scaled value: 0 for zero, {@code ±(i + 1)} for bin {@code i}
+     * of a positive or negative value. Scaled values are whole numbers, so the
+     * smallest magnitude (1) is bin 0.
+     */
+    public static int binOf(long scaled) {
+        if (scaled == 0) {
+            return 0;
+        }
+        // |Long.MIN_VALUE| overflows, but is far outside the 18-digit value range
+        int index = (int) Math.ceil(Math.log(Math.abs((double) scaled)) / LOG_GAMMA);
+        int key = Math.max(index, 0) + 1;
+        return scaled > 0 ? key : -key;
+    }
+
+    public void add(long scaled) {
+        addBin(binOf(scaled), 1);
+    }
+
+    public void addBin(int key, long binCount) {
+        if (binCount <= 0) {
+            return;
+        }
+        if (key > 0) {
+            positive.add(key - 1, binCount);
+        } else if (key < 0) {
+            negative.add(-key - 1, binCount);
+        } else {
+            zeroCount += binCount;
+        }
+        count += binCount;
+    }
+
+    public void merge(QuantileSketch other) {
+        other.forEachBin(this::addBin);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Number of non-empty bins, a measure of the sketch's memory footprint.
+     */
+    public int binCount() {
+        return positive.nonEmpty() + negative.nonEmpty() + (zeroCount > 0 ? 1 : 0);
+    }
+
+    /**
+     * Calls {@code consumer} for every non-empty bin, in ascending value order.
+     */
+    public void forEachBin(BinConsumer consumer) {
+        for (int i = negative.maxIndex(); i >= negative.minIndex(); i--) {
+            long n = negative.get(i);
+            if (n > 0) {
+                consumer.accept(-(i + 1), n);
+            }
+        }
+        if (zeroCount > 0) {
+            consumer.accept(0, zeroCount);
+        }
+        for (int i = positive.minIndex(); i <= positive.maxIndex(); i++) {
+            long n = positive.get(i);
+            if (n > 0) {
+                consumer.accept(i + 1, n);
+            }
+        }
+    }
+
+    /**
+     * Estimate of the {@code q}-quantile (0 ≤ q ≤ 1) as a scaled value, or
+     * {@link Double#NaN} if the sketch is empty.
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = q * (count - 1);
+        long seen = 0;
+        for (int i = negative.maxIndex(); i >= negative.minIndex(); i--) {
+            seen += negative.get(i);
+            if (seen > rank) {
+                return -estimate(i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = positive.minIndex(); i <= positive.maxIndex(); i++) {
+            seen += positive.get(i);
+            if (seen > rank) {
+                return estimate(i);
+            }
+        }
+        return Double.NaN; // unreachable: rank < count
+    }
+
+    /**
+     * The value with equal relative distance to both ends of bin {@code i}.
+     */
+    private static double estimate(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    @FunctionalInterface
+    public interface BinConsumer {
+        void accept(int key, long count);
+    }
+
+    /**
+     * Counts for a contiguous range of bin indexes, grown on demand. Values of
+     * one sensor and metric usually span a few hundred bins at most.
+     */
+    private static final class BinCounts {
+
+        private static final long[] EMPTY = new long[0];
+
+        private long[] counts = EMPTY;
+        // bin index of counts[0]
+        private int offset;
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[16];
+                offset = index - 8;
+            } else if (index < offset || index >= offset + counts.length) {
+                grow(index);
+            }
+            counts[index - offset] += n;
+        }
+
+        long get(int index) {
+            int i = index - offset;
+            return i >= 0 && i < counts.length ? counts[i] : 0;
+        }
+
+        int minIndex() {
+            return offset;
+        }
+
+        /**
+         * Below {@link #minIndex()} when empty, so loops over the range do nothing.
+         */
+        int maxIndex() {
+            return offset + counts.length - 1;
+        }
+
+        int nonEmpty() {
+            int n = 0;
+            for (long c : counts) {
+                if (c > 0) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        private void grow(int index) {
+            int low = Math.min(offset, index);
+            int high = Math.max(offset + counts.length - 1, index);
+            int length = high - low + 1;
+            // some slack on the side that grew, so runs of new bins do not copy every time
+            int slack = Math.max(8, length / 2);
+            int newOffset = index < offset ? low - slack : low;
+            long[] grown = new long[length + slack];
+            System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+            counts = grown;
+            offset = newOffset;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.weather.api.aggregation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Running count / sum / min / max over values held as scaled longs
+ * (value x 10^4, see {@link FixedPoint}).
+ *
+ * The sum stays in a primitive long and only spills into a BigInteger on
+ * overflow, which needs values close to the 14-digit limit.
+ */
+public final class ScaledAccumulator {
+
+    public static final int SCALE = FixedPoint.SCALE;
+
+    private long count;
+    private long sum;
+    private BigInteger overflow;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public void add(long value) {
+        addToSum(value);
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        count++;
+    }
+
+    /**
+     * Adds everything {@code other} has seen.
+     */
+    public void merge(ScaledAccumulator other) {
+        if (other.count == 0) {
+            return;
+        }
+        addToSum(other.sum);
+        if (other.overflow != null) {
+            addToOverflow(other.overflow);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        count += other.count;
+    }
+
+    /**
+     * Adds a group that was aggregated elsewhere (e.g. a rollup row). The sum
+     * may exceed a long; min and max are plain values.
+     */
+    public void merge(long count, BigDecimal sum, BigDecimal min, BigDecimal max) {
+        if (count == 0) {
+            return;
+        }
+        BigInteger scaledSum = sum.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue();
+        if (scaledSum.bitLength() < Long.SIZE) {
+            addToSum(scaledSum.longValue());
+        } else {
+            addToOverflow(scaledSum);
+        }
+        this.min = Math.min(this.min, FixedPoint.toScaled(min));
+        this.max = Math.max(this.max, FixedPoint.toScaled(max));
+        this.count += count;
+    }
+
+    public void reset() {
+        count = 0;
+        sum = 0;
+        overflow = null;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public BigDecimal sum() {
+        if (overflow == null) {
+            return FixedPoint.toDecimal(sum);
+        }
+        return new BigDecimal(overflow.add(BigInteger.valueOf(sum)), SCALE);
+    }
+
+    public BigDecimal min() {
+        return FixedPoint.toDecimal(min);
+    }
+
+    public BigDecimal max() {
+        return FixedPoint.toDecimal(max);
+    }
+
+    private void addToSum(long value) {
+        long result = sum + value;
+        // overflow iff both operands have the same sign and the result's sign differs
+        if (((sum ^ result) & (value ^ result)) < 0) {
+            addToOverflow(BigInteger.valueOf(sum));
+            result = value;
+        }
+        sum = result;
+    }
+
+    private void addToOverflow(BigInteger value) {
+        overflow = overflow == null ? value : overflow.add(value);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.weather.api.archive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the compressed chunk archive, see {@link ChunkArchive}.
+ *
+ * @param enabled       move old readings out of {@code metric_records} into chunk files
+ * @param directory     where the chunk files are kept
+ * @param sealAfter     age at which readings are archived
+ * @param segmentSpan   time window sealed into one file
+ * @param chunkReadings most readings per compressed chunk
+ */
+@ConfigurationProperties(prefix = "weather.archive")
+public record ArchiveProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/archive") String directory,
+        @DefaultValue("7d") Duration sealAfter,
+        @DefaultValue("1d") Duration segmentSpan,
+        @DefaultValue("1024") int chunkReadings
+) { }
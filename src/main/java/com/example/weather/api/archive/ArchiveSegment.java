@@ -0,0 +1,256 @@
+package com.example.weather.api.archive;
+
+import com.example.weather.api.enums.MetricType;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One immutable, memory-mapped file of compressed chunks.
+ *
+ * <pre>
+ * file   = magic:int version:byte payload* index footer
+ * index  = count:int header*
+ * header = sensorId metric minMicros:long maxMicros:long count:int
+ *          hasSum:byte sum:long min:long max:long offset:long length:int
+ * footer = indexOffset:long magic:int
+ * </pre>
+ *
+ * <p>Strings are a 2-byte length followed by UTF-8. The index is parsed into
+ * memory when the segment is opened; payloads are only touched (and paged
+ * in by the OS) when a query decodes them. A segment is mapped as a whole, so
+ * it has to stay below 2 GB.</p>
+ */
+final class ArchiveSegment {
+
+    private static final int MAGIC = 0x57434831; // "WCH1"
+    private static final int VERSION = 1;
+    private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final List<ChunkHeader> chunks;
+    private final Map<String, List<ChunkHeader>> chunksBySensor;
+    private final long minMicros;
+    private final long maxMicros;
+
+    private ArchiveSegment(long id, Path path, MappedByteBuffer buffer, List<ChunkHeader> chunks) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+        this.chunks = Collections.unmodifiableList(chunks);
+        this.chunksBySensor = new HashMap<>();
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (ChunkHeader chunk : chunks) {
+            chunksBySensor.computeIfAbsent(chunk.sensorId(), key -> new ArrayList<>()).add(chunk);
+            min = Math.min(min, chunk.minMicros());
+            max = Math.max(max, chunk.maxMicros());
+        }
+        this.minMicros = min;
+        this.maxMicros = max;
+    }
+
+    /**
+     * Maps a complete segment file and reads its index.
+     */
+    static ArchiveSegment open(long id, Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < Integer.BYTES + 1 + FOOTER_SIZE
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(buffer.limit() - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a complete archive segment: " + path);
+        }
+        if (buffer.get(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported archive segment version in " + path);
+        }
+
+        ByteBuffer index = buffer.duplicate();
+        index.position(Math.toIntExact(buffer.getLong(buffer.limit() - FOOTER_SIZE)));
+        int count = index.getInt();
+        List<ChunkHeader> chunks = new ArrayList<>(count);
+        Map<String, String> sensorIds = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String sensorId = sensorIds.computeIfAbsent(readString(index), key -> key);
+            MetricType metric = MetricType.valueOf(readString(index));
+            long minMicros = index.getLong();
+            long maxMicros = index.getLong();
+            int readings = index.getInt();
+            boolean hasSum = index.get() != 0;
+            long sum = index.getLong();
+            long min = index.getLong();
+            long max = index.getLong();
+            long offset = index.getLong();
+            int length = index.getInt();
+            chunks.add(new ChunkHeader(sensorId, metric, minMicros, maxMicros, readings,
+                    hasSum ? sum : null, min, max, offset, length));
+        }
+        return new ArchiveSegment(id, path, buffer, chunks);
+    }
+
+    long id() {
+        return id;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    List<ChunkHeader> chunks() {
+        return chunks;
+    }
+
+    List<ChunkHeader> chunks(String sensorId) {
+        return chunksBySensor.getOrDefault(sensorId, List.of());
+    }
+
+    boolean overlaps(long fromMicros, long toMicros) {
+        return minMicros <= toMicros && maxMicros >= fromMicros;
+    }
+
+    ChunkDecoder decode(ChunkHeader chunk) {
+        return new ChunkDecoder(buffer.slice(Math.toIntExact(chunk.offset()), chunk.length()), chunk.count());
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a new segment file from readings ordered by series, then by time.
+     * Nothing is readable until {@link #finish()} has written the index and
+     * forced the file to disk.
+     */
+    static final class Writer implements AutoCloseable {
+
+        private final Path path;
+        private final int chunkReadings;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final List<ChunkHeader> headers = new ArrayList<>();
+
+        private long position;
+        private long readings;
+        private String sensorId;
+        private MetricType metric;
+        private ChunkEncoder chunk;
+        private boolean finished;
+
+        /**
+         * @param chunkReadings most readings per chunk
+         */
+        Writer(Path path, int chunkReadings) throws IOException {
+            this.path = path;
+            this.chunkReadings = chunkReadings;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            position = Integer.BYTES + 1;
+        }
+
+        void add(String sensorId, MetricType metric, long micros, long scaled) throws IOException {
+            if (chunk != null && (chunk.count() == chunkReadings
+                    || !sensorId.equals(this.sensorId) || metric != this.metric)) {
+                flushChunk();
+            }
+            if (chunk == null) {
+                chunk = new ChunkEncoder();
+                this.sensorId = sensorId;
+                this.metric = metric;
+            }
+            chunk.add(micros, scaled);
+            readings++;
+        }
+
+        long readings() {
+            return readings;
+        }
+
+        int chunkCount() {
+            return headers.size() + (chunk == null ? 0 : 1);
+        }
+
+        /**
+         * Writes the index and footer and forces the file to disk.
+         *
+         * @return the size of the file in bytes
+         */
+        long finish() throws IOException {
+            flushChunk();
+            long indexOffset = position;
+            out.writeInt(headers.size());
+            for (ChunkHeader header : headers) {
+                writeString(header.sensorId());
+                writeString(header.metric().name());
+                out.writeLong(header.minMicros());
+                out.writeLong(header.maxMicros());
+                out.writeInt(header.count());
+                out.writeByte(header.sum() != null ? 1 : 0);
+                out.writeLong(header.sum() != null ? header.sum() : 0);
+                out.writeLong(header.min());
+                out.writeLong(header.max());
+                out.writeLong(header.offset());
+                out.writeInt(header.length());
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+            finished = true;
+            return channel.size();
+        }
+
+        /**
+         * Closes the file; an unfinished one is deleted.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+            } finally {
+                if (!finished) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (chunk == null) {
+                return;
+            }
+            byte[] payload = chunk.payload();
+            headers.add(chunk.header(sensorId, metric, position, payload.length));
+            out.write(payload);
+            position += payload.length;
+            chunk = null;
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
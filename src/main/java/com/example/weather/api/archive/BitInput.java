@@ -0,0 +1,44 @@
+package com.example.weather.api.archive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads what {@link BitOutput} wrote, straight from a (memory-mapped) buffer.
+ */
+final class BitInput {
+
+    private final ByteBuffer buffer;
+    private long bitPosition;
+
+    /**
+     * @param buffer the chunk payload, from its position to its limit
+     */
+    BitInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.bitPosition = (long) buffer.position() << 3;
+    }
+
+    /**
+     * The next {@code width} bits (0 ≤ width ≤ 64) as an unsigned number.
+     */
+    long read(int width) {
+        long value = 0;
+        for (int remaining = width; remaining > 0; ) {
+            int index = (int) (bitPosition >>> 3);
+            if (index >= buffer.limit()) {
+                throw new IllegalStateException("Chunk payload ends early");
+            }
+            int available = 8 - (int) (bitPosition & 7);
+            int n = Math.min(available, remaining);
+            int bits = (buffer.get(index) >>> (available - n)) & ((1 << n) - 1);
+            value = (value << n) | bits;
+            bitPosition += n;
+            remaining -= n;
+        }
+        return value;
+    }
+
+    boolean readBit() {
+        return read(1) == 1;
+    }
+}
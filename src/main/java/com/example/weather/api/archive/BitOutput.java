@@ -0,0 +1,41 @@
+package com.example.weather.api.archive;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer written bit by bit, most significant bit first.
+ */
+final class BitOutput {
+
+    private byte[] bytes = new byte[64];
+    private long bitCount;
+
+    /**
+     * Appends the low {@code width} bits of {@code value} (0 ≤ width ≤ 64).
+     */
+    void write(long value, int width) {
+        for (int remaining = width; remaining > 0; ) {
+            int index = (int) (bitCount >>> 3);
+            if (index == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int free = 8 - (int) (bitCount & 7);
+            int n = Math.min(free, remaining);
+            int bits = (int) (value >>> (remaining - n)) & ((1 << n) - 1);
+            bytes[index] |= (byte) (bits << (free - n));
+            bitCount += n;
+            remaining -= n;
+        }
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * The bits written so far, padded with zeros to a whole byte.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((bitCount + 7) >>> 3));
+    }
+}
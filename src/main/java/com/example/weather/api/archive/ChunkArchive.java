@@ -0,0 +1,414 @@
+package com.example.weather.api.archive;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.aggregation.ScaledAccumulator;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricArchiveRepository;
+import com.example.weather.api.repository.MetricArchiveRepository.ArchiveSegmentRow;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Long-term storage tier: readings older than {@code weather.archive.seal-after}
+ * are moved out of {@code metric_records} into immutable, memory-mapped files
+ * of compressed chunks (see {@link ChunkEncoder} and {@link ArchiveSegment}).
+ *
+ * <p>A reading row costs well over 100 bytes with its indexes; in a chunk a
+ * regularly reporting sensor needs a few bits for the timestamp and a byte
+ * or two for the value. Rollups are unaffected, so most of an old range is
+ * still answered from {@code metric_rollups}; chunks serve the raw edges and
+ * the columnar engine. Chunks are skipped by their time range and decoded
+ * only when a query needs their readings; a chunk fully inside the range
+ * is answered from its header unless a distribution is needed.</p>
+ *
+ * <p>Sealing writes and forces the file first, then deletes the readings and
+ * registers the file in one transaction. Files without a registry entry
+ * (a crash before the commit) are deleted at startup. Queries that combine
+ * the table and the archive run under {@link #read}, so they never see a
+ * window in both places or in neither.</p>
+ *
+ * <p>Segments past the raw retention are dropped whole, see {@link #dropBefore}.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.archive", name = "enabled", havingValue = "true")
+public class ChunkArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkArchive.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{20})\\.chunks");
+
+    private final MetricArchiveRepository repository;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ArchiveProperties properties;
+    private final Path directory;
+
+    private final Map<Long, ArchiveSegment> segments = new ConcurrentSkipListMap<>();
+    // read: a query spanning table and archive; write: moving a window between them
+    private final ReentrantReadWriteLock sealLock = new ReentrantReadWriteLock();
+
+    // serializes open, seal and drop; a lock rather than synchronized, so a
+    // virtual thread doing file and JDBC I/O under it does not pin its carrier
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+    // guarded by maintenanceLock
+    private long nextSegmentId = 1;
+
+    public ChunkArchive(MetricArchiveRepository repository,
+                        PlatformTransactionManager transactionManager,
+                        ArchiveProperties properties) {
+        this.repository = repository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+        this.directory = Paths.get(properties.directory());
+    }
+
+    /**
+     * Maps every registered file and removes files left over from an
+     * interrupted seal.
+     */
+    @PostConstruct
+    public void open() {
+        maintenanceLock.lock();
+        try {
+            Files.createDirectories(directory);
+            Map<String, ArchiveSegmentRow> registered = new HashMap<>();
+            for (ArchiveSegmentRow row : repository.findSegments()) {
+                registered.put(row.fileName(), row);
+                nextSegmentId = Math.max(nextSegmentId, row.segmentId() + 1);
+                Path path = directory.resolve(row.fileName());
+                if (Files.exists(path)) {
+                    segments.put(row.segmentId(), ArchiveSegment.open(row.segmentId(), path));
+                } else {
+                    log.error("Archive segment {} is missing; its {} reading(s) cannot be queried",
+                            path, row.readingCount());
+                }
+            }
+
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.toList();
+            }
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && !registered.containsKey(file.getFileName().toString())) {
+                    nextSegmentId = Math.max(nextSegmentId, Long.parseLong(matcher.group(1)) + 1);
+                    log.warn("Deleting unregistered archive segment {} from an interrupted seal", file);
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open chunk archive in " + directory, ex);
+        } finally {
+            maintenanceLock.unlock();
+        }
+        log.info("Chunk archive opened {} segment(s) in {}", segments.size(), directory);
+    }
+
+    /**
+     * Runs a query that reads both {@code metric_records} and the archive
+     * without a seal moving readings from one to the other halfway through.
+     */
+    public <T> T read(Supplier<T> query) {
+        sealLock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            sealLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands {@code sink} one partial aggregate per archived chunk holding
+     * matching readings in {@code [from, to]}; a series spread over several
+     * chunks yields several partials, to be merged by the caller.
+     */
+    public void aggregate(Collection<String> sensorIds,
+                          Collection<MetricType> metrics,
+                          Instant from,
+                          Instant to,
+                          boolean withDistribution,
+                          Consumer<MetricAggregate> sink) {
+        long fromMicros = ceilMicros(from);
+        long toMicros = toMicros(to);
+        Set<MetricType> metricFilter = metrics == null || metrics.isEmpty()
+                ? EnumSet.allOf(MetricType.class)
+                : EnumSet.copyOf(metrics);
+
+        for (ArchiveSegment segment : segments.values()) {
+            if (!segment.overlaps(fromMicros, toMicros)) {
+                continue;
+            }
+            if (sensorIds == null || sensorIds.isEmpty()) {
+                aggregate(segment, segment.chunks(), metricFilter, fromMicros, toMicros, withDistribution, sink);
+            } else {
+                for (String sensorId : new LinkedHashSet<>(sensorIds)) {
+                    aggregate(segment, segment.chunks(sensorId), metricFilter, fromMicros, toMicros,
+                            withDistribution, sink);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes every archived reading at or after {@code since}, e.g. to warm
+     * up an in-memory copy. Readings of one chunk arrive in time order.
+     */
+    public void forEachReading(Instant since, ReadingConsumer consumer) {
+        long sinceMicros = ceilMicros(since);
+        for (ArchiveSegment segment : segments.values()) {
+            if (!segment.overlaps(sinceMicros, Long.MAX_VALUE)) {
+                continue;
+            }
+            for (ChunkHeader chunk : segment.chunks()) {
+                if (chunk.maxMicros() < sinceMicros) {
+                    continue;
+                }
+                ChunkDecoder decoder = segment.decode(chunk);
+                while (decoder.next()) {
+                    if (decoder.time() >= sinceMicros) {
+                        consumer.accept(chunk.sensorId(), chunk.metric(), decoder.time(), decoder.value());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Archives every archivable reading older than {@code horizon}, one
+     * {@code segment-span} window (one file) at a time.
+     *
+     * @return the number of readings archived
+     */
+    public long sealBefore(Instant horizon) {
+        maintenanceLock.lock();
+        try {
+            long span = properties.segmentSpan().toMillis();
+            long total = 0;
+            Instant oldest;
+            while ((oldest = repository.oldestArchivable(horizon)) != null) {
+                Instant start = Instant.ofEpochMilli(Math.floorDiv(oldest.toEpochMilli(), span) * span);
+                Instant end = start.plusMillis(span);
+                long sealed = seal(start, end.isBefore(horizon) ? end : horizon);
+                if (sealed == 0) {
+                    break;
+                }
+                total += sealed;
+            }
+            return total;
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes every segment whose window ended at or before {@code horizon},
+     * registry entry first, then the file.
+     *
+     * @return the segments deleted
+     */
+    public List<ArchiveSegmentRow> dropBefore(Instant horizon) {
+        maintenanceLock.lock();
+        try {
+            List<ArchiveSegmentRow> expired = repository.findSegments().stream()
+                    .filter(row -> !row.rangeEnd().isAfter(horizon))
+                    .toList();
+            for (ArchiveSegmentRow row : expired) {
+                sealLock.writeLock().lock();
+                try {
+                    transaction.executeWithoutResult(status -> repository.deleteSegment(row.segmentId()));
+                    segments.remove(row.segmentId());
+                } finally {
+                    sealLock.writeLock().unlock();
+                }
+                // still mapped until the buffer is collected, which POSIX file systems allow
+                deleteQuietly(directory.resolve(row.fileName()));
+                log.info("Dropped archive segment {} with {} reading(s) in [{}, {})",
+                        row.fileName(), row.readingCount(), row.rangeStart(), row.rangeEnd());
+            }
+            return expired;
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    private long seal(Instant start, Instant end) {
+        long id = nextSegmentId++;
+        String fileName = String.format("segment-%020d.chunks", id);
+        Path path = directory.resolve(fileName);
+        IdList ids = new IdList();
+        boolean registered = false;
+
+        try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(path, properties.chunkReadings())) {
+            readOnlyTransaction.executeWithoutResult(status -> repository.streamArchivable(start, end,
+                    (rowId, reading) -> {
+                        ids.add(rowId);
+                        try {
+                            writer.add(reading.sensorId(), reading.metric(),
+                                    toMicros(reading.timestamp()), FixedPoint.toScaled(reading.value()));
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }));
+            if (writer.readings() == 0) {
+                return 0;
+            }
+            int chunks = writer.chunkCount();
+            long bytes = writer.finish();
+            ArchiveSegment segment = ArchiveSegment.open(id, path);
+            ArchiveSegmentRow row = new ArchiveSegmentRow(id, fileName, start, end, writer.readings(),
+                    chunks, bytes, Instant.now());
+
+            sealLock.writeLock().lock();
+            try {
+                transaction.executeWithoutResult(status -> {
+                    long deleted = repository.deleteReadings(ids.values, ids.size, start, end);
+                    if (deleted != ids.size) {
+                        // removed concurrently; archiving them would bring them back
+                        throw new IllegalStateException("Expected to archive " + ids.size
+                                + " reading(s) but deleted " + deleted);
+                    }
+                    repository.insertSegment(row);
+                });
+                segments.put(id, segment);
+                registered = true;
+            } finally {
+                sealLock.writeLock().unlock();
+            }
+
+            log.info("Archived {} reading(s) in [{}, {}) into {} chunk(s), {} bytes ({} bytes per reading)",
+                    row.readingCount(), start, end, chunks, bytes,
+                    String.format("%.2f", (double) bytes / row.readingCount()));
+            return row.readingCount();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write archive segment " + path, ex);
+        } finally {
+            if (!registered) {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Could not delete archive segment {}", path, ex);
+        }
+    }
+
+    private static void aggregate(ArchiveSegment segment,
+                                  List<ChunkHeader> chunks,
+                                  Set<MetricType> metricFilter,
+                                  long fromMicros,
+                                  long toMicros,
+                                  boolean withDistribution,
+                                  Consumer<MetricAggregate> sink) {
+        for (ChunkHeader chunk : chunks) {
+            if (!metricFilter.contains(chunk.metric()) || !chunk.overlaps(fromMicros, toMicros)) {
+                continue;
+            }
+            if (!withDistribution && chunk.sum() != null && chunk.within(fromMicros, toMicros)) {
+                sink.accept(new MetricAggregate(chunk.sensorId(), chunk.metric(), chunk.count(),
+                        FixedPoint.toDecimal(chunk.sum()), FixedPoint.toDecimal(chunk.min()),
+                        FixedPoint.toDecimal(chunk.max()), fromMicros(chunk.maxMicros())));
+                continue;
+            }
+
+            ScaledAccumulator acc = new ScaledAccumulator();
+            Distribution distribution = withDistribution ? new Distribution() : null;
+            long newest = Long.MIN_VALUE;
+            ChunkDecoder decoder = segment.decode(chunk);
+            while (decoder.next()) {
+                long time = decoder.time();
+                if (time > toMicros) {
+                    break;
+                }
+                if (time >= fromMicros) {
+                    acc.add(decoder.value());
+                    if (distribution != null) {
+                        distribution.add(decoder.value());
+                    }
+                    newest = time;
+                }
+            }
+            if (acc.count() > 0) {
+                sink.accept(new MetricAggregate(chunk.sensorId(), chunk.metric(), acc.count(),
+                        acc.sum(), acc.min(), acc.max(), fromMicros(newest), distribution));
+            }
+        }
+    }
+
+    /**
+     * Epoch microseconds, rounded down (the database keeps microseconds too).
+     */
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    /**
+     * Epoch microseconds, rounded up; used for inclusive lower bounds.
+     */
+    private static long ceilMicros(Instant instant) {
+        return toMicros(instant) + (instant.getNano() % 1_000 == 0 ? 0 : 1);
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000);
+    }
+
+    /**
+     * Receives one archived reading.
+     */
+    @FunctionalInterface
+    public interface ReadingConsumer {
+        void accept(String sensorId, MetricType metric, long micros, long scaled);
+    }
+
+    /**
+     * Row ids of the readings being sealed, without boxing.
+     */
+    private static final class IdList {
+
+        long[] values = new long[1024];
+        int size;
+
+        void add(long id) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.weather.api.archive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Walks the readings of a chunk written by {@link ChunkEncoder}, decoding
+ * one reading per {@link #next()} call. Not thread-safe.
+ */
+final class ChunkDecoder {
+
+    private final BitInput in;
+    private final int count;
+
+    private int read;
+    private long time;
+    private long delta;
+    private long zigzagValue;
+    private int leading;
+    private int trailing;
+
+    ChunkDecoder(ByteBuffer payload, int count) {
+        this.in = new BitInput(payload);
+        this.count = count;
+    }
+
+    /**
+     * Moves to the next reading.
+     *
+     * @return false once all readings of the chunk have been read
+     */
+    boolean next() {
+        if (read == count) {
+            return false;
+        }
+        if (read == 0) {
+            time = in.read(64);
+            zigzagValue = in.read(64);
+        } else {
+            readTime();
+            readValue();
+        }
+        read++;
+        return true;
+    }
+
+    /** Epoch microseconds of the current reading. */
+    long time() {
+        return time;
+    }
+
+    /** Scaled value (value x 10^4) of the current reading. */
+    long value() {
+        return ChunkEncoder.unzigzag(zigzagValue);
+    }
+
+    private void readTime() {
+        int ones = 0;
+        while (ones <= ChunkEncoder.DELTA_WIDTHS.length && in.readBit()) {
+            ones++;
+        }
+        if (ones > 0) {
+            int width = ones <= ChunkEncoder.DELTA_WIDTHS.length ? ChunkEncoder.DELTA_WIDTHS[ones - 1] : 64;
+            long raw = in.read(width);
+            // sign-extend the two's complement field
+            delta += (raw << (64 - width)) >> (64 - width);
+        }
+        time += delta;
+    }
+
+    private void readValue() {
+        if (!in.readBit()) {
+            return;
+        }
+        if (in.readBit()) {
+            leading = (int) in.read(6);
+            int meaningful = (int) in.read(6) + 1;
+            trailing = 64 - leading - meaningful;
+        }
+        zigzagValue ^= in.read(64 - leading - trailing) << trailing;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.weather.api.archive;
+
+import com.example.weather.api.enums.MetricType;
+
+/**
+ * Compresses the readings of one sensor + metric, in time order, in the
+ * style of Facebook's Gorilla.
+ *
+ * <p>The first reading is stored as two raw 64-bit words. After that each
+ * timestamp is stored as the difference between consecutive deltas
+ * (delta-of-delta), which is 0 for a sensor reporting at a fixed rate:</p>
+ *
+ * <pre>
+ * 0                    same delta as before
+ * 10    + 7 bits       |delta-of-delta| up to 64 µs
+ * 110   + 14 bits      up to ~8 ms
+ * 1110  + 24 bits      up to ~8 s
+ * 11110 + 40 bits      up to ~6 days
+ * 11111 + 64 bits      anything else
+ * </pre>
+ *
+ * <p>Timestamps are microseconds, so the buckets are wider than Gorilla's
+ * (which counts seconds) to keep jitter of a few milliseconds cheap.</p>
+ *
+ * <p>Each value (the scaled long, zigzag-encoded so values near zero keep
+ * their high bits clear) is XOR-ed with the previous one:</p>
+ *
+ * <pre>
+ * 0                    same value as before
+ * 10 + bits            the changed bits fit into the previous window of
+ *                      meaningful bits
+ * 11 + 6 bits leading zeros + 6 bits length - 1 + bits
+ *                      new window
+ * </pre>
+ *
+ * <p>Not thread-safe.</p>
+ */
+final class ChunkEncoder {
+
+    static final int[] DELTA_WIDTHS = {7, 14, 24, 40};
+
+    private final BitOutput out = new BitOutput();
+
+    private int count;
+    private long firstTime;
+    private long previousTime;
+    private long previousDelta;
+    private long previousValue;
+    private int previousLeading = -1;
+    private int previousTrailing;
+
+    private long sum;
+    private boolean sumOverflowed;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Adds the next reading; {@code micros} must not be older than the previous one.
+     */
+    void add(long micros, long scaled) {
+        if (count == 0) {
+            firstTime = micros;
+            out.write(micros, 64);
+            out.write(zigzag(scaled), 64);
+            previousValue = zigzag(scaled);
+        } else {
+            writeTime(micros);
+            writeValue(zigzag(scaled));
+        }
+        previousTime = micros;
+        count++;
+
+        long result = sum + scaled;
+        if (((sum ^ result) & (scaled ^ result)) < 0) {
+            sumOverflowed = true;
+        }
+        sum = result;
+        min = Math.min(min, scaled);
+        max = Math.max(max, scaled);
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * Header of the chunk written so far, to be stored at {@code offset}
+     * with {@code length} payload bytes.
+     */
+    ChunkHeader header(String sensorId, MetricType metric, long offset, int length) {
+        return new ChunkHeader(sensorId, metric, firstTime, previousTime, count,
+                sumOverflowed ? null : sum, min, max, offset, length);
+    }
+
+    byte[] payload() {
+        return out.toByteArray();
+    }
+
+    private void writeTime(long micros) {
+        long delta = micros - previousTime;
+        long deltaOfDelta = delta - previousDelta;
+        previousDelta = delta;
+        if (deltaOfDelta == 0) {
+            out.writeBit(false);
+            return;
+        }
+        for (int i = 0; i < DELTA_WIDTHS.length; i++) {
+            int width = DELTA_WIDTHS[i];
+            if (fits(deltaOfDelta, width)) {
+                // i + 1 one bits, then a zero
+                out.write((1L << (i + 2)) - 2, i + 2);
+                out.write(deltaOfDelta, width);
+                return;
+            }
+        }
+        out.write((1L << (DELTA_WIDTHS.length + 1)) - 1, DELTA_WIDTHS.length + 1);
+        out.write(deltaOfDelta, 64);
+    }
+
+    private void writeValue(long value) {
+        long xor = value ^ previousValue;
+        previousValue = value;
+        if (xor == 0) {
+            out.writeBit(false);
+            return;
+        }
+        out.writeBit(true);
+        int leading = Long.numberOfLeadingZeros(xor);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            out.writeBit(false);
+            out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            return;
+        }
+        int meaningful = 64 - leading - trailing;
+        out.writeBit(true);
+        out.write(leading, 6);
+        out.write(meaningful - 1, 6);
+        out.write(xor >>> trailing, meaningful);
+        previousLeading = leading;
+        previousTrailing = trailing;
+    }
+
+    /**
+     * True if {@code value} is representable as a {@code width}-bit two's complement number.
+     */
+    private static boolean fits(long value, int width) {
+        long bound = 1L << (width - 1);
+        return value >= -bound && value < bound;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.weather.api.archive;
+
+import com.example.weather.api.enums.MetricType;
+
+/**
+ * Index entry of one chunk: which series it belongs to, the time range it
+ * covers and summary values, so queries can skip a chunk or answer from
+ * the header without decoding it.
+ *
+ * @param minMicros first timestamp, epoch microseconds
+ * @param maxMicros last timestamp, epoch microseconds
+ * @param sum       sum of the scaled values, null if it does not fit into a long
+ * @param min       smallest scaled value
+ * @param max       largest scaled value
+ * @param offset    position of the payload in the segment file
+ * @param length    payload size in bytes
+ */
+record ChunkHeader(
+        String sensorId,
+        MetricType metric,
+        long minMicros,
+        long maxMicros,
+        int count,
+        Long sum,
+        long min,
+        long max,
+        long offset,
+        int length
+) {
+
+    boolean overlaps(long fromMicros, long toMicros) {
+        return minMicros <= toMicros && maxMicros >= fromMicros;
+    }
+
+    boolean within(long fromMicros, long toMicros) {
+        return minMicros >= fromMicros && maxMicros <= toMicros;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.weather.api.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for {@link QueryResultCache}.
+ *
+ * @param enabled   cache range-query results at all
+ * @param maxWeight upper bound for the cache size, counted in sensor + metric
+ *                  groups over all cached results
+ * @param ttl       how long a result may be served after it was computed,
+ *                  even if no ingest invalidated it
+ */
+@ConfigurationProperties(prefix = "weather.query.cache")
+public record QueryCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") long maxWeight,
+        @DefaultValue("5m") Duration ttl
+) { }
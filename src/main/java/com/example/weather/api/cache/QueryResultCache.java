@@ -0,0 +1,263 @@
+package com.example.weather.api.cache;
+
+import com.example.weather.api.dto.QueryCacheStats;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.model.MetricRecord;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.service.MetricIngestionListener;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of range-query aggregates, keyed on the normalized request
+ * (sensor ids and metrics as sets, plus {@code from}/{@code to}).
+ *
+ * <p>Eviction is Caffeine's W-TinyLFU, bounded by the number of sensor + metric
+ * groups over all entries and by a time-to-live. The statistic is not part of
+ * the key: MIN, MAX, SUM and AVG of the same selection share one entry.</p>
+ *
+ * <p>An ingest only invalidates entries whose selection contains the reading's
+ * sensor and metric and whose range contains its timestamp, so dashboards over
+ * closed periods stay cached while live data keeps arriving.</p>
+ *
+ * <p>Ordered last among the ingestion listeners: in-memory engines must have
+ * applied a reading before the entries derived from them are dropped, or a
+ * query in between could cache the old state again.</p>
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "weather.query.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class QueryResultCache implements MetricIngestionListener {
+
+    private final AsyncCache<Key, List<MetricAggregate>> cache;
+    private final long maxWeight;
+
+    // Every cached (or loading) key by sensor id; keys without a sensor filter
+    // match every sensor and live in anySensor.
+    private final Map<String, Set<Key>> bySensor = new ConcurrentHashMap<>();
+    private final Set<Key> anySensor = ConcurrentHashMap.newKeySet();
+    private final LongAdder invalidations = new LongAdder();
+
+    public QueryResultCache(QueryCacheProperties properties) {
+        this.maxWeight = properties.maxWeight();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.maxWeight())
+                .weigher((Key key, List<MetricAggregate> value) -> weigh(value))
+                .expireAfterWrite(properties.ttl())
+                // runs atomically with the removal, see register()
+                .evictionListener((Key key, List<MetricAggregate> value, RemovalCause cause) -> unregister(key))
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Returns the cached aggregates for the selection, or computes and caches them.
+     *
+     * <p>The loader runs on the calling thread, outside any lock: the cache
+     * only holds its future while it runs, and concurrent callers for the same
+     * key wait on that future. (A loader inside the cache's per-key lock would
+     * hold a monitor across the database query, pinning a virtual thread to
+     * its carrier.) An invalidation of the key drops the future; callers that
+     * were already waiting still get its result, but it is never served
+     * afterwards.</p>
+     */
+    public List<MetricAggregate> get(Collection<String> sensorIds,
+                                     Collection<MetricType> metrics,
+                                     Instant from,
+                                     Instant to,
+                                     boolean withDistribution,
+                                     Supplier<List<MetricAggregate>> loader) {
+        if (containsNull(sensorIds) || containsNull(metrics)) {
+            // cannot be normalized into a key; such selections match nothing anyway
+            return loader.get();
+        }
+        Key key = Key.of(sensorIds, metrics, from, to, withDistribution);
+        CompletableFuture<List<MetricAggregate>> loading = new CompletableFuture<>();
+        CompletableFuture<List<MetricAggregate>> result = cache.get(key, (k, executor) -> {
+            // Registered before loading: an ingest committed while the load
+            // runs must be able to find (and drop) this key.
+            register(k);
+            return loading;
+        });
+        if (result == loading) {
+            try {
+                loading.complete(List.copyOf(loader.get()));
+            } catch (RuntimeException ex) {
+                // unless an invalidation already dropped it and a reload registered again
+                cache.asMap().computeIfPresent(key, (k, current) -> {
+                    if (current != loading) {
+                        return current;
+                    }
+                    unregister(k);
+                    return null;
+                });
+                loading.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        try {
+            return result.join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    @Override
+    public void onIngested(List<MetricRecord> records) {
+        Set<Key> stale = new HashSet<>();
+        for (MetricRecord record : records) {
+            // the database keeps microseconds, so compare at that precision
+            Instant timestamp = record.getTimestamp().truncatedTo(ChronoUnit.MICROS);
+            collectStale(bySensor.get(record.getSensorId()), record.getMetricType(), timestamp, stale);
+            collectStale(anySensor, record.getMetricType(), timestamp, stale);
+        }
+        for (Key key : stale) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Drops every entry of the metric whose range starts before the purge horizon.
+     */
+    @Override
+    public void onPurged(MetricType metric, Instant before) {
+        for (Key key : List.copyOf(cache.asMap().keySet())) {
+            if (key.reaches(metric, before)) {
+                invalidate(key);
+            }
+        }
+    }
+
+    public QueryCacheStats stats() {
+        CacheStats stats = cache.synchronous().stats();
+        return new QueryCacheStats(
+                cache.synchronous().estimatedSize(),
+                maxWeight,
+                stats.hitCount(),
+                stats.missCount(),
+                stats.evictionCount(),
+                invalidations.sum(),
+                stats.hitRate()
+        );
+    }
+
+    private static boolean containsNull(Collection<?> values) {
+        return values != null && values.stream().anyMatch(Objects::isNull);
+    }
+
+    private static void collectStale(Set<Key> candidates, MetricType metric, Instant timestamp, Set<Key> stale) {
+        if (candidates == null) {
+            return;
+        }
+        for (Key key : candidates) {
+            if (key.covers(metric, timestamp)) {
+                stale.add(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the entry and its index registration in one atomic step, so a
+     * concurrent reload of the same key cannot lose its fresh registration.
+     */
+    private void invalidate(Key key) {
+        cache.asMap().compute(key, (k, current) -> {
+            if (current != null) {
+                unregister(k);
+                invalidations.increment();
+            }
+            return null;
+        });
+    }
+
+    private void register(Key key) {
+        if (key.sensorIds().isEmpty()) {
+            anySensor.add(key);
+            return;
+        }
+        for (String sensorId : key.sensorIds()) {
+            // inside compute, so a concurrent unregister cannot drop the set under us
+            bySensor.compute(sensorId, (id, keys) -> {
+                Set<Key> updated = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                updated.add(key);
+                return updated;
+            });
+        }
+    }
+
+    private void unregister(Key key) {
+        if (key.sensorIds().isEmpty()) {
+            anySensor.remove(key);
+            return;
+        }
+        for (String sensorId : key.sensorIds()) {
+            bySensor.computeIfPresent(sensorId, (id, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    /**
+     * One unit per aggregate, plus one per 16 sketch bins it carries.
+     */
+    private static int weigh(List<MetricAggregate> aggregates) {
+        int weight = 1;
+        for (MetricAggregate aggregate : aggregates) {
+            weight += 1;
+            if (aggregate.distribution() != null) {
+                weight += aggregate.distribution().sketch().binCount() / 16;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Normalized selection; an empty set means "all". Results with a
+     * distribution are cached separately from those without.
+     */
+    private record Key(Set<String> sensorIds, Set<MetricType> metrics, Instant from, Instant to,
+                       boolean withDistribution) {
+
+        static Key of(Collection<String> sensorIds, Collection<MetricType> metrics, Instant from, Instant to,
+                      boolean withDistribution) {
+            Set<String> sensors = sensorIds == null ? Set.of() : Set.copyOf(sensorIds);
+            Set<MetricType> types = metrics == null || metrics.isEmpty()
+                    ? Set.of()
+                    : Collections.unmodifiableSet(EnumSet.copyOf(metrics));
+            return new Key(sensors, types, from, to, withDistribution);
+        }
+
+        boolean covers(MetricType metric, Instant timestamp) {
+            return (metrics.isEmpty() || metrics.contains(metric))
+                    && !timestamp.isBefore(from)
+                    && !timestamp.isAfter(to);
+        }
+
+        boolean reaches(MetricType metric, Instant before) {
+            return (metrics.isEmpty() || metrics.contains(metric)) && from.isBefore(before);
+        }
+    }
+}
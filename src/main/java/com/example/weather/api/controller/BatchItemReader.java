@@ -0,0 +1,181 @@
+package com.example.weather.api.controller;
+
+import com.example.weather.api.dto.BatchIngestionResponse.ItemError;
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.service.IngestionProperties;
+import com.example.weather.api.wire.MalformedWireException;
+import com.example.weather.api.wire.MetricWireFormat;
+import com.example.weather.api.wire.MetricWireReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Turns the items of a batch request into validated readings.
+ *
+ * Every item is parsed and validated on its own, so one bad reading
+ * is reported with its index instead of failing the whole batch.
+ */
+@Component
+class BatchItemReader {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader itemReader;
+    private final Validator validator;
+    private final IngestionProperties properties;
+
+    BatchItemReader(ObjectMapper objectMapper, Validator validator, IngestionProperties properties) {
+        this.objectMapper = objectMapper;
+        this.itemReader = objectMapper.readerFor(MetricIngestionRequest.class);
+        this.validator = validator;
+        this.properties = properties;
+    }
+
+    /**
+     * Reads the elements of a JSON array body. The array is parsed element by
+     * element, so an oversized batch is refused at item {@code max-items + 1}
+     * instead of after the whole body has been turned into a tree.
+     */
+    BatchItems fromJson(InputStream body) throws IOException {
+        BatchItems items = new BatchItems();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Body must be a JSON array.");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IllegalArgumentException("Malformed JSON body at item " + items.size()
+                            + ": unexpected end of input");
+                }
+                checkSize(items.size() + 1);
+                // as a tree first, so a bad item leaves the parser at the next one
+                JsonNode node = objectMapper.readTree(parser);
+                try {
+                    items.add(itemReader.readValue(node));
+                } catch (IOException ex) {
+                    items.reject(ex);
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Malformed JSON body at item " + items.size() + ": "
+                    + ex.getOriginalMessage(), ex);
+        }
+        return items;
+    }
+
+    /**
+     * Reads a newline-delimited JSON body, one reading per line. Blank lines are skipped.
+     */
+    BatchItems fromNdjson(InputStream body) throws IOException {
+        BatchItems items = new BatchItems();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                checkSize(items.size() + 1);
+                try {
+                    items.add(itemReader.readValue(line));
+                } catch (JsonProcessingException ex) {
+                    items.reject(ex);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Reads a binary body ({@link MetricWireFormat}). Readings are validated
+     * one by one; a framing error rejects the whole body, since nothing after
+     * it can be located.
+     */
+    BatchItems fromBinary(InputStream body) throws IOException {
+        BatchItems items = new BatchItems();
+        MetricWireReader reader = new MetricWireReader(body);
+        try {
+            MetricIngestionRequest reading;
+            while ((reading = reader.next()) != null) {
+                checkSize(items.size() + 1);
+                items.add(reading);
+            }
+        } catch (MalformedWireException | EOFException ex) {
+            throw new IllegalArgumentException("Malformed binary body at item " + items.size() + ": "
+                    + ex.getMessage(), ex);
+        }
+        return items;
+    }
+
+    private void checkSize(int size) {
+        if (size > properties.batch().maxItems()) {
+            throw new IllegalArgumentException(
+                    "Batch must not contain more than " + properties.batch().maxItems() + " items.");
+        }
+    }
+
+    /**
+     * Valid readings plus per-item errors, in batch order.
+     */
+    final class BatchItems {
+
+        private final List<MetricIngestionRequest> valid = new ArrayList<>();
+        private final List<ItemError> errors = new ArrayList<>();
+        private int size;
+
+        List<MetricIngestionRequest> valid() {
+            return valid;
+        }
+
+        List<ItemError> errors() {
+            return errors;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void add(MetricIngestionRequest request) {
+            if (request == null) {
+                errors.add(new ItemError(size++, "Item must not be null"));
+                return;
+            }
+            Set<ConstraintViolation<MetricIngestionRequest>> violations = validator.validate(request);
+            if (violations.isEmpty()) {
+                valid.add(request);
+            } else {
+                String message = violations.stream()
+                        .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", "));
+                errors.add(new ItemError(size, message));
+            }
+            size++;
+        }
+
+        private void reject(IOException ex) {
+            String message = ex instanceof JsonProcessingException json
+                    ? json.getOriginalMessage()
+                    : ex.getMessage();
+            errors.add(new ItemError(size, "Malformed item: " + message));
+            size++;
+        }
+    }
+}
@@ -1,15 +1,38 @@
 package com.example.weather.api.controller;
 
+import com.example.weather.api.cache.QueryResultCache;
+import com.example.weather.api.dto.BatchIngestionResponse;
+import com.example.weather.api.dto.IngestionBufferStats;
 import com.example.weather.api.dto.MetricIngestionRequest;
 import com.example.weather.api.dto.MetricQueryRequest;
+import com.example.weather.api.dto.MetricSeriesRequest;
+import com.example.weather.api.dto.MetricSeriesResponse;
 import com.example.weather.api.dto.MetricStatisticResponse;
+import com.example.weather.api.dto.QueryCacheStats;
+import com.example.weather.api.dto.RetentionReport;
+import com.example.weather.api.dto.SubscriptionRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.StatisticType;
+import com.example.weather.api.maintenance.RetentionPurgeTask;
 import com.example.weather.api.service.MetricIngestionService;
 import com.example.weather.api.service.MetricQueryService;
+import com.example.weather.api.service.WriteBehindIngestionBuffer;
+import com.example.weather.api.subscription.SubscriptionRegistry;
+import com.example.weather.api.wire.MetricWireFormat;
+import com.example.weather.api.wire.MetricWireWriter;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 /**
@@ -21,22 +44,128 @@ public class MetricsController {
 
     private final MetricIngestionService ingestionService;
     private final MetricQueryService queryService;
+    private final BatchItemReader batchItemReader;
+    private final StreamingResponseWriter responseWriter;
+    // only present when weather.ingestion.async.enabled=true
+    private final WriteBehindIngestionBuffer ingestionBuffer;
+    // only present when weather.query.cache.enabled=true
+    private final QueryResultCache resultCache;
+    // only present when weather.retention.enabled=true
+    private final RetentionPurgeTask retentionPurge;
+    // only present when weather.subscriptions.enabled=true
+    private final SubscriptionRegistry subscriptions;
 
     public MetricsController(MetricIngestionService ingestionService,
-                             MetricQueryService queryService) {
+                             MetricQueryService queryService,
+                             BatchItemReader batchItemReader,
+                             StreamingResponseWriter responseWriter,
+                             ObjectProvider<WriteBehindIngestionBuffer> ingestionBuffer,
+                             ObjectProvider<QueryResultCache> resultCache,
+                             ObjectProvider<RetentionPurgeTask> retentionPurge,
+                             ObjectProvider<SubscriptionRegistry> subscriptions) {
         this.ingestionService = ingestionService;
         this.queryService = queryService;
+        this.batchItemReader = batchItemReader;
+        this.responseWriter = responseWriter;
+        this.ingestionBuffer = ingestionBuffer.getIfAvailable();
+        this.resultCache = resultCache.getIfAvailable();
+        this.retentionPurge = retentionPurge.getIfAvailable();
+        this.subscriptions = subscriptions.getIfAvailable();
     }
 
     /**
      * Ingests a new sensor reading.
+     * Returns 201 once stored, or 202 once buffered in async mode.
      */
     @PostMapping("/ingest")
     public ResponseEntity<Void> ingest(@RequestBody @Valid MetricIngestionRequest request) {
+        if (ingestionBuffer != null) {
+            ingestionBuffer.submit(request);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+        }
         ingestionService.ingest(request);
         return ResponseEntity.status(HttpStatus.CREATED).build();
     }
 
+    /**
+     * Ingests one reading sent in the binary format.
+     */
+    @PostMapping(path = "/ingest", consumes = MetricWireFormat.MEDIA_TYPE_VALUE)
+    public ResponseEntity<Void> ingestBinary(InputStream body) throws IOException {
+        BatchItemReader.BatchItems items = batchItemReader.fromBinary(body);
+        if (!items.errors().isEmpty()) {
+            throw new IllegalArgumentException(items.errors().get(0).message());
+        }
+        if (items.valid().size() != 1) {
+            throw new IllegalArgumentException("Body must contain exactly one reading.");
+        }
+        return ingest(items.valid().get(0));
+    }
+
+    /**
+     * Reports queue depth and flush latency of the async ingestion buffer.
+     */
+    @GetMapping("/ingest/buffer")
+    public ResponseEntity<IngestionBufferStats> ingestionBuffer() {
+        if (ingestionBuffer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ingestionBuffer.stats());
+    }
+
+    /**
+     * Ingests many readings sent as a JSON array.
+     */
+    @PostMapping(path = "/ingest/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchIngestionResponse> ingestBatch(InputStream body) throws IOException {
+        return ingestBatch(batchItemReader.fromJson(body));
+    }
+
+    /**
+     * Ingests many readings sent as newline-delimited JSON.
+     */
+    @PostMapping(path = "/ingest/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BatchIngestionResponse> ingestBatchNdjson(InputStream body) throws IOException {
+        return ingestBatch(batchItemReader.fromNdjson(body));
+    }
+
+    /**
+     * Ingests many readings sent in the binary format.
+     */
+    @PostMapping(path = "/ingest/batch", consumes = MetricWireFormat.MEDIA_TYPE_VALUE)
+    public ResponseEntity<BatchIngestionResponse> ingestBatchBinary(InputStream body) throws IOException {
+        return ingestBatch(batchItemReader.fromBinary(body));
+    }
+
+    /**
+     * Stores the valid items and reports the rejected ones:
+     * 201 when everything was stored (202 when buffered in async mode),
+     * 207 when some items were rejected and 400 when none could be stored.
+     */
+    private ResponseEntity<BatchIngestionResponse> ingestBatch(BatchItemReader.BatchItems items) {
+        if (ingestionBuffer != null) {
+            ingestionBuffer.submitAll(items.valid());
+        } else {
+            ingestionService.ingestAll(items.valid());
+        }
+
+        BatchIngestionResponse response = new BatchIngestionResponse(
+                items.valid().size(),
+                items.errors().size(),
+                items.errors()
+        );
+
+        HttpStatus status;
+        if (items.errors().isEmpty()) {
+            status = ingestionBuffer != null ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+        } else if (items.valid().isEmpty()) {
+            status = HttpStatus.BAD_REQUEST;
+        } else {
+            status = HttpStatus.MULTI_STATUS;
+        }
+        return ResponseEntity.status(status).body(response);
+    }
+
     /**
      * Returns statistics for selected sensors and metrics.
      */
@@ -46,4 +175,135 @@ public class MetricsController {
         List<MetricStatisticResponse> responses = queryService.query(request);
         return ResponseEntity.ok(responses);
     }
+
+    /**
+     * Same as {@link #query}, streamed as newline-delimited JSON when the
+     * client accepts {@code application/x-ndjson}.
+     */
+    @PostMapping(path = "/query", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryNdjson(
+            @RequestBody @Valid MetricQueryRequest request) {
+        // rejected here, while a 400 can still be sent
+        queryService.validate(request);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(responseWriter.<MetricStatisticResponse>ndjson(sink -> queryService.query(request, sink)));
+    }
+
+    /**
+     * Same as {@link #query}, streamed in the binary format.
+     */
+    @PostMapping(path = "/query", produces = MetricWireFormat.MEDIA_TYPE_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryBinary(
+            @RequestBody @Valid MetricQueryRequest request) {
+        queryService.validate(request);
+        return ResponseEntity.ok()
+                .contentType(MetricWireFormat.MEDIA_TYPE)
+                .body(responseWriter.<MetricStatisticResponse>binary(
+                        sink -> queryService.query(request, sink), MetricWireWriter::write));
+    }
+
+    /**
+     * Returns a downsampled series of the statistic per sensor and metric,
+     * one point per interval.
+     */
+    @PostMapping("/query/series")
+    public ResponseEntity<List<MetricSeriesResponse>> querySeries(
+            @RequestBody @Valid MetricSeriesRequest request) {
+        return ResponseEntity.ok(queryService.querySeries(request));
+    }
+
+    /**
+     * Same as {@link #querySeries}, streamed as newline-delimited JSON (one
+     * series per line, written as soon as it is complete) when the client
+     * accepts {@code application/x-ndjson}.
+     */
+    @PostMapping(path = "/query/series", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> querySeriesNdjson(
+            @RequestBody @Valid MetricSeriesRequest request) {
+        queryService.validate(request);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(responseWriter.<MetricSeriesResponse>ndjson(sink -> queryService.querySeries(request, sink)));
+    }
+
+    /**
+     * Same as {@link #querySeries}, streamed in the binary format.
+     */
+    @PostMapping(path = "/query/series", produces = MetricWireFormat.MEDIA_TYPE_VALUE)
+    public ResponseEntity<StreamingResponseBody> querySeriesBinary(
+            @RequestBody @Valid MetricSeriesRequest request) {
+        queryService.validate(request);
+        return ResponseEntity.ok()
+                .contentType(MetricWireFormat.MEDIA_TYPE)
+                .body(responseWriter.<MetricSeriesResponse>binary(
+                        sink -> queryService.querySeries(request, sink), MetricWireWriter::write));
+    }
+
+    /**
+     * Opens a live subscription: a server-sent event stream that starts with
+     * the statistic of every selected sensor + metric group and then sends a
+     * group again whenever it receives readings. Without {@code window} the
+     * statistic covers the latest reading, as in a query without a range;
+     * with it (ISO-8601, e.g. {@code PT1H}) the trailing window up to now.
+     * A GET with query parameters, so browsers can use {@code EventSource}.
+     */
+    @GetMapping(path = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(
+            @RequestParam(required = false) List<String> sensorIds,
+            @RequestParam(required = false) List<MetricType> metrics,
+            @RequestParam StatisticType statistic,
+            @RequestParam(required = false) String window) {
+        if (subscriptions == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Duration trailing = window == null ? null : parseWindow(window);
+        return ResponseEntity.ok(subscriptions.subscribe(new SubscriptionRequest(sensorIds, metrics, statistic, trailing)));
+    }
+
+    /**
+     * Returns the statistic per sensor + metric over the trailing
+     * {@code window} (ISO-8601, e.g. {@code PT24H}) up to now. Windows listed
+     * in {@code weather.query.rolling.windows} are served from continuously
+     * maintained aggregates.
+     */
+    @GetMapping("/query/rolling")
+    public ResponseEntity<List<MetricStatisticResponse>> queryRolling(
+            @RequestParam(required = false) List<String> sensorIds,
+            @RequestParam(required = false) List<MetricType> metrics,
+            @RequestParam StatisticType statistic,
+            @RequestParam String window) {
+        return ResponseEntity.ok(queryService.queryTrailing(sensorIds, metrics, statistic, parseWindow(window)));
+    }
+
+    private static Duration parseWindow(String window) {
+        try {
+            return Duration.parse(window);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("window must be an ISO-8601 duration such as PT1H.");
+        }
+    }
+
+    /**
+     * Reports hit, miss, eviction and invalidation counts of the query result cache.
+     */
+    @GetMapping("/query/cache")
+    public ResponseEntity<QueryCacheStats> queryCache() {
+        if (resultCache == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(resultCache.stats());
+    }
+
+    /**
+     * Reports what the last retention purge removed and how long it took.
+     */
+    @GetMapping("/retention")
+    public ResponseEntity<RetentionReport> retention() {
+        if (retentionPurge == null) {
+            return ResponseEntity.notFound().build();
+        }
+        RetentionReport lastRun = retentionPurge.lastRun();
+        return lastRun == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(lastRun);
+    }
 }
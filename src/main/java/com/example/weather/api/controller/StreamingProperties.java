@@ -0,0 +1,16 @@
+package com.example.weather.api.controller;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for NDJSON query responses.
+ *
+ * @param flushEvery results written between two flushes to the client; 1 sends
+ *                   every result immediately, higher values mean fewer, larger
+ *                   network writes
+ */
+@ConfigurationProperties(prefix = "weather.query.streaming")
+public record StreamingProperties(
+        @DefaultValue("64") int flushEvery
+) { }
@@ -0,0 +1,107 @@
+package com.example.weather.api.controller;
+
+import com.example.weather.api.wire.MetricWireFormat;
+import com.example.weather.api.wire.MetricWireWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes query results into the response while they are produced, as
+ * newline-delimited JSON or in the binary {@link MetricWireFormat}.
+ *
+ * Each result is encoded straight into the response as soon as the
+ * producer hands it over, so no response-sized buffer is ever built. Output
+ * is flushed every {@code weather.query.streaming.flush-every} results and
+ * at the end.
+ */
+@Component
+class StreamingResponseWriter {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final int flushEvery;
+
+    StreamingResponseWriter(ObjectMapper objectMapper, StreamingProperties properties) {
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer();
+        this.flushEvery = Math.max(1, properties.flushEvery());
+    }
+
+    /**
+     * A response body that runs {@code producer} and writes every result it
+     * passes to the sink as one JSON line.
+     */
+    <T> StreamingResponseBody ndjson(Consumer<Consumer<T>> producer) {
+        return out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // lines are separated by '\n' below, not by Jackson's default space
+                generator.setRootValueSeparator(null);
+                run(producer, value -> {
+                    writer.writeValue(generator, value);
+                    generator.writeRaw('\n');
+                }, () -> {
+                    generator.flush();
+                    out.flush();
+                });
+            }
+        };
+    }
+
+    /**
+     * A response body that runs {@code producer} and writes every result it
+     * passes to the sink as one {@link MetricWireFormat} record.
+     */
+    <T> StreamingResponseBody binary(Consumer<Consumer<T>> producer, WireEncoder<T> encoder) {
+        return out -> {
+            BufferedOutputStream buffered = new BufferedOutputStream(out);
+            MetricWireWriter wire = new MetricWireWriter(buffered);
+            run(producer, value -> encoder.write(wire, value), buffered::flush);
+        };
+    }
+
+    private <T> void run(Consumer<Consumer<T>> producer, Encoder<T> encoder, Flush flush) throws IOException {
+        int[] unflushed = new int[1];
+        try {
+            producer.accept(value -> {
+                try {
+                    encoder.write(value);
+                    if (++unflushed[0] >= flushEvery) {
+                        flush.flush();
+                        unflushed[0] = 0;
+                    }
+                } catch (IOException ex) {
+                    // typically the client went away; ends the query
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        flush.flush();
+    }
+
+    @FunctionalInterface
+    interface WireEncoder<T> {
+        void write(MetricWireWriter writer, T value) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Encoder<T> {
+        void write(T value) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Flush {
+        void flush() throws IOException;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.weather.api.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch ingestion: how many readings were stored and
+ * why the others were rejected.
+ */
+public record BatchIngestionResponse(
+        int accepted,
+        int rejected,
+        List<ItemError> errors
+) {
+
+    /**
+     * Problem with a single item; {@code index} is its 0-based position in the batch.
+     */
+    public record ItemError(
+            int index,
+            String message
+    ) { }
+}
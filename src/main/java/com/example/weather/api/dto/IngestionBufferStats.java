@@ -0,0 +1,21 @@
+package com.example.weather.api.dto;
+
+/**
+ * Snapshot of the write-behind ingestion buffer.
+ *
+ * Flush latencies are in milliseconds and cover one database batch.
+ * {@code deadLettered} counts readings dropped because they could not be
+ * stored on their own.
+ */
+public record IngestionBufferStats(
+        int queueDepth,
+        int capacity,
+        long accepted,
+        long rejected,
+        long persisted,
+        long failedFlushes,
+        long deadLettered,
+        double lastFlushMillis,
+        double maxFlushMillis,
+        double avgFlushMillis
+) { }
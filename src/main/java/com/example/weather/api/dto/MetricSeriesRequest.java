@@ -0,0 +1,22 @@
+package com.example.weather.api.dto;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.SeriesInterval;
+import com.example.weather.api.enums.StatisticType;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Filters for a downsampled series: one statistic per {@code interval}
+ * between {@code from} and {@code to}.
+ */
+public record MetricSeriesRequest(
+        List<String> sensorIds,
+        List<MetricType> metrics,
+        @NotNull StatisticType statistic,
+        @NotNull SeriesInterval interval,
+        @NotNull Instant from,
+        @NotNull Instant to
+) { }
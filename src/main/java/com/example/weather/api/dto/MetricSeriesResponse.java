@@ -0,0 +1,23 @@
+package com.example.weather.api.dto;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.SeriesInterval;
+import com.example.weather.api.enums.StatisticType;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Downsampled series for one sensor and metric. {@code from} and {@code to}
+ * are the requested range widened to whole intervals; intervals without
+ * readings have no point.
+ */
+public record MetricSeriesResponse(
+        String sensorId,
+        MetricType metric,
+        StatisticType statistic,
+        SeriesInterval interval,
+        Instant from,
+        Instant to,
+        List<SeriesPoint> points
+) { }
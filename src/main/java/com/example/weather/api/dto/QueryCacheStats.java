@@ -0,0 +1,16 @@
+package com.example.weather.api.dto;
+
+/**
+ * Snapshot of the query result cache.
+ *
+ * Max weight is counted in sensor + metric groups over all cached results.
+ */
+public record QueryCacheStats(
+        long entries,
+        long maxWeight,
+        long hits,
+        long misses,
+        long evictions,
+        long invalidations,
+        double hitRate
+) { }
@@ -0,0 +1,19 @@
+package com.example.weather.api.dto;
+
+import java.time.Instant;
+
+/**
+ * Outcome of one retention purge run.
+ *
+ * Counts are rows removed; archived readings were removed with their segment files.
+ */
+public record RetentionReport(
+        Instant startedAt,
+        long durationMillis,
+        long readings,
+        long rollups,
+        long rollupBins,
+        int archiveSegments,
+        long archivedReadings,
+        boolean completed
+) { }
@@ -0,0 +1,18 @@
+package com.example.weather.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One point of a downsampled series, written as a two-element array
+ * {@code ["2025-11-10T00:15:00Z", 21.4500]} to keep long series small.
+ */
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"start", "value"})
+public record SeriesPoint(
+        Instant start,
+        BigDecimal value
+) { }
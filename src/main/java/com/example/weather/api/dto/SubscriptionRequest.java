@@ -0,0 +1,20 @@
+package com.example.weather.api.dto;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.StatisticType;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Filter of a live subscription: the statistic per sensor + metric, over the
+ * trailing {@code window} (or of the latest data when it is null).
+ * Null or empty {@code sensorIds} / {@code metrics} select all of them.
+ */
+public record SubscriptionRequest(
+        List<String> sensorIds,
+        List<MetricType> metrics,
+        @NotNull StatisticType statistic,
+        Duration window
+) { }
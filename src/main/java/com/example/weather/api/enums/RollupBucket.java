@@ -0,0 +1,39 @@
+package com.example.weather.api.enums;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Bucket sizes of the pre-aggregated rollups, finest first. Buckets are aligned to UTC.
+ */
+public enum RollupBucket {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    RollupBucket(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public Duration duration() {
+        return unit.getDuration();
+    }
+
+    /**
+     * Start of the bucket containing {@code instant}.
+     */
+    public Instant floor(Instant instant) {
+        return instant.truncatedTo(unit);
+    }
+
+    /**
+     * Start of the first bucket that begins at or after {@code instant}.
+     */
+    public Instant ceil(Instant instant) {
+        Instant floor = floor(instant);
+        return floor.equals(instant) ? floor : floor.plus(duration());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.weather.api.enums;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Point spacing of a downsampled series, written as in the request ("15m").
+ *
+ * Intervals are aligned to the epoch (so to UTC midnight for whole days and
+ * hours) and each one is a whole number of {@link #bucket()} rollups.
+ */
+public enum SeriesInterval {
+    ONE_MINUTE("1m", Duration.ofMinutes(1), RollupBucket.MINUTE),
+    FIVE_MINUTES("5m", Duration.ofMinutes(5), RollupBucket.MINUTE),
+    FIFTEEN_MINUTES("15m", Duration.ofMinutes(15), RollupBucket.MINUTE),
+    ONE_HOUR("1h", Duration.ofHours(1), RollupBucket.HOUR),
+    SIX_HOURS("6h", Duration.ofHours(6), RollupBucket.HOUR),
+    ONE_DAY("1d", Duration.ofDays(1), RollupBucket.DAY);
+
+    private final String code;
+    private final Duration duration;
+    private final RollupBucket bucket;
+
+    SeriesInterval(String code, Duration duration, RollupBucket bucket) {
+        this.code = code;
+        this.duration = duration;
+        this.bucket = bucket;
+    }
+
+    @JsonValue
+    public String code() {
+        return code;
+    }
+
+    public Duration duration() {
+        return duration;
+    }
+
+    /**
+     * The coarsest rollup bucket that evenly divides this interval.
+     */
+    public RollupBucket bucket() {
+        return bucket;
+    }
+
+    /**
+     * Start of the interval containing {@code instant}.
+     */
+    public Instant floor(Instant instant) {
+        long seconds = duration.getSeconds();
+        return Instant.ofEpochSecond(Math.floorDiv(instant.getEpochSecond(), seconds) * seconds);
+    }
+
+    /**
+     * Start of the first interval that begins at or after {@code instant}.
+     */
+    public Instant ceil(Instant instant) {
+        Instant floor = floor(instant);
+        return floor.equals(instant) ? floor : floor.plus(duration);
+    }
+}
@@ -2,10 +2,46 @@ package com.example.weather.api.enums;
 
 /**
  * Supported statistics for a metric.
+ *
+ * STDDEV is the population standard deviation. The percentiles (P50 is the
+ * median) are estimated from a quantile sketch, within 1% of the true value.
  */
 public enum StatisticType {
     MIN,
     MAX,
     SUM,
-    AVG
+    AVG,
+    COUNT,
+    STDDEV(Double.NaN),
+    P50(0.50),
+    P90(0.90),
+    P95(0.95),
+    P99(0.99);
+
+    private final boolean distribution;
+    private final double quantile;
+
+    StatisticType() {
+        this.distribution = false;
+        this.quantile = Double.NaN;
+    }
+
+    StatisticType(double quantile) {
+        this.distribution = true;
+        this.quantile = quantile;
+    }
+
+    /**
+     * True if the statistic needs more than count, sum, min and max.
+     */
+    public boolean needsDistribution() {
+        return distribution;
+    }
+
+    /**
+     * The quantile (0..1) of a percentile statistic, NaN for all others.
+     */
+    public double quantile() {
+        return quantile;
+    }
 }
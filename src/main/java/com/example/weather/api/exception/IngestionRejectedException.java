@@ -0,0 +1,21 @@
+package com.example.weather.api.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown when readings cannot be accepted right now, e.g. because the
+ * write-behind buffer is full. Clients should retry after {@link #getRetryAfter()}.
+ */
+public class IngestionRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public IngestionRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.weather.api.exception;
+
+/**
+ * Thrown when a live subscription cannot be opened right now, because the
+ * limit of open subscriptions is reached.
+ */
+public class SubscriptionRejectedException extends RuntimeException {
+
+    public SubscriptionRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.weather.api.maintenance;
+
+import com.example.weather.api.archive.ArchiveProperties;
+import com.example.weather.api.archive.ChunkArchive;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Moves readings older than {@code weather.archive.seal-after} into the
+ * {@link ChunkArchive}. Runs once at startup and then every hour by
+ * default; a run with nothing old enough only costs one query.
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.archive", name = "enabled", havingValue = "true")
+public class ArchiveSealTask {
+
+    private final ChunkArchive archive;
+    private final ArchiveProperties properties;
+
+    public ArchiveSealTask(ChunkArchive archive, ArchiveProperties properties) {
+        this.archive = archive;
+        this.properties = properties;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${weather.archive.seal-interval:PT1H}")
+    public void seal() {
+        archive.sealBefore(Instant.now().minus(properties.sealAfter()));
+    }
+}
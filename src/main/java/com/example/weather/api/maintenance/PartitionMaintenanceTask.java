@@ -0,0 +1,48 @@
+package com.example.weather.api.maintenance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Keeps future partitions of {@code metric_records} in place, so new readings
+ * never land in the default partition.
+ *
+ * Runs once at startup and then every few hours; creating a partition that
+ * already exists is a no-op inside the database function, and rows already
+ * in the default partition for a new partition's range are moved into it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.storage.partitioning", name = "enabled", havingValue = "true")
+public class PartitionMaintenanceTask {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceTask.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PartitioningProperties properties;
+
+    public PartitionMaintenanceTask(JdbcTemplate jdbcTemplate, PartitioningProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${weather.storage.partitioning.check-interval:PT6H}")
+    public void ensurePartitions() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        Integer created = jdbcTemplate.queryForObject(
+                "SELECT ensure_metric_records_partitions(?, ?)",
+                Integer.class,
+                now,
+                now.plus(properties.ahead()));
+
+        if (created != null && created > 0) {
+            log.info("Created {} metric_records partition(s) up to {}", created, now.plus(properties.ahead()));
+        }
+    }
+}
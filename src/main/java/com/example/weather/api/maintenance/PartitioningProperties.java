@@ -0,0 +1,19 @@
+package com.example.weather.api.maintenance;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the time-partitioned {@code metric_records} layout
+ * (PostgreSQL only, see {@code db/migration/postgresql}).
+ *
+ * @param enabled whether partitions are created ahead of time by the application
+ * @param ahead   how far into the future partitions are kept ready
+ */
+@ConfigurationProperties(prefix = "weather.storage.partitioning")
+public record PartitioningProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("60d") Duration ahead
+) { }
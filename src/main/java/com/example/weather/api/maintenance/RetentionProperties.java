@@ -0,0 +1,61 @@
+package com.example.weather.api.maintenance;
+
+import com.example.weather.api.enums.MetricType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Settings for {@link RetentionPurgeTask}.
+ *
+ * <p>{@code raw} and {@code rollups} apply to every metric without an entry
+ * in {@code metrics}, e.g. {@code weather.retention.metrics.temperature.raw=90d}.
+ * Rollups are never dropped before the raw readings they summarize: the
+ * query planner answers whole buckets from rollups only.</p>
+ *
+ * @param enabled    purge expired data in the background
+ * @param raw        how long raw readings are kept (in the table and in the archive)
+ * @param rollups    how long rollup buckets are kept
+ * @param metrics    per-metric overrides of {@code raw} and {@code rollups}
+ * @param batchSize  most rows deleted by one statement
+ * @param batchDelay pause after every statement, to leave the database to ingest and queries
+ */
+@ConfigurationProperties(prefix = "weather.retention")
+public record RetentionProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("30d") Duration raw,
+        @DefaultValue("730d") Duration rollups,
+        Map<MetricType, Policy> metrics,
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("20ms") Duration batchDelay
+) {
+
+    public RetentionProperties {
+        metrics = metrics == null ? Map.of() : Map.copyOf(metrics);
+    }
+
+    /**
+     * How long raw readings of {@code metric} are kept.
+     */
+    public Duration rawFor(MetricType metric) {
+        Policy policy = metrics.get(metric);
+        return policy != null && policy.raw() != null ? policy.raw() : raw;
+    }
+
+    /**
+     * How long rollups of {@code metric} are kept; at least as long as its raw readings.
+     */
+    public Duration rollupsFor(MetricType metric) {
+        Policy policy = metrics.get(metric);
+        Duration rollupRetention = policy != null && policy.rollups() != null ? policy.rollups() : rollups;
+        Duration rawRetention = rawFor(metric);
+        return rollupRetention.compareTo(rawRetention) < 0 ? rawRetention : rollupRetention;
+    }
+
+    /**
+     * Retention of one metric; unset fields fall back to the defaults.
+     */
+    public record Policy(Duration raw, Duration rollups) { }
+}
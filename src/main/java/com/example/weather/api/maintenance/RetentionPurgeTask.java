@@ -0,0 +1,203 @@
+package com.example.weather.api.maintenance;
+
+import com.example.weather.api.archive.ChunkArchive;
+import com.example.weather.api.dto.RetentionReport;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.RollupBucket;
+import com.example.weather.api.repository.MetricArchiveRepository.ArchiveSegmentRow;
+import com.example.weather.api.repository.RetentionRepository;
+import com.example.weather.api.service.MetricIngestionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deletes data older than its retention (see {@link RetentionProperties}):
+ * raw readings, rollups with their sketch bins, and archive segments.
+ *
+ * <p>Runs once at startup and then every hour by default. Work is cut into
+ * statements of at most {@code batch-size} rows with a {@code batch-delay}
+ * pause after each, so a large backlog is worked off gradually instead of in
+ * one long-running delete. Listeners are told what was purged, so in-memory
+ * engines and cached results stop serving it.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.retention", name = "enabled", havingValue = "true")
+public class RetentionPurgeTask {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionPurgeTask.class);
+
+    private static final MetricType[] METRICS = MetricType.values();
+
+    private final RetentionRepository repository;
+    private final RetentionProperties properties;
+    private final ObjectProvider<MetricIngestionListener> listeners;
+    // null when weather.archive.enabled=false
+    private final ChunkArchive archive;
+
+    // a lock rather than synchronized: a virtual thread sleeping or waiting on JDBC inside a
+    // synchronized block would pin its carrier thread for the whole purge
+    private final ReentrantLock running = new ReentrantLock();
+    private volatile RetentionReport lastRun;
+
+    public RetentionPurgeTask(RetentionRepository repository,
+                              RetentionProperties properties,
+                              ObjectProvider<MetricIngestionListener> listeners,
+                              ObjectProvider<ChunkArchive> archive) {
+        this.repository = repository;
+        this.properties = properties;
+        this.listeners = listeners;
+        this.archive = archive.getIfAvailable();
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${weather.retention.purge-interval:PT1H}")
+    public RetentionReport purge() {
+        return purge(Instant.now());
+    }
+
+    /**
+     * Purges everything that expired at {@code startedAt}.
+     */
+    RetentionReport purge(Instant startedAt) {
+        running.lock();
+        try {
+            return purgeLocked(startedAt);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private RetentionReport purgeLocked(Instant startedAt) {
+        long started = System.nanoTime();
+        Counts counts = new Counts();
+        boolean completed = false;
+        try {
+            List<Integer> sensorKeys = repository.findSensorKeys();
+            for (MetricType metric : METRICS) {
+                Instant rawHorizon = startedAt.minus(properties.rawFor(metric));
+                long before = counts.total();
+                for (int sensorKey : sensorKeys) {
+                    purgeReadings(sensorKey, metric, rawHorizon, counts);
+                }
+                purgeRollups(metric, startedAt.minus(properties.rollupsFor(metric)), sensorKeys.size(), counts);
+                if (counts.total() > before) {
+                    // rollups expire no earlier than raw readings, so this covers both
+                    notifyPurged(metric, rawHorizon);
+                }
+            }
+            if (archive != null) {
+                purgeArchive(startedAt, counts);
+            }
+            completed = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("Retention purge interrupted");
+        }
+
+        RetentionReport report = new RetentionReport(startedAt,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), counts.readings, counts.rollups,
+                counts.rollupBins, counts.archiveSegments, counts.archivedReadings, completed);
+        lastRun = report;
+        if (counts.total() > 0) {
+            log.info("Retention purge removed {} reading(s), {} rollup(s), {} rollup bin(s) and {} archive "
+                            + "segment(s) with {} reading(s) in {} ms", report.readings(), report.rollups(),
+                    report.rollupBins(), report.archiveSegments(), report.archivedReadings(),
+                    report.durationMillis());
+        }
+        return report;
+    }
+
+    /**
+     * The most recent run, or null before the first one finished.
+     */
+    public RetentionReport lastRun() {
+        return lastRun;
+    }
+
+    private void purgeReadings(int sensorKey, MetricType metric, Instant horizon, Counts counts)
+            throws InterruptedException {
+        int deleted;
+        do {
+            deleted = repository.deleteReadings(sensorKey, metric, horizon, properties.batchSize());
+            counts.readings += deleted;
+            if (deleted > 0) {
+                pause();
+            }
+        } while (deleted == properties.batchSize());
+    }
+
+    /**
+     * Deletes whole buckets that ended before {@code horizon}, a time slice at
+     * a time; a slice spans as many buckets as fit into one batch when every
+     * sensor has a rollup in each of them.
+     */
+    private void purgeRollups(MetricType metric, Instant horizon, int sensorCount, Counts counts)
+            throws InterruptedException {
+        long bucketsPerSlice = Math.max(1, properties.batchSize() / Math.max(1, sensorCount));
+        for (RollupBucket bucket : RollupBucket.values()) {
+            Instant cutoff = bucket.floor(horizon);
+            Duration span = bucket.duration().multipliedBy(bucketsPerSlice);
+            Instant from;
+            while ((from = repository.oldestRollup(metric, bucket, cutoff)) != null) {
+                Instant to = from.plus(span).isBefore(cutoff) ? from.plus(span) : cutoff;
+                counts.rollupBins += repository.deleteRollupBins(metric, bucket, from, to);
+                counts.rollups += repository.deleteRollups(metric, bucket, from, to);
+                pause();
+            }
+        }
+    }
+
+    /**
+     * A segment holds every metric, so it goes once the longest raw retention has passed.
+     */
+    private void purgeArchive(Instant now, Counts counts) {
+        Duration longest = Duration.ZERO;
+        for (MetricType metric : METRICS) {
+            if (properties.rawFor(metric).compareTo(longest) > 0) {
+                longest = properties.rawFor(metric);
+            }
+        }
+        Instant horizon = now.minus(longest);
+        List<ArchiveSegmentRow> dropped = archive.dropBefore(horizon);
+        if (dropped.isEmpty()) {
+            return;
+        }
+        counts.archiveSegments += dropped.size();
+        counts.archivedReadings += dropped.stream().mapToLong(ArchiveSegmentRow::readingCount).sum();
+        for (MetricType metric : METRICS) {
+            notifyPurged(metric, horizon);
+        }
+    }
+
+    private void notifyPurged(MetricType metric, Instant before) {
+        listeners.orderedStream().forEach(listener -> listener.onPurged(metric, before));
+    }
+
+    private void pause() throws InterruptedException {
+        if (!properties.batchDelay().isZero()) {
+            Thread.sleep(properties.batchDelay().toMillis());
+        }
+    }
+
+    private static final class Counts {
+
+        long readings;
+        long rollups;
+        long rollupBins;
+        int archiveSegments;
+        long archivedReadings;
+
+        long total() {
+            return readings + rollups + rollupBins + archivedReadings;
+        }
+    }
+}
@@ -8,16 +8,38 @@ import java.time.Instant;
 
 /**
  * One stored sensor reading.
+ *
+ * The schema itself is owned by the Flyway migrations in {@code db/migration};
+ * the index declarations below document what those migrations create.
  */
 @Entity
-@Table(name = "metric_records")
+@Table(name = "metric_records", indexes = {
+        @Index(name = "idx_metric_records_key_time", columnList = "sensor_key, metric_type, recorded_at"),
+        @Index(name = "idx_metric_records_latest", columnList = "sensor_key, metric_type, recorded_at DESC, metric_value")
+})
 public class MetricRecord {
 
+    /**
+     * Pooled sequence ids let Hibernate batch inserts; IDENTITY would force
+     * one round-trip per row to read back the generated key.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "metric_records_seq")
+    @SequenceGenerator(name = "metric_records_seq", sequenceName = "metric_records_seq", allocationSize = 100)
     private Long id;
 
-    @Column(name = "sensor_id", nullable = false)
+    /**
+     * Key of the sensor in the {@code sensors} dictionary, see
+     * {@link com.example.weather.api.repository.SensorRegistry}.
+     */
+    @Column(name = "sensor_key", nullable = false)
+    private int sensorKey;
+
+    /**
+     * Not stored; set for records created on ingest, so listeners do not
+     * have to look the id up again. Null on records loaded by JPA.
+     */
+    @Transient
     private String sensorId;
 
     @Enumerated(EnumType.STRING)
@@ -34,7 +56,8 @@ public class MetricRecord {
         // for JPA
     }
 
-    public MetricRecord(String sensorId, MetricType metricType, BigDecimal value, Instant timestamp) {
+    public MetricRecord(int sensorKey, String sensorId, MetricType metricType, BigDecimal value, Instant timestamp) {
+        this.sensorKey = sensorKey;
         this.sensorId = sensorId;
         this.metricType = metricType;
         this.value = value;
@@ -45,6 +68,10 @@ public class MetricRecord {
         return id;
     }
 
+    public int getSensorKey() {
+        return sensorKey;
+    }
+
     public String getSensorId() {
         return sensorId;
     }
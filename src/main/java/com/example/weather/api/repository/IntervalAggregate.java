@@ -0,0 +1,11 @@
+package com.example.weather.api.repository;
+
+import java.time.Instant;
+
+/**
+ * Aggregate of one sensor and metric over the series interval starting at {@code start}.
+ */
+public record IntervalAggregate(
+        Instant start,
+        MetricAggregate aggregate
+) { }
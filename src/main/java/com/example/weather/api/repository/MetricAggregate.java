@@ -0,0 +1,67 @@
+package com.example.weather.api.repository;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.enums.MetricType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Comparator;
+
+/**
+ * Aggregated values for one sensor and metric, as computed by the database.
+ *
+ * <p>{@code latestTimestamp} is the newest reading that went into the aggregate.
+ * In latest-data mode every reading in the group shares that timestamp.</p>
+ *
+ * <p>{@code distribution} (variance and quantile sketch) is only filled in
+ * when the query asked for a statistic that needs it, otherwise it is null.</p>
+ *
+ * <p>Aggregates of the same sensor + metric over disjoint sets of readings
+ * can be combined with {@link #merge}.</p>
+ */
+public record MetricAggregate(
+        String sensorId,
+        MetricType metric,
+        long count,
+        BigDecimal sum,
+        BigDecimal min,
+        BigDecimal max,
+        Instant latestTimestamp,
+        Distribution distribution
+) {
+
+    public MetricAggregate(String sensorId, MetricType metric, long count, BigDecimal sum,
+                           BigDecimal min, BigDecimal max, Instant latestTimestamp) {
+        this(sensorId, metric, count, sum, min, max, latestTimestamp, null);
+    }
+
+    /**
+     * Order of query results: by sensor id, then by metric name
+     * (the order the database produces for the string-mapped enum).
+     */
+    public static final Comparator<MetricAggregate> RESULT_ORDER = Comparator
+            .comparing(MetricAggregate::sensorId)
+            .thenComparing(a -> a.metric().name());
+
+    /**
+     * The distribution survives only if both sides carry one.
+     */
+    public MetricAggregate merge(MetricAggregate other) {
+        Distribution merged = null;
+        if (distribution != null && other.distribution != null) {
+            merged = new Distribution();
+            merged.merge(distribution);
+            merged.merge(other.distribution);
+        }
+        return new MetricAggregate(
+                sensorId,
+                metric,
+                count + other.count,
+                sum.add(other.sum),
+                min.min(other.min),
+                max.max(other.max),
+                latestTimestamp.isAfter(other.latestTimestamp) ? latestTimestamp : other.latestTimestamp,
+                merged
+        );
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.weather.api.repository;
+
+import com.example.weather.api.enums.MetricType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Database side of the chunk archive: picks the readings that can be moved
+ * out of {@code metric_records}, deletes them once they are archived, and
+ * keeps the registry of archive files in {@code metric_archive_segments}.
+ *
+ * <p>The reading(s) with the latest timestamp of every sensor + metric are
+ * never archivable, so latest-data queries keep working on the table
+ * alone.</p>
+ */
+@Repository
+public class MetricArchiveRepository {
+
+    // a reading that is not the newest of its sensor + metric
+    private static final String ARCHIVABLE = """
+            r.recorded_at < (SELECT MAX(l.recorded_at) FROM metric_records l
+                             WHERE l.sensor_key = r.sensor_key AND l.metric_type = r.metric_type)""";
+
+    private static final int CURSOR_FETCH_SIZE = 1000;
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    // same data source, but fetches rows in chunks (PostgreSQL otherwise reads the whole result)
+    private final NamedParameterJdbcTemplate cursor;
+
+    public MetricArchiveRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        JdbcTemplate cursorTemplate = new JdbcTemplate(jdbc.getJdbcTemplate().getDataSource());
+        cursorTemplate.setFetchSize(CURSOR_FETCH_SIZE);
+        this.cursor = new NamedParameterJdbcTemplate(cursorTemplate);
+    }
+
+    /**
+     * Timestamp of the oldest archivable reading before {@code before}, or null if there is none.
+     */
+    public Instant oldestArchivable(Instant before) {
+        OffsetDateTime oldest = jdbc.queryForObject(
+                "SELECT MIN(r.recorded_at) FROM metric_records r WHERE r.recorded_at < :before AND " + ARCHIVABLE,
+                new MapSqlParameterSource("before", utc(before)),
+                OffsetDateTime.class);
+        return oldest == null ? null : oldest.toInstant();
+    }
+
+    /**
+     * Streams the archivable readings in {@code [from, to)} through a cursor,
+     * ordered by sensor, metric and time. Must run inside a transaction.
+     */
+    public void streamArchivable(Instant from, Instant to, ArchivableReadingHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", utc(from))
+                .addValue("to", utc(to));
+        cursor.query("""
+                SELECT r.id, s.sensor_id, r.metric_type, r.metric_value, r.recorded_at
+                FROM metric_records r
+                JOIN sensors s ON s.sensor_key = r.sensor_key
+                WHERE r.recorded_at >= :from AND r.recorded_at < :to AND %s
+                ORDER BY r.sensor_key, r.metric_type, r.recorded_at
+                """.formatted(ARCHIVABLE),
+                params,
+                (RowCallbackHandler) rs -> handler.accept(rs.getLong(1), new MetricReading(
+                        rs.getString(2),
+                        MetricType.valueOf(rs.getString(3)),
+                        rs.getBigDecimal(4),
+                        rs.getObject(5, OffsetDateTime.class).toInstant())));
+    }
+
+    /**
+     * Deletes readings by id; {@code [from, to)} must contain all of them and
+     * lets a partitioned table skip the other partitions.
+     *
+     * @return the number of rows deleted
+     */
+    public long deleteReadings(long[] ids, int count, Instant from, Instant to) {
+        long deleted = 0;
+        for (int start = 0; start < count; start += DELETE_BATCH_SIZE) {
+            long[] batch = Arrays.copyOfRange(ids, start, Math.min(count, start + DELETE_BATCH_SIZE));
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("ids", Arrays.stream(batch).boxed().toList())
+                    .addValue("from", utc(from))
+                    .addValue("to", utc(to));
+            deleted += jdbc.update("""
+                    DELETE FROM metric_records
+                    WHERE id IN (:ids) AND recorded_at >= :from AND recorded_at < :to""", params);
+        }
+        return deleted;
+    }
+
+    public List<ArchiveSegmentRow> findSegments() {
+        return jdbc.query("""
+                SELECT segment_id, file_name, range_start, range_end, reading_count, chunk_count,
+                       byte_size, sealed_at
+                FROM metric_archive_segments
+                ORDER BY segment_id""",
+                (rs, rowNum) -> new ArchiveSegmentRow(
+                        rs.getLong(1),
+                        rs.getString(2),
+                        rs.getObject(3, OffsetDateTime.class).toInstant(),
+                        rs.getObject(4, OffsetDateTime.class).toInstant(),
+                        rs.getLong(5),
+                        rs.getInt(6),
+                        rs.getLong(7),
+                        rs.getObject(8, OffsetDateTime.class).toInstant()));
+    }
+
+    public void insertSegment(ArchiveSegmentRow segment) {
+        jdbc.update("""
+                INSERT INTO metric_archive_segments (segment_id, file_name, range_start, range_end,
+                                                     reading_count, chunk_count, byte_size, sealed_at)
+                VALUES (:id, :fileName, :rangeStart, :rangeEnd, :readings, :chunks, :bytes, :sealedAt)""",
+                new MapSqlParameterSource()
+                        .addValue("id", segment.segmentId())
+                        .addValue("fileName", segment.fileName())
+                        .addValue("rangeStart", utc(segment.rangeStart()))
+                        .addValue("rangeEnd", utc(segment.rangeEnd()))
+                        .addValue("readings", segment.readingCount())
+                        .addValue("chunks", segment.chunkCount())
+                        .addValue("bytes", segment.byteSize())
+                        .addValue("sealedAt", utc(segment.sealedAt())));
+    }
+
+    public void deleteSegment(long segmentId) {
+        jdbc.update("DELETE FROM metric_archive_segments WHERE segment_id = :id",
+                new MapSqlParameterSource("id", segmentId));
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+
+    /**
+     * Receives one archivable reading together with its row id.
+     */
+    @FunctionalInterface
+    public interface ArchivableReadingHandler {
+        void accept(long id, MetricReading reading);
+    }
+
+    /**
+     * One registered archive file.
+     *
+     * @param rangeStart start of the sealed window (inclusive)
+     * @param rangeEnd   end of the sealed window (exclusive)
+     */
+    public record ArchiveSegmentRow(
+            long segmentId,
+            String fileName,
+            Instant rangeStart,
+            Instant rangeEnd,
+            long readingCount,
+            int chunkCount,
+            long byteSize,
+            Instant sealedAt
+    ) { }
+}
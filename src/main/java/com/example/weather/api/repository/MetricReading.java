@@ -0,0 +1,17 @@
+package com.example.weather.api.repository;
+
+import com.example.weather.api.enums.MetricType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Read-only view of a stored reading. Unlike {@code MetricRecord} it is not
+ * managed by the persistence context, so large result streams stay cheap.
+ */
+public record MetricReading(
+        String sensorId,
+        MetricType metric,
+        BigDecimal value,
+        Instant timestamp
+) { }
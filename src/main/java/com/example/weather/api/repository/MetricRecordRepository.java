@@ -3,13 +3,25 @@ package com.example.weather.api.repository;
 import com.example.weather.api.model.MetricRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.stream.Stream;
+
 /**
- * Simple repository for metric records.
+ * Repository for metric records.
  *
- * We intentionally keep this interface small and perform
- * filtering in the service layer so the flow is easier to follow.
+ * Filtering, grouping and aggregation are pushed down into the database
+ * through {@link MetricRecordRepositoryCustom}, so query cost depends on the
+ * number of matching rows rather than on the size of the table.
  */
-public interface MetricRecordRepository extends JpaRepository<MetricRecord, Long> {
+public interface MetricRecordRepository extends JpaRepository<MetricRecord, Long>,
+        MetricRecordRepositoryCustom {
     // JpaRepository already provides CRUD methods like:
     // findAll(), findById(), save(), deleteById(), etc.
+
+    /**
+     * Streams the reading(s) carrying the latest timestamp of every sensor + metric.
+     * Must be consumed inside a transaction and closed.
+     */
+    default Stream<MetricReading> streamLatestReadings() {
+        return streamLatestReadings(null, null);
+    }
 }
@@ -0,0 +1,57 @@
+package com.example.weather.api.repository;
+
+import com.example.weather.api.enums.MetricType;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Aggregation queries that run inside the database, plus a cursor over the
+ * matching readings for aggregation in the application.
+ *
+ * <p>A {@code null} or empty filter collection means "no filter" for that field,
+ * matching the semantics of {@code MetricQueryRequest}.</p>
+ */
+public interface MetricRecordRepositoryCustom {
+
+    /**
+     * Groups matching readings in {@code [from, to]} by sensor and metric and
+     * returns count, sum, min and max for each group.
+     */
+    List<MetricAggregate> aggregate(Collection<String> sensorIds,
+                                    Collection<MetricType> metrics,
+                                    Instant from,
+                                    Instant to);
+
+    /**
+     * Same as {@link #aggregate}, but only over the reading(s) carrying the
+     * latest timestamp of each sensor + metric.
+     */
+    List<MetricAggregate> aggregateLatest(Collection<String> sensorIds,
+                                          Collection<MetricType> metrics);
+
+    /**
+     * Streams the matching readings in {@code [from, to]} through a database
+     * cursor, in no particular order. Must be consumed inside a transaction
+     * and closed.
+     */
+    Stream<MetricReading> streamReadings(Collection<String> sensorIds,
+                                         Collection<MetricType> metrics,
+                                         Instant from,
+                                         Instant to);
+
+    /**
+     * Streams all readings recorded at or after {@code since}, ordered by
+     * series and time, like {@link #streamReadings}.
+     */
+    Stream<MetricReading> streamReadingsSince(Instant since);
+
+    /**
+     * Streams the reading(s) carrying the latest timestamp of each matching
+     * sensor + metric, like {@link #streamReadings}.
+     */
+    Stream<MetricReading> streamLatestReadings(Collection<String> sensorIds,
+                                               Collection<MetricType> metrics);
+}
@@ -0,0 +1,189 @@
+package com.example.weather.api.repository;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.model.MetricRecord;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Criteria API implementation of {@link MetricRecordRepositoryCustom}.
+ *
+ * Filters are only added when they are actually set, so the generated SQL
+ * never contains an empty IN list. Rows carry the sensor key only; sensor
+ * ids are translated through the {@link SensorRegistry} on the way in and out.
+ */
+class MetricRecordRepositoryImpl implements MetricRecordRepositoryCustom {
+
+    private static final String SENSOR_KEY = "sensorKey";
+    private static final String METRIC_TYPE = "metricType";
+    private static final String VALUE = "value";
+    private static final String TIMESTAMP = "timestamp";
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final SensorRegistry sensors;
+
+    MetricRecordRepositoryImpl(SensorRegistry sensors) {
+        this.sensors = sensors;
+    }
+
+    @Override
+    public List<MetricAggregate> aggregate(Collection<String> sensorIds,
+                                           Collection<MetricType> metrics,
+                                           Instant from,
+                                           Instant to) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<MetricRecord> root = query.from(MetricRecord.class);
+
+        List<Predicate> predicates = keyFilters(cb, root, sensorIds, metrics);
+        predicates.add(cb.between(root.get(TIMESTAMP), from, to));
+
+        return run(cb, query, root, predicates);
+    }
+
+    @Override
+    public List<MetricAggregate> aggregateLatest(Collection<String> sensorIds,
+                                                 Collection<MetricType> metrics) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<MetricRecord> root = query.from(MetricRecord.class);
+
+        List<Predicate> predicates = keyFilters(cb, root, sensorIds, metrics);
+        predicates.add(isLatest(cb, query, root));
+
+        return run(cb, query, root, predicates);
+    }
+
+    @Override
+    public Stream<MetricReading> streamReadings(Collection<String> sensorIds,
+                                                Collection<MetricType> metrics,
+                                                Instant from,
+                                                Instant to) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<MetricRecord> root = query.from(MetricRecord.class);
+
+        List<Predicate> predicates = keyFilters(cb, root, sensorIds, metrics);
+        predicates.add(cb.between(root.get(TIMESTAMP), from, to));
+
+        return stream(query, root, predicates);
+    }
+
+    @Override
+    public Stream<MetricReading> streamLatestReadings(Collection<String> sensorIds,
+                                                      Collection<MetricType> metrics) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<MetricRecord> root = query.from(MetricRecord.class);
+
+        List<Predicate> predicates = keyFilters(cb, root, sensorIds, metrics);
+        predicates.add(isLatest(cb, query, root));
+
+        return stream(query, root, predicates);
+    }
+
+    @Override
+    public Stream<MetricReading> streamReadingsSince(Instant since) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<MetricRecord> root = query.from(MetricRecord.class);
+
+        query.orderBy(cb.asc(root.get(SENSOR_KEY)), cb.asc(root.get(METRIC_TYPE)), cb.asc(root.get(TIMESTAMP)));
+        return stream(query, root, List.of(cb.greaterThanOrEqualTo(root.get(TIMESTAMP), since)));
+    }
+
+    private Stream<MetricReading> stream(CriteriaQuery<Tuple> query,
+                                         Root<MetricRecord> root,
+                                         List<Predicate> predicates) {
+        Path<Integer> sensorKey = root.get(SENSOR_KEY);
+        Path<MetricType> metric = root.get(METRIC_TYPE);
+        Path<BigDecimal> value = root.get(VALUE);
+        Path<Instant> timestamp = root.get(TIMESTAMP);
+        query.multiselect(sensorKey, metric, value, timestamp)
+                .where(predicates.toArray(Predicate[]::new));
+
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .getResultStream()
+                .map(t -> new MetricReading(sensors.idOf(t.get(sensorKey)), t.get(metric), t.get(value),
+                        t.get(timestamp)));
+    }
+
+    /**
+     * Correlated sub-select: the reading carries the newest timestamp of its sensor + metric.
+     */
+    private Predicate isLatest(CriteriaBuilder cb, CriteriaQuery<?> query, Root<MetricRecord> root) {
+        Subquery<Instant> latest = query.subquery(Instant.class);
+        Root<MetricRecord> inner = latest.from(MetricRecord.class);
+        latest.select(cb.greatest(inner.<Instant>get(TIMESTAMP)))
+                .where(cb.equal(inner.get(SENSOR_KEY), root.get(SENSOR_KEY)),
+                        cb.equal(inner.get(METRIC_TYPE), root.get(METRIC_TYPE)));
+        return cb.equal(root.get(TIMESTAMP), latest);
+    }
+
+    private List<Predicate> keyFilters(CriteriaBuilder cb,
+                                       Root<MetricRecord> root,
+                                       Collection<String> sensorIds,
+                                       Collection<MetricType> metrics) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (sensorIds != null && !sensorIds.isEmpty()) {
+            List<Integer> keys = sensors.keysOf(sensorIds);
+            // none of the sensors was ever ingested
+            predicates.add(keys.isEmpty() ? cb.disjunction() : root.get(SENSOR_KEY).in(keys));
+        }
+        if (metrics != null && !metrics.isEmpty()) {
+            predicates.add(root.get(METRIC_TYPE).in(metrics));
+        }
+        return predicates;
+    }
+
+    private List<MetricAggregate> run(CriteriaBuilder cb,
+                                      CriteriaQuery<Tuple> query,
+                                      Root<MetricRecord> root,
+                                      List<Predicate> predicates) {
+        Path<Integer> sensorKey = root.get(SENSOR_KEY);
+        Path<MetricType> metric = root.get(METRIC_TYPE);
+        Path<BigDecimal> value = root.get(VALUE);
+        Expression<Long> count = cb.count(root);
+        Expression<BigDecimal> sum = cb.sum(value);
+        Expression<BigDecimal> min = cb.min(value);
+        Expression<BigDecimal> max = cb.max(value);
+        Expression<Instant> latest = cb.greatest(root.<Instant>get(TIMESTAMP));
+
+        query.multiselect(sensorKey, metric, count, sum, min, max, latest)
+                .where(predicates.toArray(Predicate[]::new))
+                .groupBy(sensorKey, metric);
+
+        // key order is registration order, results are ordered by sensor id
+        return entityManager.createQuery(query).getResultStream()
+                .map(t -> new MetricAggregate(
+                        sensors.idOf(t.get(sensorKey)),
+                        t.get(metric),
+                        t.get(count),
+                        t.get(sum),
+                        t.get(min),
+                        t.get(max),
+                        t.get(latest)))
+                .sorted(MetricAggregate.RESULT_ORDER)
+                .toList();
+    }
+}
@@ -0,0 +1,460 @@
+package com.example.weather.api.repository;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.aggregation.ScaledAccumulator;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.RollupBucket;
+import com.example.weather.api.enums.SeriesInterval;
+import com.example.weather.api.model.MetricRecord;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads and maintains the {@code metric_rollups} table and the quantile
+ * sketch bins of every rollup bucket in {@code metric_rollup_bins}.
+ *
+ * Plain JDBC rather than JPA: rollup rows are only ever upserted and
+ * aggregated, never loaded as entities.
+ */
+@Repository
+public class MetricRollupRepository {
+
+    private static final String POSTGRES_UPSERT = """
+            INSERT INTO metric_rollups (sensor_id, metric_type, bucket_size, bucket_start,
+                                        reading_count, value_sum, min_value, max_value, last_recorded_at,
+                                        value_m2)
+            VALUES (:sensorId, :metric, :bucket, :bucketStart, :count, :sum, :min, :max, :last, :m2)
+            ON CONFLICT (sensor_id, metric_type, bucket_size, bucket_start) DO UPDATE SET
+                reading_count    = metric_rollups.reading_count + EXCLUDED.reading_count,
+                value_sum        = metric_rollups.value_sum + EXCLUDED.value_sum,
+                min_value        = LEAST(metric_rollups.min_value, EXCLUDED.min_value),
+                max_value        = GREATEST(metric_rollups.max_value, EXCLUDED.max_value),
+                last_recorded_at = GREATEST(metric_rollups.last_recorded_at, EXCLUDED.last_recorded_at),
+                value_m2         = metric_rollups.value_m2 + EXCLUDED.value_m2
+                    + POWER(CAST(metric_rollups.value_sum AS DOUBLE PRECISION) / metric_rollups.reading_count
+                            - CAST(EXCLUDED.value_sum AS DOUBLE PRECISION) / EXCLUDED.reading_count, 2)
+                      * metric_rollups.reading_count * EXCLUDED.reading_count
+                      / (metric_rollups.reading_count + EXCLUDED.reading_count)
+            """;
+
+    private static final String STANDARD_MERGE = """
+            MERGE INTO metric_rollups t
+            USING (SELECT CAST(:sensorId AS VARCHAR(255))                   AS sensor_id,
+                          CAST(:metric AS VARCHAR(32))                      AS metric_type,
+                          CAST(:bucket AS VARCHAR(16))                      AS bucket_size,
+                          CAST(:bucketStart AS TIMESTAMP(6) WITH TIME ZONE) AS bucket_start,
+                          CAST(:count AS BIGINT)                            AS reading_count,
+                          CAST(:sum AS NUMERIC(38, 4))                      AS value_sum,
+                          CAST(:min AS NUMERIC(18, 4))                      AS min_value,
+                          CAST(:max AS NUMERIC(18, 4))                      AS max_value,
+                          CAST(:last AS TIMESTAMP(6) WITH TIME ZONE)        AS last_recorded_at,
+                          CAST(:m2 AS DOUBLE PRECISION)                     AS value_m2) s
+            ON t.sensor_id = s.sensor_id AND t.metric_type = s.metric_type
+               AND t.bucket_size = s.bucket_size AND t.bucket_start = s.bucket_start
+            WHEN MATCHED THEN UPDATE SET
+                reading_count    = t.reading_count + s.reading_count,
+                value_sum        = t.value_sum + s.value_sum,
+                min_value        = LEAST(t.min_value, s.min_value),
+                max_value        = GREATEST(t.max_value, s.max_value),
+                last_recorded_at = GREATEST(t.last_recorded_at, s.last_recorded_at),
+                value_m2         = t.value_m2 + s.value_m2
+                    + POWER(CAST(t.value_sum AS DOUBLE PRECISION) / t.reading_count
+                            - CAST(s.value_sum AS DOUBLE PRECISION) / s.reading_count, 2)
+                      * t.reading_count * s.reading_count / (t.reading_count + s.reading_count)
+            WHEN NOT MATCHED THEN INSERT (sensor_id, metric_type, bucket_size, bucket_start,
+                                          reading_count, value_sum, min_value, max_value, last_recorded_at,
+                                          value_m2)
+                VALUES (s.sensor_id, s.metric_type, s.bucket_size, s.bucket_start,
+                        s.reading_count, s.value_sum, s.min_value, s.max_value, s.last_recorded_at,
+                        s.value_m2)
+            """;
+
+    private static final String POSTGRES_BIN_UPSERT = """
+            INSERT INTO metric_rollup_bins (sensor_id, metric_type, bucket_size, bucket_start, bin_key, bin_count)
+            VALUES (:sensorId, :metric, :bucket, :bucketStart, :binKey, :binCount)
+            ON CONFLICT (sensor_id, metric_type, bucket_size, bucket_start, bin_key) DO UPDATE SET
+                bin_count = metric_rollup_bins.bin_count + EXCLUDED.bin_count
+            """;
+
+    private static final String STANDARD_BIN_MERGE = """
+            MERGE INTO metric_rollup_bins t
+            USING (SELECT CAST(:sensorId AS VARCHAR(255))                   AS sensor_id,
+                          CAST(:metric AS VARCHAR(32))                      AS metric_type,
+                          CAST(:bucket AS VARCHAR(16))                      AS bucket_size,
+                          CAST(:bucketStart AS TIMESTAMP(6) WITH TIME ZONE) AS bucket_start,
+                          CAST(:binKey AS INTEGER)                          AS bin_key,
+                          CAST(:binCount AS BIGINT)                         AS bin_count) s
+            ON t.sensor_id = s.sensor_id AND t.metric_type = s.metric_type
+               AND t.bucket_size = s.bucket_size AND t.bucket_start = s.bucket_start
+               AND t.bin_key = s.bin_key
+            WHEN MATCHED THEN UPDATE SET bin_count = t.bin_count + s.bin_count
+            WHEN NOT MATCHED THEN INSERT (sensor_id, metric_type, bucket_size, bucket_start, bin_key, bin_count)
+                VALUES (s.sensor_id, s.metric_type, s.bucket_size, s.bucket_start, s.bin_key, s.bin_count)
+            """;
+
+    // Per bucket, m2 is relative to the bucket mean. Over several buckets:
+    // m2 = Σ m2_i + Σ sum_i² / n_i - (Σ sum_i)² / Σ n_i
+    private static final String MOMENT_COLUMNS = ", SUM(value_m2),"
+            + " SUM(CAST(value_sum AS DOUBLE PRECISION) * CAST(value_sum AS DOUBLE PRECISION) / reading_count)";
+
+    private static final String BINS_JOIN = """
+                LEFT JOIN metric_rollup_bins b
+                       ON b.sensor_id = r.sensor_id AND b.metric_type = r.metric_type
+                      AND b.bucket_size = r.bucket_size AND b.bucket_start = r.bucket_start""";
+
+    private static final int CURSOR_FETCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    // same data source, but fetches rows in chunks (PostgreSQL otherwise reads the whole result)
+    private final NamedParameterJdbcTemplate cursor;
+    private volatile Upserts upserts;
+
+    public MetricRollupRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        JdbcTemplate cursorTemplate = new JdbcTemplate(jdbc.getJdbcTemplate().getDataSource());
+        cursorTemplate.setFetchSize(CURSOR_FETCH_SIZE);
+        this.cursor = new NamedParameterJdbcTemplate(cursorTemplate);
+    }
+
+    /**
+     * Adds the records to every bucket size. Records are first combined per
+     * bucket in memory, so a batch costs one upsert per touched bucket (plus
+     * one per touched sketch bin) rather than one per reading, and those are
+     * sent as two JDBC batches, one for buckets and one for bins. Must run in
+     * the transaction that stores the records.
+     */
+    public void apply(List<MetricRecord> records) {
+        Map<BucketKey, Delta> deltas = new HashMap<>();
+        for (MetricRecord record : records) {
+            for (RollupBucket bucket : RollupBucket.values()) {
+                BucketKey key = new BucketKey(record.getSensorId(), record.getMetricType(), bucket,
+                        bucket.floor(record.getTimestamp()));
+                deltas.computeIfAbsent(key, k -> new Delta()).add(record);
+            }
+        }
+
+        Upserts sql = upserts();
+        // A fixed row order keeps concurrent ingest transactions from deadlocking;
+        // bins follow their bucket row in ascending key order.
+        List<Map.Entry<BucketKey, Delta>> ordered = deltas.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(BucketKey.ORDER))
+                .toList();
+        List<MapSqlParameterSource> rollupParams = new ArrayList<>(ordered.size());
+        List<MapSqlParameterSource> binParams = new ArrayList<>();
+        for (Map.Entry<BucketKey, Delta> entry : ordered) {
+            BucketKey key = entry.getKey();
+            Delta delta = entry.getValue();
+            rollupParams.add(delta.toParams(key));
+            delta.distribution.sketch().forEachBin((binKey, binCount) ->
+                    binParams.add(keyParams(key)
+                            .addValue("binKey", binKey)
+                            .addValue("binCount", binCount)));
+        }
+        upsertAll(sql.rollup(), rollupParams);
+        upsertAll(sql.bin(), binParams);
+    }
+
+    private void upsertAll(String sql, List<MapSqlParameterSource> params) {
+        if (params.isEmpty()) {
+            return;
+        }
+        try {
+            jdbc.batchUpdate(sql, params.toArray(MapSqlParameterSource[]::new));
+        } catch (DuplicateKeyException ex) {
+            // MERGE lost insert races with a concurrent transaction; those rows
+            // exist now, so retrying the failed statements takes the update branch.
+            // Statements the driver did not report as failed were applied and must
+            // not be repeated; without their update counts that is unknowable.
+            if (!(ex.getCause() instanceof BatchUpdateException batch)) {
+                throw ex;
+            }
+            int[] counts = batch.getUpdateCounts();
+            for (int i = 0; i < params.size(); i++) {
+                if (i >= counts.length || counts[i] == Statement.EXECUTE_FAILED) {
+                    jdbc.update(sql, params.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Combines the buckets of one size starting in {@code [from, to)} per sensor + metric.
+     *
+     * <p>With {@code withDistribution}, every aggregate also carries a
+     * {@link Distribution}: the buckets' variance state is combined in the same
+     * query, and their sketch bins are summed by a second one.</p>
+     */
+    public List<MetricAggregate> aggregate(RollupBucket bucket,
+                                           Collection<String> sensorIds,
+                                           Collection<MetricType> metrics,
+                                           Instant from,
+                                           Instant to,
+                                           boolean withDistribution) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("bucket", bucket.name())
+                .addValue("from", utc(from))
+                .addValue("to", utc(to));
+        String filters = filters(params, "", sensorIds, metrics);
+
+        String sql = """
+                SELECT sensor_id, metric_type, SUM(reading_count), SUM(value_sum),
+                       MIN(min_value), MAX(max_value), MAX(last_recorded_at)%s
+                FROM metric_rollups
+                WHERE bucket_size = :bucket AND bucket_start >= :from AND bucket_start < :to%s
+                GROUP BY sensor_id, metric_type
+                """.formatted(withDistribution ? MOMENT_COLUMNS : "", filters);
+
+        List<MetricAggregate> aggregates = jdbc.query(sql, params, (rs, rowNum) -> {
+            long count = rs.getLong(3);
+            BigDecimal sum = rs.getBigDecimal(4);
+            Distribution distribution = null;
+            if (withDistribution) {
+                double total = sum.doubleValue();
+                double m2 = rs.getDouble(8) + rs.getDouble(9) - total * total / count;
+                distribution = new Distribution();
+                distribution.mergeMoments(count, total / count, Math.max(0, m2));
+            }
+            return new MetricAggregate(
+                    rs.getString(1),
+                    MetricType.valueOf(rs.getString(2)),
+                    count,
+                    sum,
+                    rs.getBigDecimal(5),
+                    rs.getBigDecimal(6),
+                    rs.getObject(7, OffsetDateTime.class).toInstant(),
+                    distribution
+            );
+        });
+        if (!withDistribution || aggregates.isEmpty()) {
+            return aggregates;
+        }
+
+        Map<SeriesKey, Distribution> distributions = new HashMap<>();
+        for (MetricAggregate aggregate : aggregates) {
+            distributions.put(new SeriesKey(aggregate.sensorId(), aggregate.metric()), aggregate.distribution());
+        }
+        jdbc.query("""
+                SELECT sensor_id, metric_type, bin_key, SUM(bin_count)
+                FROM metric_rollup_bins
+                WHERE bucket_size = :bucket AND bucket_start >= :from AND bucket_start < :to%s
+                GROUP BY sensor_id, metric_type, bin_key
+                """.formatted(filters), params, rs -> {
+            Distribution distribution = distributions.get(
+                    new SeriesKey(rs.getString(1), MetricType.valueOf(rs.getString(2))));
+            if (distribution != null) {
+                distribution.sketch().addBin(rs.getInt(3), rs.getLong(4));
+            }
+        });
+        return aggregates;
+    }
+
+    /**
+     * Combines the buckets starting in {@code [from, to)} per sensor + metric
+     * and series interval, in one pass over a cursor sorted by bucket start.
+     * Reads {@code interval.bucket()} rollups (joined with their sketch bins
+     * when {@code withDistribution}); {@code from} and {@code to} must be
+     * aligned to the interval.
+     *
+     * <p>Each interval is handed to {@code sink} as soon as its last row has
+     * been read. Intervals arrive grouped by sensor + metric, in time order
+     * within a group; the groups follow the database's collation.</p>
+     */
+    public void aggregateByInterval(SeriesInterval interval,
+                                    Collection<String> sensorIds,
+                                    Collection<MetricType> metrics,
+                                    Instant from,
+                                    Instant to,
+                                    boolean withDistribution,
+                                    Consumer<IntervalAggregate> sink) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("bucket", interval.bucket().name())
+                .addValue("from", utc(from))
+                .addValue("to", utc(to));
+
+        IntervalFolder folder = new IntervalFolder(interval, withDistribution, sink);
+        cursor.query("""
+                SELECT r.sensor_id, r.metric_type, r.bucket_start, r.reading_count, r.value_sum,
+                       r.min_value, r.max_value, r.last_recorded_at, r.value_m2%s
+                FROM metric_rollups r
+                %s
+                WHERE r.bucket_size = :bucket AND r.bucket_start >= :from AND r.bucket_start < :to%s
+                ORDER BY r.sensor_id, r.metric_type, r.bucket_start
+                """.formatted(
+                        withDistribution ? ", b.bin_key, b.bin_count" : "",
+                        withDistribution ? BINS_JOIN : "",
+                        filters(params, "r.", sensorIds, metrics)),
+                params, folder::add);
+        folder.close();
+    }
+
+    /**
+     * Sensor and metric conditions for the non-empty filters, bound into
+     * {@code params}; {@code alias} qualifies the columns (e.g. {@code "r."}).
+     */
+    private static String filters(MapSqlParameterSource params,
+                                  String alias,
+                                  Collection<String> sensorIds,
+                                  Collection<MetricType> metrics) {
+        StringBuilder sql = new StringBuilder();
+        if (sensorIds != null && !sensorIds.isEmpty()) {
+            sql.append(" AND ").append(alias).append("sensor_id IN (:sensorIds)");
+            params.addValue("sensorIds", sensorIds);
+        }
+        if (metrics != null && !metrics.isEmpty()) {
+            sql.append(" AND ").append(alias).append("metric_type IN (:metrics)");
+            params.addValue("metrics", metrics.stream().map(Enum::name).toList());
+        }
+        return sql.toString();
+    }
+
+    private Upserts upserts() {
+        Upserts sql = upserts;
+        if (sql == null) {
+            String product = jdbc.getJdbcTemplate().execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            sql = "PostgreSQL".equalsIgnoreCase(product)
+                    ? new Upserts(POSTGRES_UPSERT, POSTGRES_BIN_UPSERT)
+                    : new Upserts(STANDARD_MERGE, STANDARD_BIN_MERGE);
+            upserts = sql;
+        }
+        return sql;
+    }
+
+    private static MapSqlParameterSource keyParams(BucketKey key) {
+        return new MapSqlParameterSource()
+                .addValue("sensorId", key.sensorId())
+                .addValue("metric", key.metric().name())
+                .addValue("bucket", key.bucket().name())
+                .addValue("bucketStart", utc(key.start()));
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+
+    private record Upserts(String rollup, String bin) { }
+
+    private record IntervalKey(String sensorId, MetricType metric, Instant start) { }
+
+    private record SeriesKey(String sensorId, MetricType metric) { }
+
+    private record BucketKey(String sensorId, MetricType metric, RollupBucket bucket, Instant start) {
+
+        static final Comparator<BucketKey> ORDER = Comparator.comparing(BucketKey::sensorId)
+                .thenComparing(BucketKey::metric)
+                .thenComparing(BucketKey::bucket)
+                .thenComparing(BucketKey::start);
+    }
+
+    /**
+     * Readings of one bucket within the current batch, accumulated as scaled
+     * longs; BigDecimals are only created once per bucket for the upsert.
+     */
+    private static final class Delta {
+
+        private final ScaledAccumulator values = new ScaledAccumulator();
+        private final Distribution distribution = new Distribution();
+        private Instant last;
+
+        void add(MetricRecord record) {
+            long scaled = FixedPoint.toScaled(record.getValue());
+            values.add(scaled);
+            distribution.add(scaled);
+            last = last == null || record.getTimestamp().isAfter(last) ? record.getTimestamp() : last;
+        }
+
+        MapSqlParameterSource toParams(BucketKey key) {
+            return keyParams(key)
+                    .addValue("count", values.count())
+                    .addValue("sum", values.sum())
+                    .addValue("min", values.min())
+                    .addValue("max", values.max())
+                    .addValue("last", utc(last))
+                    .addValue("m2", distribution.m2());
+        }
+    }
+
+    /**
+     * Folds rollup rows, sorted by sensor, metric and bucket start, into one
+     * aggregate per interval. Only the interval being filled is open. With
+     * distributions every bucket arrives once per sketch bin; its rollup
+     * columns are only counted on the first of those rows.
+     */
+    private static final class IntervalFolder {
+
+        private final SeriesInterval interval;
+        private final boolean withDistribution;
+        private final Consumer<IntervalAggregate> sink;
+
+        private IntervalKey current;
+        private Instant bucketStart;
+        private ScaledAccumulator values;
+        private Distribution distribution;
+        private Instant last;
+
+        IntervalFolder(SeriesInterval interval, boolean withDistribution, Consumer<IntervalAggregate> sink) {
+            this.interval = interval;
+            this.withDistribution = withDistribution;
+            this.sink = sink;
+        }
+
+        void add(ResultSet rs) throws SQLException {
+            Instant start = rs.getObject(3, OffsetDateTime.class).toInstant();
+            IntervalKey key = new IntervalKey(rs.getString(1), MetricType.valueOf(rs.getString(2)),
+                    interval.floor(start));
+            if (!key.equals(current)) {
+                close();
+                current = key;
+                bucketStart = null;
+                values = new ScaledAccumulator();
+                distribution = withDistribution ? new Distribution() : null;
+                last = null;
+            }
+            if (!start.equals(bucketStart)) {
+                bucketStart = start;
+                long count = rs.getLong(4);
+                BigDecimal sum = rs.getBigDecimal(5);
+                values.merge(count, sum, rs.getBigDecimal(6), rs.getBigDecimal(7));
+                Instant recordedAt = rs.getObject(8, OffsetDateTime.class).toInstant();
+                last = last == null || recordedAt.isAfter(last) ? recordedAt : last;
+                if (distribution != null) {
+                    distribution.mergeMoments(count, sum.doubleValue() / count, rs.getDouble(9));
+                }
+            }
+            if (distribution != null) {
+                // a bucket without bins reads as bin 0 with count 0, which addBin ignores
+                distribution.sketch().addBin(rs.getInt(10), rs.getLong(11));
+            }
+        }
+
+        void close() {
+            if (current != null) {
+                sink.accept(new IntervalAggregate(current.start(), new MetricAggregate(
+                        current.sensorId(), current.metric(), values.count(), values.sum(),
+                        values.min(), values.max(), last, distribution)));
+                current = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.weather.api.repository;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.RollupBucket;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Bounded deletes of expired readings and rollups, for the retention purge.
+ *
+ * <p>Every statement removes at most one batch and runs in its own
+ * (auto-commit) transaction, so row locks are held only briefly and the
+ * purge never blocks ingest for long. Deletes follow existing indexes:
+ * readings by sensor + metric + time, rollups by bucket size + start.</p>
+ */
+@Repository
+public class RetentionRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public RetentionRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public List<Integer> findSensorKeys() {
+        return jdbc.getJdbcTemplate().queryForList("SELECT sensor_key FROM sensors ORDER BY sensor_key", Integer.class);
+    }
+
+    /**
+     * Deletes up to {@code limit} readings of one series recorded before
+     * {@code before}. The newest reading of the series is always kept, so
+     * latest-data queries still answer for sensors that went quiet.
+     *
+     * @return the number of rows deleted
+     */
+    public int deleteReadings(int sensorKey, MetricType metric, Instant before, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("sensorKey", sensorKey)
+                .addValue("metric", metric.name())
+                .addValue("before", utc(before))
+                .addValue("limit", limit);
+        // the outer time condition lets a partitioned table skip newer partitions
+        return jdbc.update("""
+                DELETE FROM metric_records
+                WHERE recorded_at < :before AND id IN (
+                    SELECT r.id FROM metric_records r
+                    WHERE r.sensor_key = :sensorKey AND r.metric_type = :metric AND r.recorded_at < :before
+                      AND r.recorded_at < (SELECT MAX(l.recorded_at) FROM metric_records l
+                                           WHERE l.sensor_key = :sensorKey AND l.metric_type = :metric)
+                    LIMIT :limit)""", params);
+    }
+
+    /**
+     * Start of the oldest {@code bucket} rollup of {@code metric} that begins before {@code before}, or null.
+     */
+    public Instant oldestRollup(MetricType metric, RollupBucket bucket, Instant before) {
+        OffsetDateTime oldest = jdbc.queryForObject("""
+                SELECT MIN(bucket_start) FROM metric_rollups
+                WHERE bucket_size = :bucket AND bucket_start < :before AND metric_type = :metric""",
+                new MapSqlParameterSource()
+                        .addValue("metric", metric.name())
+                        .addValue("bucket", bucket.name())
+                        .addValue("before", utc(before)),
+                OffsetDateTime.class);
+        return oldest == null ? null : oldest.toInstant();
+    }
+
+    /**
+     * Deletes the {@code bucket} rollups of {@code metric} starting in {@code [from, to)}.
+     *
+     * @return the number of rollup rows deleted
+     */
+    public int deleteRollups(MetricType metric, RollupBucket bucket, Instant from, Instant to) {
+        return jdbc.update("""
+                DELETE FROM metric_rollups
+                WHERE bucket_size = :bucket AND bucket_start >= :from AND bucket_start < :to
+                  AND metric_type = :metric""", bucketRange(metric, bucket, from, to));
+    }
+
+    /**
+     * Deletes the sketch bins of the same rollups as {@link #deleteRollups}.
+     *
+     * @return the number of bin rows deleted
+     */
+    public int deleteRollupBins(MetricType metric, RollupBucket bucket, Instant from, Instant to) {
+        return jdbc.update("""
+                DELETE FROM metric_rollup_bins
+                WHERE bucket_size = :bucket AND bucket_start >= :from AND bucket_start < :to
+                  AND metric_type = :metric""", bucketRange(metric, bucket, from, to));
+    }
+
+    private static MapSqlParameterSource bucketRange(MetricType metric, RollupBucket bucket, Instant from, Instant to) {
+        return new MapSqlParameterSource()
+                .addValue("metric", metric.name())
+                .addValue("bucket", bucket.name())
+                .addValue("from", utc(from))
+                .addValue("to", utc(to));
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.weather.api.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of sensor ids, backed by the {@code sensors} table.
+ *
+ * <p>Every sensor id is assigned a small int key the first time it is
+ * ingested; {@code metric_records} stores only that key. The whole dictionary
+ * is kept in memory: key to id is an array lookup, and every id handed out
+ * by {@link #idOf} is the same String instance, so readings and aggregates of
+ * one sensor share it instead of each carrying their own copy.</p>
+ *
+ * <p>Keys are never reassigned. Another instance sharing the database may
+ * register sensors this one has not seen; those are loaded on first use.</p>
+ */
+@Repository
+public class SensorRegistry {
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate newTransaction;
+
+    private final Map<String, Integer> keys = new ConcurrentHashMap<>();
+    // index = key; slots are only ever filled in, the array is replaced when it has to grow
+    private volatile String[] ids = new String[64];
+
+    public SensorRegistry(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        // a registration must survive even if the ingest that caused it rolls back
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        jdbc.query("SELECT sensor_key, sensor_id FROM sensors", rs -> {
+            remember(rs.getInt(1), rs.getString(2));
+        });
+    }
+
+    /**
+     * The key of {@code sensorId}, registering it first if it is new.
+     */
+    public int register(String sensorId) {
+        Integer key = keys.get(sensorId);
+        if (key != null) {
+            return key;
+        }
+        Integer registered = newTransaction.execute(status -> {
+            try {
+                jdbc.update("INSERT INTO sensors (sensor_id) VALUES (?)", sensorId);
+            } catch (DuplicateKeyException ex) {
+                // registered concurrently, by this or another instance
+            }
+            return jdbc.queryForObject("SELECT sensor_key FROM sensors WHERE sensor_id = ?", Integer.class, sensorId);
+        });
+        return remember(registered, sensorId);
+    }
+
+    /**
+     * The key of a registered sensor, or null if the id was never ingested.
+     */
+    public Integer keyOf(String sensorId) {
+        Integer key = keys.get(sensorId);
+        if (key != null) {
+            return key;
+        }
+        List<Integer> found = jdbc.queryForList("SELECT sensor_key FROM sensors WHERE sensor_id = ?",
+                Integer.class, sensorId);
+        return found.isEmpty() ? null : remember(found.get(0), sensorId);
+    }
+
+    /**
+     * Keys of the registered sensors among {@code sensorIds}; ids that were
+     * never ingested are left out.
+     */
+    public List<Integer> keysOf(Collection<String> sensorIds) {
+        List<Integer> found = new ArrayList<>(sensorIds.size());
+        for (String sensorId : sensorIds) {
+            Integer key = keyOf(sensorId);
+            if (key != null) {
+                found.add(key);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The (shared) sensor id of a key read from the database.
+     */
+    public String idOf(int key) {
+        String[] current = ids;
+        String id = key < current.length ? current[key] : null;
+        if (id != null) {
+            return id;
+        }
+        String loaded = jdbc.queryForObject("SELECT sensor_id FROM sensors WHERE sensor_key = ?", String.class, key);
+        remember(key, loaded);
+        return ids[key];
+    }
+
+    /**
+     * Readers racing with this may still see an empty slot and fall back to
+     * the database; Strings are immutable, so a filled slot is always safe.
+     */
+    private synchronized int remember(int key, String sensorId) {
+        String[] current = ids;
+        if (key >= current.length) {
+            current = Arrays.copyOf(current, Math.max(key + 1, current.length * 2));
+        }
+        if (current[key] == null) {
+            current[key] = sensorId;
+            keys.put(sensorId, key);
+        }
+        ids = current;
+        return key;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+
+/**
+ * Tells failures of a background write that are worth retrying from those
+ * caused by the readings themselves, and records readings that can never be
+ * stored.
+ *
+ * <p>Dead-lettered readings are logged in full at ERROR under the logger
+ * {@value #DEAD_LETTER_LOGGER}, so they can be routed to their own file and
+ * ingested again once the cause is fixed.</p>
+ */
+public final class IngestionFailures {
+
+    public static final String DEAD_LETTER_LOGGER = "com.example.weather.api.ingestion.dead-letter";
+
+    private static final Logger deadLetters = LoggerFactory.getLogger(DEAD_LETTER_LOGGER);
+
+    private IngestionFailures() {
+    }
+
+    /**
+     * True if the failure lies with the database rather than the readings
+     * (no connection, lock or deadlock, timeout), so the same write may
+     * succeed later.
+     */
+    public static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof TransactionTimedOutException
+                    || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives up on a reading that failed on its own, in a batch of one.
+     */
+    public static void deadLetter(MetricIngestionRequest request, Throwable failure) {
+        deadLetters.error("Dropping reading that cannot be stored: sensorId={}, metric={}, value={}, timestamp={}",
+                request.sensorId(), request.metric(), request.value(), request.timestamp(), failure);
+    }
+}
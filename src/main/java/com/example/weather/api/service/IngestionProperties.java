@@ -0,0 +1,64 @@
+package com.example.weather.api.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for the ingestion endpoints.
+ *
+ * @param batch limits for {@code POST /api/metrics/ingest/batch}
+ * @param async write-behind mode, see {@link WriteBehindIngestionBuffer}
+ * @param wal   write-ahead log protecting buffered readings, see
+ *              {@link com.example.weather.api.wal.WriteAheadLog}
+ */
+@ConfigurationProperties(prefix = "weather.ingestion")
+public record IngestionProperties(
+        @DefaultValue Batch batch,
+        @DefaultValue Async async,
+        @DefaultValue Wal wal
+) {
+
+    /**
+     * @param maxItems largest number of readings accepted in one batch request
+     */
+    public record Batch(
+            @DefaultValue("10000") int maxItems
+    ) { }
+
+    /**
+     * @param enabled         accept readings into an in-memory buffer and return 202
+     * @param capacity        readings buffered or being written before new ones are refused
+     * @param workers         number of writer threads draining the buffer
+     * @param batchSize       readings written per database batch
+     * @param flushInterval   longest time a reading waits for its batch to fill up
+     * @param retryAfter      value of the Retry-After header when the buffer is full
+     * @param shutdownTimeout how long shutdown waits for the buffer to drain
+     */
+    public record Async(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("10000") int capacity,
+            @DefaultValue("2") int workers,
+            @DefaultValue("500") int batchSize,
+            @DefaultValue("50ms") Duration flushInterval,
+            @DefaultValue("1s") Duration retryAfter,
+            @DefaultValue("30s") Duration shutdownTimeout
+    ) { }
+
+    /**
+     * @param enabled     log every buffered reading to disk before accepting it
+     * @param directory   where segment files are kept
+     * @param segmentSize size of one memory-mapped segment file
+     * @param fsync       force appended records to disk before acknowledging them;
+     *                    without it a crash of the machine (not just the process) can lose readings
+     */
+    public record Wal(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("data/wal") String directory,
+            @DefaultValue("64MB") DataSize segmentSize,
+            @DefaultValue("true") boolean fsync
+    ) { }
+}
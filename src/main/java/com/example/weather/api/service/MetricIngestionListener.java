@@ -0,0 +1,28 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.model.MetricRecord;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Callback for components that keep derived state (in-memory stores, caches)
+ * in step with newly stored readings.
+ *
+ * Called by {@link MetricIngestionService} after the transaction that stored
+ * the records has committed, on the ingesting thread. Listeners run in
+ * {@code @Order}; stores that answer queries come before caches of their results.
+ */
+public interface MetricIngestionListener {
+
+    void onIngested(List<MetricRecord> records);
+
+    /**
+     * Called after the retention purge removed stored data of {@code metric}
+     * older than {@code before}: raw readings (except the newest of each
+     * series), rollups or archived segments.
+     */
+    default void onPurged(MetricType metric, Instant before) {
+    }
+}
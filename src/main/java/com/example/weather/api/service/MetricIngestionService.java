@@ -3,29 +3,136 @@ package com.example.weather.api.service;
 import com.example.weather.api.dto.MetricIngestionRequest;
 import com.example.weather.api.model.MetricRecord;
 import com.example.weather.api.repository.MetricRecordRepository;
+import com.example.weather.api.repository.MetricRollupRepository;
+import com.example.weather.api.repository.SensorRegistry;
+import com.example.weather.api.telemetry.IngestTelemetry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Handles saving new sensor readings.
+ * Rollups are updated in the same transaction as the raw readings.
+ *
+ * New sensors are registered before that transaction starts: registration
+ * commits on its own connection, and taking a second connection while
+ * holding the first could exhaust the pool under high concurrency (e.g.
+ * with virtual threads, where request concurrency is no longer capped).
  */
 @Service
 public class MetricIngestionService {
 
     private final MetricRecordRepository repository;
+    private final MetricRollupRepository rollups;
+    private final SensorRegistry sensors;
+    private final ObjectProvider<MetricIngestionListener> listeners;
+    private final IngestTelemetry telemetry;
+    private final TransactionTemplate transaction;
+    private final int jdbcBatchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
-    public MetricIngestionService(MetricRecordRepository repository) {
+    public MetricIngestionService(MetricRecordRepository repository,
+                                  MetricRollupRepository rollups,
+                                  SensorRegistry sensors,
+                                  ObjectProvider<MetricIngestionListener> listeners,
+                                  IngestTelemetry telemetry,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int jdbcBatchSize) {
         this.repository = repository;
+        this.rollups = rollups;
+        this.sensors = sensors;
+        this.listeners = listeners;
+        this.telemetry = telemetry;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.jdbcBatchSize = jdbcBatchSize;
     }
 
-    @Transactional
     public void ingest(MetricIngestionRequest request) {
-        MetricRecord record = new MetricRecord(
-                request.sensorId(),
+        long started = System.nanoTime();
+        sensors.register(request.sensorId());
+        transaction.executeWithoutResult(status -> {
+            MetricRecord record = repository.save(toRecord(request));
+            rollups.apply(List.of(record));
+            publishAfterCommit(List.of(record), false, started);
+        });
+    }
+
+    /**
+     * Saves many readings in one transaction.
+     *
+     * <p>Records are flushed in chunks of the JDBC batch size, so each chunk
+     * goes to the database as a single batched insert, and the persistence
+     * context is cleared after every chunk, so Hibernate's entity snapshots
+     * stay bounded by the chunk. The records themselves are kept, detached,
+     * until the commit to be handed to the listeners, so memory still grows
+     * with the batch; callers bound it through the batch size.</p>
+     */
+    public void ingestAll(List<MetricIngestionRequest> requests) {
+        long started = System.nanoTime();
+        for (MetricIngestionRequest request : requests) {
+            sensors.register(request.sensorId());
+        }
+        transaction.executeWithoutResult(status -> {
+            List<MetricRecord> saved = new ArrayList<>(requests.size());
+            for (int start = 0; start < requests.size(); start += jdbcBatchSize) {
+                List<MetricIngestionRequest> chunk = requests.subList(start, Math.min(start + jdbcBatchSize, requests.size()));
+                List<MetricRecord> records = repository.saveAll(chunk.stream().map(this::toRecord).toList());
+                rollups.apply(records);
+                saved.addAll(records);
+                repository.flush();
+                entityManager.clear();
+            }
+            publishAfterCommit(saved, true, started);
+        });
+    }
+
+    /**
+     * Hands the stored records to every {@link MetricIngestionListener} once
+     * the surrounding transaction has committed, so listeners never see
+     * readings that were rolled back. The call's latency is recorded once
+     * the transaction has completed, so it includes the commit.
+     */
+    private void publishAfterCommit(List<MetricRecord> records, boolean batch, long started) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            listeners.orderedStream().forEach(listener -> listener.onIngested(records));
+            telemetry.record(batch, records.size(), started, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                listeners.orderedStream().forEach(listener -> listener.onIngested(records));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                telemetry.record(batch, records.size(), started, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private MetricRecord toRecord(MetricIngestionRequest request) {
+        int sensorKey = sensors.register(request.sensorId());
+        return new MetricRecord(
+                sensorKey,
+                sensors.idOf(sensorKey),
                 request.metric(),
                 request.value(),
                 request.timestamp()
         );
-        repository.save(record);
     }
 }
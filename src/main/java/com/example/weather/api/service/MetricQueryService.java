@@ -1,11 +1,24 @@
 package com.example.weather.api.service;
 
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.cache.QueryResultCache;
 import com.example.weather.api.dto.MetricQueryRequest;
+import com.example.weather.api.dto.MetricSeriesRequest;
+import com.example.weather.api.dto.MetricSeriesResponse;
 import com.example.weather.api.dto.MetricStatisticResponse;
+import com.example.weather.api.dto.SeriesPoint;
 import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.SeriesInterval;
 import com.example.weather.api.enums.StatisticType;
-import com.example.weather.api.model.MetricRecord;
-import com.example.weather.api.repository.MetricRecordRepository;
+import com.example.weather.api.repository.IntervalAggregate;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricRollupRepository;
+import com.example.weather.api.storage.LatestValueIndex;
+import com.example.weather.api.storage.MetricStorageEngine;
+import com.example.weather.api.storage.RollingWindowIndex;
+import com.example.weather.api.telemetry.QueryTelemetry;
+import com.example.weather.api.telemetry.QueryTelemetry.Phase;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,23 +26,53 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Handles querying metrics and computing statistics.
- * - repository just returns all records
- * - all filtering happens step-by-step in Java
+ * - the storage engine filters, groups and aggregates (in the database
+ *   or in memory, see {@link MetricStorageEngine})
+ * - this service only validates the request and shapes the response
+ *
+ * Statistics queries run without a transaction of their own: the engines
+ * open one only for the database reads they actually do, so answers from
+ * memory or the cache, and writing results out, hold no pooled connection.
  */
 @Service
 public class MetricQueryService {
 
-    private final MetricRecordRepository repository;
+    private final MetricStorageEngine storageEngine;
+    private final MetricRollupRepository rollups;
+    private final SeriesQueryProperties seriesProperties;
+    // null when weather.query.latest-index.enabled=false
+    private final LatestValueIndex latestValueIndex;
+    // null when weather.query.cache.enabled=false
+    private final QueryResultCache resultCache;
+    // null when weather.query.coalescing.enabled=false
+    private final QueryCoalescer coalescer;
+    // null unless weather.query.rolling.enabled=true
+    private final RollingWindowIndex rollingWindows;
+    private final QueryTelemetry telemetry;
 
-    public MetricQueryService(MetricRecordRepository repository) {
-        this.repository = repository;
+    public MetricQueryService(MetricStorageEngine storageEngine,
+                              MetricRollupRepository rollups,
+                              SeriesQueryProperties seriesProperties,
+                              ObjectProvider<LatestValueIndex> latestValueIndex,
+                              ObjectProvider<QueryResultCache> resultCache,
+                              ObjectProvider<QueryCoalescer> coalescer,
+                              ObjectProvider<RollingWindowIndex> rollingWindows,
+                              QueryTelemetry telemetry) {
+        this.storageEngine = storageEngine;
+        this.rollups = rollups;
+        this.seriesProperties = seriesProperties;
+        this.latestValueIndex = latestValueIndex.getIfAvailable();
+        this.resultCache = resultCache.getIfAvailable();
+        this.coalescer = coalescer.getIfAvailable();
+        this.rollingWindows = rollingWindows.getIfAvailable();
+        this.telemetry = telemetry;
     }
 
     /**
@@ -38,94 +81,160 @@ public class MetricQueryService {
      * <p>If a date range is provided, it must be between one day and one month.
      * When no range is provided, the latest data for each sensor + metric is used.</p>
      */
-    @Transactional(readOnly = true)
     public List<MetricStatisticResponse> query(MetricQueryRequest request) {
-        validateRange(request);
-
-        // Load all records. For a coding challenge this is fine and
-        // keeps the code easy to understand.
-        List<MetricRecord> allRecords = repository.findAll();
-
-        // Step 1: filter by sensorIds and metrics if they are provided.
-        List<MetricRecord> filtered = allRecords.stream()
-                .filter(r -> request.sensorIds() == null
-                        || request.sensorIds().isEmpty()
-                        || request.sensorIds().contains(r.getSensorId()))
-                .filter(r -> request.metrics() == null
-                        || request.metrics().isEmpty()
-                        || request.metrics().contains(r.getMetricType()))
-                .toList();
+        List<MetricStatisticResponse> responses = new ArrayList<>();
+        query(request, responses::add);
+        return responses;
+    }
+
+    /**
+     * Same as {@link #query(MetricQueryRequest)}, but hands each result to
+     * {@code sink} instead of collecting them, so a caller can write them out
+     * one by one. Call {@link #validate(MetricQueryRequest)} first to reject
+     * a bad request before anything has been written.
+     */
+    public void query(MetricQueryRequest request, Consumer<MetricStatisticResponse> sink) {
+        validate(request);
+        QueryTelemetry.Recording recording = telemetry.start(request);
+
+        // Identical requests arriving while one runs wait for it and share its
+        // results (a waiting caller's whole wait counts as its load phase).
+        Statistics statistics = coalescer != null
+                ? coalescer.execute(request, () -> compute(request, true, recording))
+                : compute(request, true, recording);
+        recording.lap(Phase.LOAD);
+
+        for (MetricStatisticResponse response : statistics.responses()) {
+            sink.accept(response);
+        }
+        recording.lap(Phase.SERIALIZE);
+        recording.finish(statistics.responses().size(), statistics.readings());
+    }
+
+    /**
+     * Statistics over the {@code window} up to now, or of the latest data if
+     * {@code window} is null; for live subscriptions. Unlike
+     * {@link #query(MetricQueryRequest)}, the window may be shorter than a
+     * day (but at most one month), and results are never cached: the range
+     * moves with every call. Windows listed in {@code weather.query.rolling.windows}
+     * are answered from continuously maintained aggregates, without reading
+     * stored records (except for statistics that need a distribution).
+     */
+    public List<MetricStatisticResponse> queryTrailing(List<String> sensorIds,
+                                                       List<MetricType> metrics,
+                                                       StatisticType statistic,
+                                                       Duration window) {
+        validateWindow(window);
+        Instant to = Instant.now();
+        MetricQueryRequest request = window == null
+                ? new MetricQueryRequest(sensorIds, metrics, statistic, null, null)
+                : new MetricQueryRequest(sensorIds, metrics, statistic, to.minus(window), to);
+        QueryTelemetry.Recording recording = telemetry.start(request);
+        Statistics statistics;
+        if (window != null && rollingWindows != null && rollingWindows.covers(window, statistic)) {
+            List<MetricAggregate> aggregates = rollingWindows.aggregate(sensorIds, metrics, window, to);
+            recording.lap(Phase.LOAD);
+            statistics = toStatistics(request, aggregates, recording);
+        } else {
+            statistics = compute(request, false, recording);
+        }
+        recording.finish(statistics.responses().size(), statistics.readings());
+        return statistics.responses();
+    }
 
+    private Statistics compute(MetricQueryRequest request, boolean cacheable, QueryTelemetry.Recording recording) {
         Instant from = request.from();
         Instant to = request.to();
         boolean hasRange = from != null && to != null;
+        boolean withDistribution = request.statistic().needsDistribution();
+
+        // Filtering by sensor, metric and time range as well as the grouping
+        // by sensor + metric all happen in the storage engine.
+        // When no range is provided, only the latest record(s) per
+        // sensor + metric are aggregated, served from memory if possible.
+        // Range results are cached until an ingest touches their selection.
+        List<MetricAggregate> aggregates;
+        if (hasRange && cacheable && resultCache != null) {
+            aggregates = resultCache.get(request.sensorIds(), request.metrics(), from, to, withDistribution,
+                    () -> storageEngine.aggregate(request.sensorIds(), request.metrics(), from, to, withDistribution));
+        } else if (hasRange) {
+            aggregates = storageEngine.aggregate(request.sensorIds(), request.metrics(), from, to, withDistribution);
+        } else if (latestValueIndex != null) {
+            aggregates = latestValueIndex.aggregateLatest(request.sensorIds(), request.metrics(), withDistribution);
+        } else {
+            aggregates = storageEngine.aggregateLatest(request.sensorIds(), request.metrics(), withDistribution);
+        }
+        recording.lap(Phase.LOAD);
+        return toStatistics(request, aggregates, recording);
+    }
+
+    private Statistics toStatistics(MetricQueryRequest request,
+                                    List<MetricAggregate> aggregates,
+                                    QueryTelemetry.Recording recording) {
+        Instant from = request.from();
+        Instant to = request.to();
+        boolean hasRange = from != null && to != null;
+        List<MetricStatisticResponse> responses = new ArrayList<>(aggregates.size());
+        long readings = 0;
+        for (MetricAggregate aggregate : aggregates) {
+            responses.add(new MetricStatisticResponse(
+                    aggregate.sensorId(),
+                    aggregate.metric(),
+                    request.statistic(),
+                    computeStatistic(aggregate, request.statistic()),
+                    hasRange ? from : aggregate.latestTimestamp(),
+                    hasRange ? to : aggregate.latestTimestamp()
+            ));
+            readings += aggregate.count();
+        }
+        recording.lap(Phase.STATISTIC);
+        return new Statistics(List.copyOf(responses), readings);
+    }
+
+    /**
+     * Returns one series of per-interval statistics for each selected sensor
+     * and metric.
+     *
+     * <p>The range is widened to whole intervals and may span at most one
+     * month and {@code weather.query.series.max-points} intervals. Points are
+     * computed from the rollups alone, whatever the storage engine.</p>
+     */
+    @Transactional(readOnly = true)
+    public List<MetricSeriesResponse> querySeries(MetricSeriesRequest request) {
+        List<MetricSeriesResponse> responses = new ArrayList<>();
+        querySeries(request, responses::add);
+        // streamed series follow the database's collation, lists the API's usual order
+        responses.sort(Comparator.comparing(MetricSeriesResponse::sensorId)
+                .thenComparing(r -> r.metric().name()));
+        return responses;
+    }
+
+    /**
+     * Same as {@link #querySeries(MetricSeriesRequest)}, but hands each series
+     * to {@code sink} as soon as its last interval has been read from the
+     * database. Only one series is held in memory at a time. Call
+     * {@link #validate(MetricSeriesRequest)} first to reject a bad request
+     * before anything has been written.
+     */
+    @Transactional(readOnly = true)
+    public void querySeries(MetricSeriesRequest request, Consumer<MetricSeriesResponse> sink) {
+        validate(request);
 
-        // Step 2: optional filter by time range.
-        if (hasRange) {
-            filtered = filtered.stream()
-                    .filter(r -> !r.getTimestamp().isBefore(from))
-                    .filter(r -> !r.getTimestamp().isAfter(to))
-                    .toList();
-        }
-
-        if (filtered.isEmpty()) {
-            return List.of();
-        }
-
-        // Step 3: group by sensor + metric.
-        Map<Key, List<MetricRecord>> grouped = filtered.stream()
-                .collect(Collectors.groupingBy(r -> new Key(r.getSensorId(), r.getMetricType())));
-
-        // Step 4: for each group, compute the requested statistic.
-        return grouped.entrySet().stream()
-                .map(entry -> {
-                    String sensorId = entry.getKey().sensorId();
-                    MetricType metricType = entry.getKey().metric();
-                    List<MetricRecord> groupRecords = entry.getValue();
-
-                    List<MetricRecord> effectiveRecords;
-                    Instant groupFrom;
-                    Instant groupTo;
-
-                    if (hasRange) {
-                        // When range is provided, use all records inside that range.
-                        effectiveRecords = groupRecords;
-                        groupFrom = from;
-                        groupTo = to;
-                    } else {
-                        // When no range is provided, use only the latest record(s)
-                        // per sensor + metric.
-                        Instant latest = groupRecords.stream()
-                                .map(MetricRecord::getTimestamp)
-                                .max(Instant::compareTo)
-                                .orElseThrow();
-
-                        effectiveRecords = groupRecords.stream()
-                                .filter(r -> r.getTimestamp().equals(latest))
-                                .toList();
-
-                        groupFrom = latest;
-                        groupTo = latest;
-                    }
-
-                    BigDecimal value = computeStatistic(effectiveRecords, request.statistic());
-
-                    return new MetricStatisticResponse(
-                            sensorId,
-                            metricType,
-                            request.statistic(),
-                            value,
-                            groupFrom,
-                            groupTo
-                    );
-                })
-                .toList();
+        SeriesInterval interval = request.interval();
+        Instant from = interval.floor(request.from());
+        Instant to = interval.ceil(request.to());
+        StatisticType statistic = request.statistic();
+
+        SeriesCollector series = new SeriesCollector(statistic, interval, from, to, sink);
+        rollups.aggregateByInterval(interval, request.sensorIds(), request.metrics(), from, to,
+                statistic.needsDistribution(), series);
+        series.close();
     }
 
     /**
      * Ensures the date range is either absent or between one day and one month.
      */
-    private void validateRange(MetricQueryRequest request) {
+    public void validate(MetricQueryRequest request) {
         Instant from = request.from();
         Instant to = request.to();
 
@@ -150,44 +259,116 @@ public class MetricQueryService {
     }
 
     /**
-     * Computes a statistic for the given records.
+     * Ensures a trailing window is either absent or positive and at most one month.
+     */
+    public void validateWindow(Duration window) {
+        if (window != null && (window.isNegative() || window.isZero() || window.compareTo(Duration.ofDays(31)) > 0)) {
+            throw new IllegalArgumentException("Window must be positive and at most one month.");
+        }
+    }
+
+    /**
+     * Ensures the range is at most one month and, widened to whole intervals,
+     * holds no more than {@code weather.query.series.max-points} of them.
+     */
+    public void validate(MetricSeriesRequest request) {
+        SeriesInterval interval = request.interval();
+        if (!request.from().isBefore(request.to())) {
+            throw new IllegalArgumentException("'from' must be before 'to'.");
+        }
+        if (Duration.between(request.from(), request.to()).compareTo(Duration.ofDays(31)) > 0) {
+            throw new IllegalArgumentException("Date range must not exceed one month.");
+        }
+        long points = Duration.between(interval.floor(request.from()), interval.ceil(request.to()))
+                .dividedBy(interval.duration());
+        if (points > seriesProperties.maxPoints()) {
+            throw new IllegalArgumentException("Interval " + interval.code() + " gives " + points
+                    + " points per series, the limit is " + seriesProperties.maxPoints()
+                    + "; use a coarser interval.");
+        }
+    }
+
+    /**
+     * Turns the aggregated values of one group into the requested statistic,
+     * at scale 4 rounded half-up. The average is divided in fixed-point long
+     * arithmetic (see {@link FixedPoint}); {@code setScale} is a no-op for the
+     * scale-4 values the engines return. Percentile estimates are clamped to
+     * the exact min and max, so they never leave the observed range.
      * (This can later be refactored into a Strategy pattern if needed.)
+     * Package-private for the benchmarks in {@code src/jmh}.
      */
-    private BigDecimal computeStatistic(List<MetricRecord> records, StatisticType type) {
+    static BigDecimal computeStatistic(MetricAggregate aggregate, StatisticType type) {
         switch (type) {
             case MIN:
-                return records.stream()
-                        .map(MetricRecord::getValue)
-                        .min(Comparator.naturalOrder())
-                        .orElse(BigDecimal.ZERO)
-                        .setScale(4, RoundingMode.HALF_UP);
+                return aggregate.min().setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
             case MAX:
-                return records.stream()
-                        .map(MetricRecord::getValue)
-                        .max(Comparator.naturalOrder())
-                        .orElse(BigDecimal.ZERO)
-                        .setScale(4, RoundingMode.HALF_UP);
-            case SUM: {
-                BigDecimal sum = records.stream()
-                        .map(MetricRecord::getValue)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-                return sum.setScale(4, RoundingMode.HALF_UP);
-            }
+                return aggregate.max().setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+            case SUM:
+                return aggregate.sum().setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+            case COUNT:
+                return BigDecimal.valueOf(aggregate.count()).setScale(FixedPoint.SCALE);
+            case STDDEV:
+                return BigDecimal.valueOf(aggregate.distribution().standardDeviation())
+                        .setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+            case P50:
+            case P90:
+            case P95:
+            case P99:
+                BigDecimal estimate = BigDecimal.valueOf(aggregate.distribution().sketch().quantile(type.quantile()))
+                        .movePointLeft(FixedPoint.SCALE);
+                return estimate.max(aggregate.min()).min(aggregate.max())
+                        .setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
             case AVG:
-            default: {
-                if (records.isEmpty()) {
-                    return BigDecimal.ZERO.setScale(4, RoundingMode.HALF_UP);
-                }
-                BigDecimal sum = records.stream()
-                        .map(MetricRecord::getValue)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-                return sum.divide(BigDecimal.valueOf(records.size()), 4, RoundingMode.HALF_UP);
-            }
+            default:
+                return FixedPoint.average(aggregate.sum(), aggregate.count());
         }
     }
 
     /**
-     * Small helper key used for grouping.
+     * Results of one statistics query, shared by coalesced callers, and the
+     * number of readings their aggregates cover.
+     */
+    private record Statistics(List<MetricStatisticResponse> responses, long readings) { }
+
+    /**
+     * Turns intervals, which arrive grouped by sensor + metric and in time
+     * order, into one response per group.
      */
-    private record Key(String sensorId, MetricType metric) { }
+    private final class SeriesCollector implements Consumer<IntervalAggregate> {
+
+        private final StatisticType statistic;
+        private final SeriesInterval interval;
+        private final Instant from;
+        private final Instant to;
+        private final Consumer<MetricSeriesResponse> sink;
+        private MetricSeriesResponse current;
+
+        SeriesCollector(StatisticType statistic, SeriesInterval interval, Instant from, Instant to,
+                        Consumer<MetricSeriesResponse> sink) {
+            this.statistic = statistic;
+            this.interval = interval;
+            this.from = from;
+            this.to = to;
+            this.sink = sink;
+        }
+
+        @Override
+        public void accept(IntervalAggregate entry) {
+            MetricAggregate aggregate = entry.aggregate();
+            if (current == null || !current.sensorId().equals(aggregate.sensorId())
+                    || current.metric() != aggregate.metric()) {
+                close();
+                current = new MetricSeriesResponse(aggregate.sensorId(), aggregate.metric(),
+                        statistic, interval, from, to, new ArrayList<>());
+            }
+            current.points().add(new SeriesPoint(entry.start(), computeStatistic(aggregate, statistic)));
+        }
+
+        void close() {
+            if (current != null) {
+                sink.accept(current);
+                current = null;
+            }
+        }
+    }
 }
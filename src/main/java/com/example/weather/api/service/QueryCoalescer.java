@@ -0,0 +1,144 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.dto.MetricQueryRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.StatisticType;
+import com.example.weather.api.model.MetricRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of statistics queries: while a query is running,
+ * identical requests (same sensors, metrics, statistic and range, in any
+ * order) wait for it and share its result instead of running again.
+ *
+ * <p>Nothing is kept once the query finishes; this only absorbs bursts such
+ * as many dashboards refreshing at once. An ingest detaches the running
+ * queries it could change: callers already waiting still get their result,
+ * later callers start a fresh run that sees the new reading.</p>
+ *
+ * <p>Counts executed and coalesced queries in {@code weather.query.coalescing},
+ * tagged by {@code outcome}.</p>
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "weather.query.coalescing", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class QueryCoalescer implements MetricIngestionListener {
+
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter coalesced;
+
+    public QueryCoalescer(MeterRegistry registry) {
+        this.executed = Counter.builder("weather.query.coalescing")
+                .description("Statistics queries run, or answered by a concurrent identical run")
+                .tag("outcome", "executed")
+                .register(registry);
+        this.coalesced = Counter.builder("weather.query.coalescing")
+                .description("Statistics queries run, or answered by a concurrent identical run")
+                .tag("outcome", "coalesced")
+                .register(registry);
+    }
+
+    /**
+     * Runs {@code query} for the request, or waits for an identical run in
+     * progress and returns its result (or throws its exception).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(MetricQueryRequest request, Supplier<T> query) {
+        if (containsNull(request.sensorIds()) || containsNull(request.metrics())) {
+            // cannot be normalized into a key; such selections match nothing anyway
+            return query.get();
+        }
+        Key key = Key.of(request);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return (T) running.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+            }
+        }
+
+        executed.increment();
+        try {
+            T result = query.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    @Override
+    public void onIngested(List<MetricRecord> records) {
+        for (Map.Entry<Key, CompletableFuture<Object>> entry : inFlight.entrySet()) {
+            for (MetricRecord record : records) {
+                if (entry.getKey().covers(record)) {
+                    inFlight.remove(entry.getKey(), entry.getValue());
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean containsNull(Collection<?> values) {
+        return values != null && values.stream().anyMatch(Objects::isNull);
+    }
+
+    /**
+     * A request with its sensor ids and metrics as sets, so equivalent
+     * requests are equal. Empty sets select everything.
+     */
+    private record Key(Set<String> sensorIds, Set<MetricType> metrics, StatisticType statistic,
+                       Instant from, Instant to) {
+
+        static Key of(MetricQueryRequest request) {
+            Set<String> sensors = request.sensorIds() == null ? Set.of() : Set.copyOf(request.sensorIds());
+            Set<MetricType> types = request.metrics() == null || request.metrics().isEmpty()
+                    ? Set.of()
+                    : Collections.unmodifiableSet(EnumSet.copyOf(request.metrics()));
+            return new Key(sensors, types, request.statistic(), request.from(), request.to());
+        }
+
+        /**
+         * Whether the reading could change the result; any reading of the
+         * selection can change a latest-data result.
+         */
+        boolean covers(MetricRecord record) {
+            if (!sensorIds.isEmpty() && !sensorIds.contains(record.getSensorId())
+                    || !metrics.isEmpty() && !metrics.contains(record.getMetricType())) {
+                return false;
+            }
+            if (from == null) {
+                return true;
+            }
+            // the database keeps microseconds, so compare at that precision
+            Instant timestamp = record.getTimestamp().truncatedTo(ChronoUnit.MICROS);
+            return !timestamp.isBefore(from) && !timestamp.isAfter(to);
+        }
+    }
+}
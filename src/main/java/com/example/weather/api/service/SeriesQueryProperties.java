@@ -0,0 +1,15 @@
+package com.example.weather.api.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for downsampled series queries.
+ *
+ * @param maxPoints upper bound for the number of intervals in one series;
+ *                  longer ranges need a coarser interval
+ */
+@ConfigurationProperties(prefix = "weather.query.series")
+public record SeriesQueryProperties(
+        @DefaultValue("1500") int maxPoints
+) { }
@@ -0,0 +1,385 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.dto.IngestionBufferStats;
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.exception.IngestionRejectedException;
+import com.example.weather.api.wal.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous write-behind mode for ingestion.
+ *
+ * <p>Accepted readings go into a bounded queue and are written by a small pool of
+ * writer threads through {@link MetricIngestionService#ingestAll}, in batches of
+ * {@code batch-size} readings or whatever arrived within {@code flush-interval}.
+ * A reading holds a slot of the buffer until its batch is committed, so memory is
+ * bounded by {@code capacity} even while the database is slow. When no slot is
+ * free the reading is refused with {@link IngestionRejectedException}.</p>
+ *
+ * <p>On shutdown new readings are refused, and the writers drain what is left
+ * before the datasource goes away.</p>
+ *
+ * <p>A batch that fails for a transient reason (see
+ * {@link IngestionFailures#isTransient}) is retried with back-off. After any
+ * other failure the batch is split in halves until the readings that fail on
+ * their own are found; those are dead-lettered while the rest is stored. If
+ * no reading of the batch can be stored, the failure is not theirs, and the
+ * batch is retried with back-off instead.</p>
+ *
+ * <p>If the {@link WriteAheadLog} is enabled, readings are logged to disk before
+ * they are accepted and acknowledged there once committed, so a crash does not
+ * lose buffered readings.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.ingestion.async", name = "enabled", havingValue = "true")
+public class WriteBehindIngestionBuffer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindIngestionBuffer.class);
+
+    /** How long an idle writer blocks before re-checking whether it should stop. */
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5_000;
+
+    private final MetricIngestionService ingestionService;
+    private final IngestionProperties.Async properties;
+    // null unless weather.ingestion.wal.enabled=true
+    private final WriteAheadLog wal;
+
+    private final BlockingQueue<PendingReading> queue;
+    private final Semaphore slots;
+    private ExecutorService writers;
+    private volatile boolean running;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    @Autowired
+    public WriteBehindIngestionBuffer(MetricIngestionService ingestionService,
+                                      IngestionProperties properties,
+                                      ObjectProvider<WriteAheadLog> wal) {
+        this(ingestionService, properties, wal.getIfAvailable());
+    }
+
+    WriteBehindIngestionBuffer(MetricIngestionService ingestionService,
+                               IngestionProperties properties,
+                               WriteAheadLog wal) {
+        this.ingestionService = ingestionService;
+        this.properties = properties.async();
+        this.wal = wal;
+        this.queue = new ArrayBlockingQueue<>(this.properties.capacity());
+        this.slots = new Semaphore(this.properties.capacity());
+    }
+
+    /**
+     * Accepts one reading for asynchronous storage.
+     *
+     * @throws IngestionRejectedException when the buffer is full or shutting down
+     */
+    public void submit(MetricIngestionRequest request) {
+        submitAll(List.of(request));
+    }
+
+    /**
+     * Accepts all readings or none of them.
+     *
+     * @throws IngestionRejectedException when the buffer has no room for all of them
+     * @throws IllegalArgumentException when a reading is too large for the write-ahead log
+     */
+    public void submitAll(List<MetricIngestionRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        if (!running) {
+            reject(requests, "Ingestion is shutting down.");
+        }
+        if (requests.size() > properties.capacity()) {
+            throw new IllegalArgumentException(
+                    "Batch is larger than the ingestion buffer (" + properties.capacity() + " readings).");
+        }
+        if (!slots.tryAcquire(requests.size())) {
+            reject(requests, "Ingestion buffer is full.");
+        }
+
+        long[] segmentIds;
+        try {
+            segmentIds = wal != null ? wal.appendAll(requests) : null;
+        } catch (IllegalArgumentException ex) {
+            slots.release(requests.size());
+            rejected.add(requests.size());
+            throw ex;
+        } catch (RuntimeException ex) {
+            // I/O failure, or the log was closed during shutdown
+            slots.release(requests.size());
+            log.error("Write-ahead log append failed", ex);
+            reject(requests, "Write-ahead log is unavailable.");
+            return;
+        }
+
+        // A slot is held per reading, so the queue always has room here.
+        for (int i = 0; i < requests.size(); i++) {
+            queue.add(new PendingReading(requests.get(i), segmentIds != null ? segmentIds[i] : 0));
+        }
+        accepted.add(requests.size());
+    }
+
+    private void reject(List<MetricIngestionRequest> requests, String message) {
+        rejected.add(requests.size());
+        throw new IngestionRejectedException(message, properties.retryAfter());
+    }
+
+    public IngestionBufferStats stats() {
+        long count = flushes.sum();
+        return new IngestionBufferStats(
+                properties.capacity() - slots.availablePermits(),
+                properties.capacity(),
+                accepted.sum(),
+                rejected.sum(),
+                persisted.sum(),
+                failedFlushes.sum(),
+                deadLettered.sum(),
+                toMillis(lastFlushNanos.get()),
+                toMillis(maxFlushNanos.get()),
+                count == 0 ? 0 : toMillis(flushNanos.sum()) / count
+        );
+    }
+
+    @Override
+    public void start() {
+        writers = Executors.newFixedThreadPool(properties.workers(), new CustomizableThreadFactory("ingest-writer-"));
+        running = true;
+        for (int i = 0; i < properties.workers(); i++) {
+            writers.execute(this::drainLoop);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        writers.shutdown();
+        try {
+            if (!writers.awaitTermination(properties.shutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Ingestion buffer did not drain within {}; {} reading(s) lost",
+                        properties.shutdownTimeout(), properties.capacity() - slots.availablePermits());
+                writers.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            writers.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the web server, so no request can reach
+     * the buffer while it is not draining.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drainLoop() {
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingReading first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingReading> batch = new ArrayList<>(properties.batchSize());
+                batch.add(first);
+                fillBatch(batch);
+                flush(batch);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Collects more readings until the batch is full or the flush interval
+     * (counted from the first reading) has passed.
+     */
+    private void fillBatch(List<PendingReading> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + properties.flushInterval().toNanos();
+        while (batch.size() < properties.batchSize()) {
+            queue.drainTo(batch, properties.batchSize() - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= properties.batchSize() || remaining <= 0 || !running) {
+                return;
+            }
+            PendingReading next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Writes one batch, retrying with back-off while the database is failing.
+     * Readings stay in their buffer slots meanwhile, which is what pushes
+     * back on clients. A batch that fails for any other reason is isolated;
+     * if that finds no reading to blame, it is retried like a database failure.
+     */
+    private void flush(List<PendingReading> batch) throws InterruptedException {
+        long backoff = IDLE_POLL_MILLIS;
+        while (true) {
+            RuntimeException failure;
+            try {
+                write(batch);
+                return;
+            } catch (RuntimeException ex) {
+                failedFlushes.increment();
+                failure = ex;
+            }
+            if (!IngestionFailures.isTransient(failure)) {
+                batch = isolate(batch, failure);
+                if (batch.isEmpty()) {
+                    return;
+                }
+            }
+            if (!running) {
+                // still in the write-ahead log (if enabled) and replayed on the next start
+                log.error("Dropping {} buffered reading(s) during shutdown", batch.size(), failure);
+                slots.release(batch.size());
+                return;
+            }
+            log.warn("Flushing {} buffered reading(s) failed, retrying in {} ms", batch.size(), backoff, failure);
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            // readings that arrived meanwhile join the retry; if they are stored,
+            // they show the database works and the old ones are to blame
+            queue.drainTo(batch, properties.batchSize() - batch.size());
+        }
+    }
+
+    /**
+     * Splits a batch that failed for a reason retrying cannot fix, down to
+     * the readings that fail on their own, and stores everything else. A
+     * single bad reading costs about log2(batch size) extra writes.
+     *
+     * <p>The failing readings are only dead-lettered if some reading of the
+     * batch was stored: when none was, the database itself is refusing writes
+     * (a broken migration, a missing permission) and blaming the readings
+     * would drop the whole buffer.</p>
+     *
+     * @return the readings to retry, empty if the batch is settled
+     */
+    private List<PendingReading> isolate(List<PendingReading> batch, RuntimeException failure) {
+        List<FailedReading> failed = new ArrayList<>();
+        List<PendingReading> retry = new ArrayList<>();
+        int stored = 0;
+        if (batch.size() == 1) {
+            failed.add(new FailedReading(batch.get(0), failure));
+        } else {
+            stored = split(batch, failed, retry);
+        }
+        if (stored == 0) {
+            log.warn("None of {} buffered reading(s) could be stored on its own, treating it as a database failure",
+                    batch.size(), failure);
+            return new ArrayList<>(batch);
+        }
+        for (FailedReading reading : failed) {
+            IngestionFailures.deadLetter(reading.reading().request(), reading.failure());
+            deadLettered.increment();
+            slots.release(1);
+            acknowledge(List.of(reading.reading()));
+        }
+        return retry;
+    }
+
+    /**
+     * Writes both halves of a failed batch, splitting further where they fail.
+     *
+     * @return the number of readings stored
+     */
+    private int split(List<PendingReading> batch, List<FailedReading> failed, List<PendingReading> retry) {
+        int half = batch.size() / 2;
+        return writeOrSplit(batch.subList(0, half), failed, retry)
+                + writeOrSplit(batch.subList(half, batch.size()), failed, retry);
+    }
+
+    private int writeOrSplit(List<PendingReading> part, List<FailedReading> failed, List<PendingReading> retry) {
+        try {
+            write(part);
+            return part.size();
+        } catch (RuntimeException ex) {
+            failedFlushes.increment();
+            if (IngestionFailures.isTransient(ex)) {
+                retry.addAll(part);
+                return 0;
+            }
+            if (part.size() == 1) {
+                failed.add(new FailedReading(part.get(0), ex));
+                return 0;
+            }
+            return split(part, failed, retry);
+        }
+    }
+
+    /**
+     * Stores the readings, then releases their slots and acknowledges them.
+     */
+    private void write(List<PendingReading> batch) {
+        long started = System.nanoTime();
+        ingestionService.ingestAll(batch.stream().map(PendingReading::request).toList());
+        recordFlush(System.nanoTime() - started, batch.size());
+        acknowledge(batch);
+    }
+
+    private void acknowledge(List<PendingReading> batch) {
+        if (wal != null) {
+            wal.acknowledge(batch.stream().mapToLong(PendingReading::segmentId).toArray());
+        }
+    }
+
+    private void recordFlush(long nanos, int size) {
+        persisted.add(size);
+        flushes.increment();
+        flushNanos.add(nanos);
+        lastFlushNanos.set(nanos);
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+        slots.release(size);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) Duration.ofMillis(1).toNanos();
+    }
+
+    /**
+     * A buffered reading and the write-ahead log segment it was logged to.
+     */
+    private record PendingReading(MetricIngestionRequest request, long segmentId) { }
+
+    private record FailedReading(PendingReading reading, RuntimeException failure) { }
+}
@@ -0,0 +1,403 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.aggregation.ScaledAccumulator;
+import com.example.weather.api.archive.ChunkArchive;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.model.MetricRecord;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricReading;
+import com.example.weather.api.repository.MetricRecordRepository;
+import com.example.weather.api.repository.SensorRegistry;
+import com.example.weather.api.service.MetricIngestionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * In-memory columnar engine for dashboards that hit the same recent data
+ * over and over.
+ *
+ * <p>Each sensor + metric is a {@link ColumnarSeries} of primitive timestamp
+ * and scaled value arrays, held in a {@link SeriesTable} by sensor key. The engine is warmed from the database at startup
+ * and then kept in step as a {@link MetricIngestionListener}. It holds the last
+ * {@code weather.query.columnar.window} of readings plus the latest group of
+ * every series. Range queries reaching further back go to the database, which
+ * remains the source of truth, and to the {@link ChunkArchive} if enabled.</p>
+ *
+ * <p>Queries covering many readings are split into slices and aggregated on
+ * the {@link ParallelAggregator} pool.</p>
+ */
+@Component
+// applies readings before listeners that cache query results
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "weather.query", name = "engine", havingValue = "columnar")
+public class ColumnarMetricStorageEngine
+        implements MetricStorageEngine, MetricIngestionListener, SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnarMetricStorageEngine.class);
+
+    private final MetricRecordRepository repository;
+    private final SensorRegistry sensors;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ColumnarProperties properties;
+    // null when weather.query.parallel.enabled=false
+    private final ParallelAggregator parallel;
+    // null when weather.archive.enabled=false
+    private final ChunkArchive archive;
+
+    private final SeriesTable<ColumnarSeries> series = new SeriesTable<>();
+    // Readings before this instant were never loaded.
+    private volatile Instant loadedSince = Instant.MAX;
+    private volatile boolean warmedUp;
+
+    public ColumnarMetricStorageEngine(MetricRecordRepository repository,
+                                       SensorRegistry sensors,
+                                       PlatformTransactionManager transactionManager,
+                                       ColumnarProperties properties,
+                                       ObjectProvider<ParallelAggregator> parallel,
+                                       ObjectProvider<ChunkArchive> archive) {
+        this.repository = repository;
+        this.sensors = sensors;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+        this.parallel = parallel.getIfAvailable();
+        this.archive = archive.getIfAvailable();
+    }
+
+    /**
+     * Loads the window from the database before the application starts
+     * taking requests. Readings ingested before this point (e.g. write-ahead
+     * log replay) are already committed and therefore part of the load.
+     * Archived readings are loaded first, since they are mostly older.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.nanoTime();
+        Instant since = Instant.now().minus(properties.window());
+        long[] loaded = new long[1];
+
+        if (archive != null) {
+            archive.forEachReading(since, (sensorId, metric, micros, scaled) -> {
+                seriesFor(sensorId, metric).load(micros, scaled);
+                loaded[0]++;
+            });
+        }
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<MetricReading> latest = repository.streamLatestReadings()) {
+                latest.forEach(r -> seriesFor(r.sensorId(), r.metric())
+                        .loadLatest(toMicros(r.timestamp()), FixedPoint.toScaled(r.value())));
+            }
+            try (Stream<MetricReading> readings = repository.streamReadingsSince(since)) {
+                readings.forEach(r -> {
+                    seriesFor(r.sensorId(), r.metric()).load(toMicros(r.timestamp()), FixedPoint.toScaled(r.value()));
+                    loaded[0]++;
+                });
+            }
+        });
+
+        loadedSince = since;
+        warmedUp = true;
+        log.info("Columnar engine loaded {} reading(s) of {} series in {} ms",
+                loaded[0], series.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @Override
+    public void onIngested(List<MetricRecord> records) {
+        if (!warmedUp) {
+            return;
+        }
+        long horizon = toMicros(Instant.now().minus(properties.window()));
+        for (MetricRecord record : records) {
+            seriesFor(record.getSensorKey(), record.getMetricType())
+                    .append(toMicros(record.getTimestamp()), FixedPoint.toScaled(record.getValue()), horizon);
+        }
+    }
+
+    @Override
+    public void onPurged(MetricType metric, Instant before) {
+        long horizon = toMicros(before);
+        series.forEach((sensorKey, seriesMetric, found) -> {
+            if (seriesMetric == metric) {
+                found.evictBefore(horizon);
+            }
+        });
+    }
+
+    @Override
+    public List<MetricAggregate> aggregate(Collection<String> sensorIds,
+                                           Collection<MetricType> metrics,
+                                           Instant from,
+                                           Instant to,
+                                           boolean withDistribution) {
+        if (!covers(from)) {
+            if (archive == null) {
+                return aggregateStored(sensorIds, metrics, from, to, withDistribution);
+            }
+            return archive.read(() -> {
+                SeriesAggregator aggregator = new SeriesAggregator(withDistribution);
+                aggregateStored(sensorIds, metrics, from, to, withDistribution).forEach(aggregator::add);
+                archive.aggregate(sensorIds, metrics, from, to, withDistribution, aggregator::add);
+                return aggregator.results();
+            });
+        }
+
+        long fromMicros = ceilMicros(from);
+        long toMicros = toMicros(to);
+        List<Map.Entry<SeriesKey, ColumnarSeries>> selected = select(sensorIds, metrics);
+        if (parallel != null) {
+            long[] counts = new long[selected.size()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = selected.get(i).getValue().count(fromMicros, toMicros);
+                total += counts[i];
+            }
+            if (parallel.worthwhile(total)) {
+                return aggregateInParallel(selected, counts, fromMicros, toMicros, withDistribution);
+            }
+        }
+
+        List<MetricAggregate> results = new ArrayList<>();
+        for (Map.Entry<SeriesKey, ColumnarSeries> entry : selected) {
+            ScaledAccumulator acc = new ScaledAccumulator();
+            Distribution distribution = withDistribution ? new Distribution() : null;
+            long newest = entry.getValue().aggregate(fromMicros, toMicros, acc, distribution);
+            if (acc.count() > 0) {
+                results.add(toAggregate(entry.getKey(), acc, distribution, newest));
+            }
+        }
+        results.sort(MetricAggregate.RESULT_ORDER);
+        return results;
+    }
+
+    /**
+     * Readings outside the window, aggregated by the database.
+     */
+    private List<MetricAggregate> aggregateStored(Collection<String> sensorIds,
+                                                  Collection<MetricType> metrics,
+                                                  Instant from,
+                                                  Instant to,
+                                                  boolean withDistribution) {
+        return withDistribution
+                ? readOnlyTransaction.execute(status -> streamAggregate(sensorIds, metrics, from, to))
+                : repository.aggregate(sensorIds, metrics, from, to);
+    }
+
+    /**
+     * Readings outside the window, folded from a database cursor when the
+     * statistic needs a distribution the database cannot compute.
+     */
+    private List<MetricAggregate> streamAggregate(Collection<String> sensorIds,
+                                                  Collection<MetricType> metrics,
+                                                  Instant from,
+                                                  Instant to) {
+        SeriesAggregator aggregator = new SeriesAggregator(true);
+        try (Stream<MetricReading> readings = repository.streamReadings(sensorIds, metrics, from, to)) {
+            readings.forEach(aggregator::add);
+        }
+        return aggregator.results();
+    }
+
+    /**
+     * Cuts the query into slices of about {@code sliceSize} readings (whole
+     * series, or time ranges of a long series), aggregates each slice into its
+     * own accumulator on the pool and merges the slices of every series.
+     */
+    private List<MetricAggregate> aggregateInParallel(List<Map.Entry<SeriesKey, ColumnarSeries>> selected,
+                                                      long[] counts,
+                                                      long fromMicros,
+                                                      long toMicros,
+                                                      boolean withDistribution) {
+        List<Slice> slices = new ArrayList<>();
+        for (int i = 0; i < selected.size(); i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            int parts = (int) Math.min(Integer.MAX_VALUE, Math.max(1, counts[i] / parallel.sliceSize()));
+            // range width divided without overflowing for extreme bounds
+            long width = Math.max(1, (toMicros / parts - fromMicros / parts) + 1);
+            long start = fromMicros;
+            for (int part = 0; part < parts && start <= toMicros; part++) {
+                long end = part == parts - 1 ? toMicros : Math.min(toMicros, start + width - 1);
+                slices.add(new Slice(i, start, end));
+                start = end + 1;
+            }
+        }
+
+        ScaledAccumulator[] partials = new ScaledAccumulator[slices.size()];
+        Distribution[] distributions = new Distribution[slices.size()];
+        long[] newest = new long[slices.size()];
+        parallel.run(slices.size(), n -> {
+            Slice slice = slices.get(n);
+            partials[n] = new ScaledAccumulator();
+            distributions[n] = withDistribution ? new Distribution() : null;
+            newest[n] = selected.get(slice.series()).getValue()
+                    .aggregate(slice.from(), slice.to(), partials[n], distributions[n]);
+        });
+
+        // slices of one series are adjacent
+        List<MetricAggregate> results = new ArrayList<>();
+        int n = 0;
+        while (n < slices.size()) {
+            int series = slices.get(n).series();
+            ScaledAccumulator acc = new ScaledAccumulator();
+            Distribution distribution = withDistribution ? new Distribution() : null;
+            long latest = Long.MIN_VALUE;
+            for (; n < slices.size() && slices.get(n).series() == series; n++) {
+                acc.merge(partials[n]);
+                if (distribution != null) {
+                    distribution.merge(distributions[n]);
+                }
+                latest = Math.max(latest, newest[n]);
+            }
+            if (acc.count() > 0) {
+                results.add(toAggregate(selected.get(series).getKey(), acc, distribution, latest));
+            }
+        }
+        results.sort(MetricAggregate.RESULT_ORDER);
+        return results;
+    }
+
+    @Override
+    public List<MetricAggregate> aggregateLatest(Collection<String> sensorIds,
+                                                 Collection<MetricType> metrics,
+                                                 boolean withDistribution) {
+        if (!warmedUp) {
+            return readOnlyTransaction.execute(status -> {
+                if (!withDistribution) {
+                    return repository.aggregateLatest(sensorIds, metrics);
+                }
+                SeriesAggregator aggregator = new SeriesAggregator(true);
+                try (Stream<MetricReading> readings = repository.streamLatestReadings(sensorIds, metrics)) {
+                    readings.forEach(aggregator::add);
+                }
+                return aggregator.results();
+            });
+        }
+        List<MetricAggregate> results = new ArrayList<>();
+        for (Map.Entry<SeriesKey, ColumnarSeries> entry : select(sensorIds, metrics)) {
+            ScaledAccumulator acc = new ScaledAccumulator();
+            Distribution distribution = withDistribution ? new Distribution() : null;
+            long latest = entry.getValue().latest(acc, distribution);
+            if (acc.count() > 0) {
+                results.add(toAggregate(entry.getKey(), acc, distribution, latest));
+            }
+        }
+        results.sort(MetricAggregate.RESULT_ORDER);
+        return results;
+    }
+
+    /**
+     * True if every reading at or after {@code from} is guaranteed to be in memory.
+     */
+    private boolean covers(Instant from) {
+        if (!warmedUp) {
+            return false;
+        }
+        Instant windowStart = Instant.now().minus(properties.window());
+        Instant coveredFrom = loadedSince.isAfter(windowStart) ? loadedSince : windowStart;
+        return !from.isBefore(coveredFrom);
+    }
+
+    /**
+     * Looks up the requested series directly when sensor ids are given,
+     * otherwise scans all series for the requested metrics.
+     */
+    private List<Map.Entry<SeriesKey, ColumnarSeries>> select(Collection<String> sensorIds,
+                                                              Collection<MetricType> metrics) {
+        Set<MetricType> metricFilter = metrics == null || metrics.isEmpty()
+                ? EnumSet.allOf(MetricType.class)
+                : EnumSet.copyOf(metrics);
+
+        List<Map.Entry<SeriesKey, ColumnarSeries>> selected = new ArrayList<>();
+        if (sensorIds == null || sensorIds.isEmpty()) {
+            series.forEach((sensorKey, metric, found) -> {
+                if (metricFilter.contains(metric)) {
+                    selected.add(Map.entry(new SeriesKey(sensorKey, metric), found));
+                }
+            });
+            return selected;
+        }
+
+        for (String sensorId : new LinkedHashSet<>(sensorIds)) {
+            Integer sensorKey = sensors.keyOf(sensorId);
+            if (sensorKey == null) {
+                continue;
+            }
+            for (MetricType metric : metricFilter) {
+                ColumnarSeries found = series.get(sensorKey, metric);
+                if (found != null) {
+                    selected.add(Map.entry(new SeriesKey(sensorKey, metric), found));
+                }
+            }
+        }
+        return selected;
+    }
+
+    private ColumnarSeries seriesFor(String sensorId, MetricType metric) {
+        return seriesFor(sensors.register(sensorId), metric);
+    }
+
+    private ColumnarSeries seriesFor(int sensorKey, MetricType metric) {
+        return series.computeIfAbsent(sensorKey, metric, () -> new ColumnarSeries(properties.chunkSize()));
+    }
+
+    private MetricAggregate toAggregate(SeriesKey key, ScaledAccumulator acc,
+                                        Distribution distribution, long newestMicros) {
+        return new MetricAggregate(
+                sensors.idOf(key.sensorKey()),
+                key.metric(),
+                acc.count(),
+                acc.sum(),
+                acc.min(),
+                acc.max(),
+                fromMicros(newestMicros),
+                distribution
+        );
+    }
+
+    /**
+     * Epoch microseconds, rounded down (the database keeps microseconds too).
+     */
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    /**
+     * Epoch microseconds, rounded up; used for inclusive lower bounds.
+     */
+    private static long ceilMicros(Instant instant) {
+        return toMicros(instant) + (instant.getNano() % 1_000 == 0 ? 0 : 1);
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000);
+    }
+
+    private record SeriesKey(int sensorKey, MetricType metric) { }
+
+    /**
+     * Readings {@code [from, to]} of the selected series at index {@code series}.
+     */
+    private record Slice(int series, long from, long to) { }
+}
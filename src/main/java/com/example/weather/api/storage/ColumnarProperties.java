@@ -0,0 +1,19 @@
+package com.example.weather.api.storage;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for {@link ColumnarMetricStorageEngine}.
+ *
+ * @param window    how much recent history is held in memory; range queries
+ *                  reaching further back are answered by the database
+ * @param chunkSize readings per array chunk of a series
+ */
+@ConfigurationProperties(prefix = "weather.query.columnar")
+public record ColumnarProperties(
+        @DefaultValue("35d") Duration window,
+        @DefaultValue("4096") int chunkSize
+) { }
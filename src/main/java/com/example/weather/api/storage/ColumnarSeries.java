@@ -0,0 +1,316 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.aggregation.ScaledAccumulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Readings of one sensor + metric, stored column-wise in primitive arrays.
+ *
+ * <p>Timestamps (epoch microseconds) and scaled values live in parallel
+ * {@code long[]} chunks kept in time order. Appends in time order just fill
+ * the last chunk; the rare out-of-order reading is inserted in place and
+ * splits a full chunk in two. Range aggregation is a binary search for the
+ * first reading followed by a tight loop over the arrays.</p>
+ *
+ * <p>The latest-timestamp group is tracked separately, so it survives when
+ * old chunks are evicted.</p>
+ */
+final class ColumnarSeries {
+
+    private final int chunkCapacity;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private long latestMicros = Long.MIN_VALUE;
+    private long[] latestValues = new long[1];
+    private int latestCount;
+
+    ColumnarSeries(int chunkCapacity) {
+        this.chunkCapacity = chunkCapacity;
+    }
+
+    /**
+     * Adds a newly ingested reading and drops chunks that ended before {@code horizonMicros}.
+     */
+    void append(long micros, long value, long horizonMicros) {
+        lock.writeLock().lock();
+        try {
+            insert(micros, value);
+            addLatest(micros, value);
+            while (chunks.size() > 1 && chunks.get(0).lastTime() < horizonMicros) {
+                chunks.remove(0);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every reading before {@code horizonMicros}, except the latest group.
+     */
+    void evictBefore(long horizonMicros) {
+        lock.writeLock().lock();
+        try {
+            while (!chunks.isEmpty() && chunks.get(0).lastTime() < horizonMicros) {
+                chunks.remove(0);
+            }
+            if (!chunks.isEmpty()) {
+                chunks.get(0).removeBefore(chunks.get(0).lowerBound(horizonMicros));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a reading loaded at warm-up, without touching the latest group
+     * (which is seeded separately).
+     */
+    void load(long micros, long value) {
+        lock.writeLock().lock();
+        try {
+            insert(micros, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds one reading to the latest group at warm-up.
+     */
+    void loadLatest(long micros, long value) {
+        lock.writeLock().lock();
+        try {
+            addLatest(micros, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Folds every reading in {@code [fromMicros, toMicros]} into {@code target},
+     * and into {@code distribution} unless it is null.
+     *
+     * @return the timestamp of the newest reading folded in, or {@link Long#MIN_VALUE} if none
+     */
+    long aggregate(long fromMicros, long toMicros, ScaledAccumulator target, Distribution distribution) {
+        lock.readLock().lock();
+        try {
+            long newest = Long.MIN_VALUE;
+            for (int c = firstChunkEndingAtOrAfter(fromMicros); c < chunks.size(); c++) {
+                Chunk chunk = chunks.get(c);
+                long[] times = chunk.times;
+                long[] values = chunk.values;
+                int size = chunk.size;
+                for (int i = chunk.lowerBound(fromMicros); i < size; i++) {
+                    long time = times[i];
+                    if (time > toMicros) {
+                        return newest;
+                    }
+                    target.add(values[i]);
+                    if (distribution != null) {
+                        distribution.add(values[i]);
+                    }
+                    newest = time;
+                }
+            }
+            return newest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of readings in {@code [fromMicros, toMicros]}; two binary
+     * searches plus one step per chunk in between.
+     */
+    long count(long fromMicros, long toMicros) {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (int c = firstChunkEndingAtOrAfter(fromMicros); c < chunks.size(); c++) {
+                Chunk chunk = chunks.get(c);
+                int start = chunk.lowerBound(fromMicros);
+                if (chunk.lastTime() > toMicros) {
+                    return count + Math.max(0, chunk.upperBound(toMicros) - start);
+                }
+                count += chunk.size - start;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the latest group into {@code target}, and into {@code distribution}
+     * unless it is null.
+     *
+     * @return its timestamp, or {@link Long#MIN_VALUE} if the series is empty
+     */
+    long latest(ScaledAccumulator target, Distribution distribution) {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < latestCount; i++) {
+                target.add(latestValues[i]);
+                if (distribution != null) {
+                    distribution.add(latestValues[i]);
+                }
+            }
+            return latestMicros;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void addLatest(long micros, long value) {
+        if (micros > latestMicros) {
+            latestMicros = micros;
+            latestCount = 0;
+        }
+        if (micros == latestMicros) {
+            if (latestCount == latestValues.length) {
+                latestValues = Arrays.copyOf(latestValues, latestCount * 2);
+            }
+            latestValues[latestCount++] = value;
+        }
+    }
+
+    private void insert(long micros, long value) {
+        if (chunks.isEmpty() || micros >= chunks.get(chunks.size() - 1).lastTime()) {
+            Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (last == null || last.size == chunkCapacity) {
+                last = new Chunk(chunkCapacity);
+                chunks.add(last);
+            }
+            last.append(micros, value);
+            return;
+        }
+
+        // Out of order: goes into the first chunk that ends after it.
+        int c = firstChunkEndingAfter(micros);
+        Chunk chunk = chunks.get(c);
+        if (chunk.size == chunkCapacity) {
+            Chunk upper = chunk.splitUpperHalf(chunkCapacity);
+            chunks.add(c + 1, upper);
+            if (micros >= chunk.lastTime()) {
+                chunk = upper;
+            }
+        }
+        chunk.insert(chunk.upperBound(micros), micros, value);
+    }
+
+    private int firstChunkEndingAtOrAfter(long micros) {
+        int low = 0;
+        int high = chunks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (chunks.get(mid).lastTime() < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstChunkEndingAfter(long micros) {
+        int low = 0;
+        int high = chunks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (chunks.get(mid).lastTime() <= micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Fixed-capacity block of parallel timestamp / value arrays.
+     */
+    private static final class Chunk {
+
+        final long[] times;
+        final long[] values;
+        int size;
+
+        Chunk(int capacity) {
+            this.times = new long[capacity];
+            this.values = new long[capacity];
+        }
+
+        long lastTime() {
+            return times[size - 1];
+        }
+
+        void append(long time, long value) {
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+
+        void insert(int index, long time, long value) {
+            System.arraycopy(times, index, times, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            times[index] = time;
+            values[index] = value;
+            size++;
+        }
+
+        void removeBefore(int index) {
+            System.arraycopy(times, index, times, 0, size - index);
+            System.arraycopy(values, index, values, 0, size - index);
+            size -= index;
+        }
+
+        Chunk splitUpperHalf(int capacity) {
+            Chunk upper = new Chunk(capacity);
+            int half = size / 2;
+            upper.size = size - half;
+            System.arraycopy(times, half, upper.times, 0, upper.size);
+            System.arraycopy(values, half, upper.values, 0, upper.size);
+            size = half;
+            return upper;
+        }
+
+        /** First index with time >= the given time. */
+        int lowerBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** First index with time > the given time. */
+        int upperBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.archive.ChunkArchive;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricReading;
+import com.example.weather.api.repository.MetricRecordRepository;
+import com.example.weather.api.repository.MetricRollupRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Default engine: every query is answered from the database.
+ *
+ * Range queries are planned by {@link RollupQueryPlanner}: whole days, hours
+ * and minutes are read from {@code metric_rollups}, and only the ragged
+ * sub-minute edges from the raw readings (and from the {@link ChunkArchive}
+ * once they have been archived).
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.query", name = "engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaMetricStorageEngine implements MetricStorageEngine {
+
+    private final MetricRecordRepository repository;
+    private final MetricRollupRepository rollups;
+    // null when weather.archive.enabled=false
+    private final ChunkArchive archive;
+
+    public JpaMetricStorageEngine(MetricRecordRepository repository,
+                                  MetricRollupRepository rollups,
+                                  ObjectProvider<ChunkArchive> archive) {
+        this.repository = repository;
+        this.rollups = rollups;
+        this.archive = archive.getIfAvailable();
+    }
+
+    /**
+     * Rollup rows and raw edge readings are folded into one accumulator per
+     * sensor + metric as they are read; raw readings come through a cursor,
+     * so no step materializes its rows.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<MetricAggregate> aggregate(Collection<String> sensorIds,
+                                           Collection<MetricType> metrics,
+                                           Instant from,
+                                           Instant to,
+                                           boolean withDistribution) {
+        if (archive != null) {
+            return archive.read(() -> aggregateRange(sensorIds, metrics, from, to, withDistribution));
+        }
+        return aggregateRange(sensorIds, metrics, from, to, withDistribution);
+    }
+
+    private List<MetricAggregate> aggregateRange(Collection<String> sensorIds,
+                                                 Collection<MetricType> metrics,
+                                                 Instant from,
+                                                 Instant to,
+                                                 boolean withDistribution) {
+        SeriesAggregator aggregator = new SeriesAggregator(withDistribution);
+        for (RollupQueryPlanner.Step step : RollupQueryPlanner.plan(from, to)) {
+            if (step.isRaw()) {
+                // raw ranges are inclusive on both ends
+                Instant last = step.end().minus(RollupQueryPlanner.TICK);
+                try (Stream<MetricReading> readings = repository.streamReadings(sensorIds, metrics, step.start(), last)) {
+                    readings.forEach(aggregator::add);
+                }
+                if (archive != null) {
+                    archive.aggregate(sensorIds, metrics, step.start(), last, withDistribution, aggregator::add);
+                }
+            } else {
+                rollups.aggregate(step.bucket(), sensorIds, metrics, step.start(), step.end(), withDistribution)
+                        .forEach(aggregator::add);
+            }
+        }
+        return aggregator.results();
+    }
+
+    /**
+     * The database aggregates the latest group unless a distribution is
+     * needed; the group's readings are then folded here.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<MetricAggregate> aggregateLatest(Collection<String> sensorIds,
+                                                 Collection<MetricType> metrics,
+                                                 boolean withDistribution) {
+        if (!withDistribution) {
+            return repository.aggregateLatest(sensorIds, metrics);
+        }
+        SeriesAggregator aggregator = new SeriesAggregator(true);
+        try (Stream<MetricReading> readings = repository.streamLatestReadings(sensorIds, metrics)) {
+            readings.forEach(aggregator::add);
+        }
+        return aggregator.results();
+    }
+}
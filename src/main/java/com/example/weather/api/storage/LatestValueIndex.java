@@ -0,0 +1,155 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.aggregation.ScaledAccumulator;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.model.MetricRecord;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricReading;
+import com.example.weather.api.repository.MetricRecordRepository;
+import com.example.weather.api.repository.SensorRegistry;
+import com.example.weather.api.service.MetricIngestionListener;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Latest timestamp and the values recorded at it, per sensor + metric.
+ *
+ * <p>Answers latest-data queries (no {@code from}/{@code to}) from memory: one
+ * array lookup per requested sensor + metric, no database access. It is loaded
+ * from the database at startup and updated after every committed ingest.
+ * Disable with {@code weather.query.latest-index.enabled=false}.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.query.latest-index", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class LatestValueIndex implements MetricIngestionListener, SmartInitializingSingleton {
+
+    private static final MetricType[] ALL_METRICS = MetricType.values();
+
+    private final MetricRecordRepository repository;
+    private final SensorRegistry sensors;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final SeriesTable<Latest> latest = new SeriesTable<>();
+    private volatile boolean warmedUp;
+
+    public LatestValueIndex(MetricRecordRepository repository,
+                            SensorRegistry sensors,
+                            PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.sensors = sensors;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Loads the latest readings before the application takes requests.
+     * Readings ingested earlier (write-ahead log replay) are already committed
+     * and therefore part of the load.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<MetricReading> readings = repository.streamLatestReadings()) {
+                readings.forEach(r -> offer(sensors.register(r.sensorId()), r.metric(), r.timestamp(), r.value()));
+            }
+        });
+        warmedUp = true;
+    }
+
+    @Override
+    public void onIngested(List<MetricRecord> records) {
+        if (!warmedUp) {
+            return;
+        }
+        for (MetricRecord record : records) {
+            offer(record.getSensorKey(), record.getMetricType(), record.getTimestamp(), record.getValue());
+        }
+    }
+
+    /**
+     * Same result as {@code MetricStorageEngine.aggregateLatest}.
+     */
+    public List<MetricAggregate> aggregateLatest(Collection<String> sensorIds,
+                                                 Collection<MetricType> metrics,
+                                                 boolean withDistribution) {
+        boolean allMetrics = metrics == null || metrics.isEmpty();
+        List<MetricAggregate> results = new ArrayList<>();
+
+        if (sensorIds == null || sensorIds.isEmpty()) {
+            latest.forEach((sensorKey, metric, value) -> {
+                if (allMetrics || metrics.contains(metric)) {
+                    results.add(value.toAggregate(sensors.idOf(sensorKey), metric, withDistribution));
+                }
+            });
+        } else {
+            Collection<MetricType> wanted = allMetrics ? List.of(ALL_METRICS) : new LinkedHashSet<>(metrics);
+            for (String sensorId : new LinkedHashSet<>(sensorIds)) {
+                Integer sensorKey = sensors.keyOf(sensorId);
+                if (sensorKey == null) {
+                    continue;
+                }
+                for (MetricType metric : wanted) {
+                    Latest value = latest.get(sensorKey, metric);
+                    if (value != null) {
+                        results.add(value.toAggregate(sensors.idOf(sensorKey), metric, withDistribution));
+                    }
+                }
+            }
+        }
+
+        results.sort(MetricAggregate.RESULT_ORDER);
+        return results;
+    }
+
+    private void offer(int sensorKey, MetricType metric, Instant recordedAt, BigDecimal value) {
+        // same precision as the database, so ties match what it would return
+        Instant timestamp = recordedAt.truncatedTo(ChronoUnit.MICROS);
+        long scaled = FixedPoint.toScaled(value);
+        latest.update(sensorKey, metric, current -> {
+            if (current == null || timestamp.isAfter(current.timestamp())) {
+                return new Latest(timestamp, new long[] {scaled});
+            }
+            if (timestamp.equals(current.timestamp())) {
+                long[] values = Arrays.copyOf(current.values(), current.values().length + 1);
+                values[values.length - 1] = scaled;
+                return new Latest(timestamp, values);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Never modified after construction (a tie copies the array), so readers
+     * never need a lock. Values are scaled longs, see {@link FixedPoint}.
+     */
+    private record Latest(Instant timestamp, long[] values) {
+
+        MetricAggregate toAggregate(String sensorId, MetricType metric, boolean withDistribution) {
+            ScaledAccumulator acc = new ScaledAccumulator();
+            Distribution distribution = withDistribution ? new Distribution() : null;
+            for (long value : values) {
+                acc.add(value);
+                if (distribution != null) {
+                    distribution.add(value);
+                }
+            }
+            return new MetricAggregate(sensorId, metric, acc.count(),
+                    acc.sum(), acc.min(), acc.max(), timestamp, distribution);
+        }
+    }
+}
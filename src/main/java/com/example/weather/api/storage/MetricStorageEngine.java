@@ -0,0 +1,41 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.repository.MetricAggregate;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Backend that answers the aggregations behind {@code MetricQueryService}.
+ *
+ * <p>The database is always the source of truth. Implementations either run
+ * the aggregation there ({@link JpaMetricStorageEngine}) or on a copy they keep
+ * in step with ingestion ({@link ColumnarMetricStorageEngine}). Selected with
+ * {@code weather.query.engine}.</p>
+ *
+ * <p>A {@code null} or empty filter collection means "no filter". Results are
+ * ordered by sensor id and metric name. With {@code withDistribution} every
+ * aggregate also carries its {@link com.example.weather.api.aggregation.Distribution}
+ * (variance and quantile sketch); without it that part is skipped and null.</p>
+ */
+public interface MetricStorageEngine {
+
+    /**
+     * Count, sum, min and max per sensor + metric over readings in {@code [from, to]}.
+     */
+    List<MetricAggregate> aggregate(Collection<String> sensorIds,
+                                    Collection<MetricType> metrics,
+                                    Instant from,
+                                    Instant to,
+                                    boolean withDistribution);
+
+    /**
+     * Same as {@link #aggregate}, restricted to the reading(s) with the latest
+     * timestamp of each sensor + metric.
+     */
+    List<MetricAggregate> aggregateLatest(Collection<String> sensorIds,
+                                          Collection<MetricType> metrics,
+                                          boolean withDistribution);
+}
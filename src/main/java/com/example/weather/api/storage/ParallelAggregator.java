@@ -0,0 +1,95 @@
+package com.example.weather.api.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the slices of a large in-memory aggregation on a dedicated, bounded
+ * fork-join pool.
+ *
+ * <p>Request threads only wait for the result, so a fleet-wide query uses
+ * every core without taking threads away from other requests, and without
+ * competing with other users of the common pool.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.query.parallel", name = "enabled", havingValue = "true", matchIfMissing = true)
+class ParallelAggregator {
+
+    private final ParallelQueryProperties properties;
+    private final ForkJoinPool pool;
+
+    ParallelAggregator(ParallelQueryProperties properties) {
+        this.properties = properties;
+        int parallelism = properties.parallelism() > 0
+                ? properties.parallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("query-aggregate-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * True if a query over this many readings should run in parallel.
+     */
+    boolean worthwhile(long readings) {
+        return readings >= properties.threshold() && pool.getParallelism() > 1;
+    }
+
+    int sliceSize() {
+        return properties.sliceSize();
+    }
+
+    /**
+     * Calls {@code slice} for every index in {@code [0, slices)} on the pool
+     * and returns once all of them are done. Results written by the slices
+     * are visible to the caller afterwards.
+     */
+    void run(int slices, IntConsumer slice) {
+        pool.invoke(new Slices(0, slices, slice));
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Halves the index range until single slices remain, so idle workers
+     * can steal the other half.
+     */
+    private static final class Slices extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final IntConsumer slice;
+
+        Slices(int from, int to, IntConsumer slice) {
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                slice.accept(from);
+                return;
+            }
+            if (to <= from) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Slices(from, mid, slice), new Slices(mid, to, slice));
+        }
+    }
+}
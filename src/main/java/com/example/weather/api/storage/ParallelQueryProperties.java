@@ -0,0 +1,21 @@
+package com.example.weather.api.storage;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for {@link ParallelAggregator}.
+ *
+ * @param enabled     aggregate large in-memory queries on several threads
+ * @param threshold   readings a query must cover before it runs in parallel;
+ *                    below that, the hand-off costs more than it saves
+ * @param parallelism threads of the aggregation pool; 0 means one per CPU core
+ * @param sliceSize   readings per task; longer series are split by time
+ */
+@ConfigurationProperties(prefix = "weather.query.parallel")
+public record ParallelQueryProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("200000") long threshold,
+        @DefaultValue("0") int parallelism,
+        @DefaultValue("65536") int sliceSize
+) { }
@@ -0,0 +1,229 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.archive.ChunkArchive;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.StatisticType;
+import com.example.weather.api.model.MetricRecord;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricReading;
+import com.example.weather.api.repository.MetricRecordRepository;
+import com.example.weather.api.repository.SensorRegistry;
+import com.example.weather.api.service.MetricIngestionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Continuous aggregates over the trailing windows listed in
+ * {@code weather.query.rolling.windows} (e.g. the last hour and the last
+ * day), per sensor + metric.
+ *
+ * <p>Count, sum, min and max of every window are updated as readings are
+ * ingested and as they fall out of the window (see
+ * {@link SlidingWindowSeries}), so a rolling query costs one lookup per
+ * series instead of aggregating its readings. Statistics that need a
+ * distribution (STDDEV, percentiles) are still computed by the storage
+ * engine.</p>
+ *
+ * <p>Ordered first among the ingestion listeners, like the other stores
+ * that answer queries. The windows end at the time of the query. Unlike a range query,
+ * readings timestamped in the future count once they have been ingested.
+ * Loaded from the database (and the archive) at startup and updated after
+ * every committed ingest and retention purge. Off by default; enable with
+ * {@code weather.query.rolling.enabled=true}.</p>
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "weather.query.rolling", name = "enabled", havingValue = "true")
+public class RollingWindowIndex implements MetricIngestionListener, SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(RollingWindowIndex.class);
+    private static final MetricType[] ALL_METRICS = MetricType.values();
+
+    private final MetricRecordRepository repository;
+    private final SensorRegistry sensors;
+    private final TransactionTemplate readOnlyTransaction;
+    // null when weather.archive.enabled=false
+    private final ChunkArchive archive;
+
+    // ascending, same order as the lengths handed to every series
+    private final List<Duration> windows;
+    private final long[] lengthsMicros;
+    private final SeriesTable<SlidingWindowSeries> series = new SeriesTable<>();
+    private volatile boolean warmedUp;
+
+    public RollingWindowIndex(MetricRecordRepository repository,
+                              SensorRegistry sensors,
+                              PlatformTransactionManager transactionManager,
+                              ObjectProvider<ChunkArchive> archive,
+                              RollingWindowProperties properties) {
+        this.repository = repository;
+        this.sensors = sensors;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.archive = archive.getIfAvailable();
+
+        if (properties.windows().isEmpty()) {
+            throw new IllegalArgumentException("weather.query.rolling.windows must list at least one window.");
+        }
+        for (Duration window : properties.windows()) {
+            if (window.isNegative() || window.isZero() || window.compareTo(Duration.ofDays(31)) > 0) {
+                throw new IllegalArgumentException("Rolling window " + window + " must be positive and at most one month.");
+            }
+        }
+        this.windows = List.copyOf(new TreeSet<>(properties.windows()));
+        this.lengthsMicros = windows.stream().mapToLong(window -> window.toNanos() / 1_000).toArray();
+    }
+
+    /**
+     * Loads the readings of the longest window before the application takes
+     * requests. Readings ingested earlier (write-ahead log replay) are already
+     * committed and therefore part of the load.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.nanoTime();
+        Instant now = Instant.now();
+        Instant since = now.minus(windows.get(windows.size() - 1));
+
+        if (archive != null) {
+            archive.forEachReading(since, (sensorId, metric, micros, scaled) ->
+                    seriesFor(sensors.register(sensorId), metric).load(micros, scaled));
+        }
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<MetricReading> readings = repository.streamReadingsSince(since)) {
+                readings.forEach(r -> seriesFor(sensors.register(r.sensorId()), r.metric())
+                        .load(toMicros(r.timestamp()), FixedPoint.toScaled(r.value())));
+            }
+        });
+
+        long nowMicros = ceilMicros(now);
+        long[] held = new long[1];
+        series.forEach((sensorKey, metric, found) -> {
+            found.finishLoad(nowMicros);
+            held[0] += found.size();
+        });
+        warmedUp = true;
+        log.info("Rolling windows {} loaded {} reading(s) of {} series in {} ms",
+                windows, held[0], series.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @Override
+    public void onIngested(List<MetricRecord> records) {
+        if (!warmedUp) {
+            return;
+        }
+        long nowMicros = ceilMicros(Instant.now());
+        for (MetricRecord record : records) {
+            seriesFor(record.getSensorKey(), record.getMetricType())
+                    .add(toMicros(record.getTimestamp()), FixedPoint.toScaled(record.getValue()), nowMicros);
+        }
+    }
+
+    @Override
+    public void onPurged(MetricType metric, Instant before) {
+        long beforeMicros = ceilMicros(before);
+        series.forEach((sensorKey, seriesMetric, found) -> {
+            if (seriesMetric == metric) {
+                found.purge(beforeMicros);
+            }
+        });
+    }
+
+    /**
+     * True if {@code statistic} over the trailing {@code window} can be
+     * answered from memory.
+     */
+    public boolean covers(Duration window, StatisticType statistic) {
+        return warmedUp && !statistic.needsDistribution() && windows.contains(window);
+    }
+
+    /**
+     * Same result as {@code MetricStorageEngine.aggregate} over
+     * {@code [now - window, now]}, without a distribution. Call only when
+     * {@link #covers} holds.
+     */
+    public List<MetricAggregate> aggregate(Collection<String> sensorIds,
+                                           Collection<MetricType> metrics,
+                                           Duration window,
+                                           Instant now) {
+        int index = windows.indexOf(window);
+        // now - length is then the inclusive lower bound a range query would use
+        long nowMicros = ceilMicros(now);
+        boolean allMetrics = metrics == null || metrics.isEmpty();
+        List<MetricAggregate> results = new ArrayList<>();
+        SlidingWindowSeries.WindowAggregate acc = new SlidingWindowSeries.WindowAggregate();
+
+        if (sensorIds == null || sensorIds.isEmpty()) {
+            series.forEach((sensorKey, metric, found) -> {
+                if (allMetrics || metrics.contains(metric)) {
+                    addIfPresent(results, sensors.idOf(sensorKey), metric, found, index, nowMicros, acc);
+                }
+            });
+        } else {
+            Collection<MetricType> wanted = allMetrics ? List.of(ALL_METRICS) : new LinkedHashSet<>(metrics);
+            for (String sensorId : new LinkedHashSet<>(sensorIds)) {
+                Integer sensorKey = sensors.keyOf(sensorId);
+                if (sensorKey == null) {
+                    continue;
+                }
+                for (MetricType metric : wanted) {
+                    SlidingWindowSeries found = series.get(sensorKey, metric);
+                    if (found != null) {
+                        addIfPresent(results, sensorId, metric, found, index, nowMicros, acc);
+                    }
+                }
+            }
+        }
+
+        results.sort(MetricAggregate.RESULT_ORDER);
+        return results;
+    }
+
+    private static void addIfPresent(List<MetricAggregate> results, String sensorId, MetricType metric,
+                                     SlidingWindowSeries found, int index, long nowMicros,
+                                     SlidingWindowSeries.WindowAggregate acc) {
+        long newest = found.aggregate(index, nowMicros, acc);
+        if (newest != Long.MIN_VALUE) {
+            results.add(new MetricAggregate(sensorId, metric, acc.count, acc.sum,
+                    FixedPoint.toDecimal(acc.min), FixedPoint.toDecimal(acc.max), fromMicros(newest)));
+        }
+    }
+
+    private SlidingWindowSeries seriesFor(int sensorKey, MetricType metric) {
+        return series.computeIfAbsent(sensorKey, metric, () -> new SlidingWindowSeries(lengthsMicros));
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    /**
+     * Epoch microseconds, rounded up; used for inclusive lower bounds.
+     */
+    private static long ceilMicros(Instant instant) {
+        return toMicros(instant) + (instant.getNano() % 1_000 == 0 ? 0 : 1);
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.weather.api.storage;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Settings for {@link RollingWindowIndex}.
+ *
+ * @param enabled maintain rolling windows at all
+ * @param windows the trailing windows kept per sensor + metric; each costs
+ *                a few counters per series, the longest one decides how many
+ *                readings are held in memory
+ */
+@ConfigurationProperties(prefix = "weather.query.rolling")
+public record RollingWindowProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue({"1h", "24h"}) List<Duration> windows
+) { }
@@ -0,0 +1,71 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.enums.RollupBucket;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a query window into rollup buckets and raw edges.
+ *
+ * <p>The window is covered with the coarsest whole buckets that fit, and the
+ * ragged ends are covered with the next finer size, down to minutes. Only the
+ * sub-minute edges are read from raw readings. A 31-day window becomes about 30
+ * daily buckets, up to 46 hourly ones, up to 118 minute ones and two short raw
+ * ranges, whatever the number of raw readings.</p>
+ */
+final class RollupQueryPlanner {
+
+    /** Storage precision of timestamps; the smallest step between two readings. */
+    static final Duration TICK = ChronoUnit.MICROS.getDuration();
+
+    private RollupQueryPlanner() {
+    }
+
+    /**
+     * Plans the inclusive window {@code [from, to]}.
+     */
+    static List<Step> plan(Instant from, Instant to) {
+        List<Step> steps = new ArrayList<>();
+        Instant end = to.truncatedTo(ChronoUnit.MICROS).plus(TICK);
+        cover(from, end, RollupBucket.values().length - 1, steps);
+        return steps;
+    }
+
+    /**
+     * Covers {@code [start, end)} with buckets of the given level or finer.
+     */
+    private static void cover(Instant start, Instant end, int level, List<Step> steps) {
+        if (!start.isBefore(end)) {
+            return;
+        }
+        if (level < 0) {
+            steps.add(new Step(null, start, end));
+            return;
+        }
+        RollupBucket bucket = RollupBucket.values()[level];
+        Instant first = bucket.ceil(start);
+        Instant last = bucket.floor(end);
+        if (!first.isBefore(last)) {
+            cover(start, end, level - 1, steps);
+            return;
+        }
+        cover(start, first, level - 1, steps);
+        steps.add(new Step(bucket, first, last));
+        cover(last, end, level - 1, steps);
+    }
+
+    /**
+     * Half-open range {@code [start, end)}, read from the given rollup bucket
+     * size or, when {@code bucket} is null, from raw readings.
+     */
+    record Step(RollupBucket bucket, Instant start, Instant end) {
+
+        boolean isRaw() {
+            return bucket == null;
+        }
+    }
+}
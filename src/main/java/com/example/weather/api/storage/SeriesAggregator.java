@@ -0,0 +1,101 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.aggregation.ScaledAccumulator;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricReading;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds readings and partial aggregates into one accumulator per
+ * sensor + metric as they stream past.
+ *
+ * Memory grows with the number of groups, not with the number of readings,
+ * so a query can read any number of rows through a cursor. Not thread-safe.
+ */
+final class SeriesAggregator {
+
+    private final Map<SeriesKey, Group> groups = new HashMap<>();
+    private final boolean withDistribution;
+
+    /**
+     * @param withDistribution also build a {@link Distribution} per group; partial
+     *                         aggregates must then carry one as well
+     */
+    SeriesAggregator(boolean withDistribution) {
+        this.withDistribution = withDistribution;
+    }
+
+    void add(MetricReading reading) {
+        group(reading.sensorId(), reading.metric()).add(reading);
+    }
+
+    /**
+     * Adds a group that was already aggregated, e.g. by a rollup query.
+     */
+    void add(MetricAggregate partial) {
+        group(partial.sensorId(), partial.metric()).add(partial);
+    }
+
+    /**
+     * One aggregate per group, in {@link MetricAggregate#RESULT_ORDER}.
+     */
+    List<MetricAggregate> results() {
+        List<MetricAggregate> results = new ArrayList<>(groups.size());
+        groups.forEach((key, group) -> results.add(group.toAggregate(key)));
+        results.sort(MetricAggregate.RESULT_ORDER);
+        return results;
+    }
+
+    private Group group(String sensorId, MetricType metric) {
+        return groups.computeIfAbsent(new SeriesKey(sensorId, metric), key -> new Group(withDistribution));
+    }
+
+    private record SeriesKey(String sensorId, MetricType metric) { }
+
+    private static final class Group {
+
+        private final ScaledAccumulator values = new ScaledAccumulator();
+        private final Distribution distribution;
+        private Instant latest;
+
+        Group(boolean withDistribution) {
+            this.distribution = withDistribution ? new Distribution() : null;
+        }
+
+        void add(MetricReading reading) {
+            long scaled = FixedPoint.toScaled(reading.value());
+            values.add(scaled);
+            if (distribution != null) {
+                distribution.add(scaled);
+            }
+            newest(reading.timestamp());
+        }
+
+        void add(MetricAggregate partial) {
+            values.merge(partial.count(), partial.sum(), partial.min(), partial.max());
+            if (distribution != null) {
+                distribution.merge(partial.distribution());
+            }
+            newest(partial.latestTimestamp());
+        }
+
+        private void newest(Instant timestamp) {
+            if (latest == null || timestamp.isAfter(latest)) {
+                latest = timestamp;
+            }
+        }
+
+        MetricAggregate toAggregate(SeriesKey key) {
+            return new MetricAggregate(key.sensorId(), key.metric(), values.count(),
+                    values.sum(), values.min(), values.max(), latest, distribution);
+        }
+    }
+}
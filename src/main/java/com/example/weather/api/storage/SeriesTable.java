@@ -0,0 +1,118 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.enums.MetricType;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Per-series values addressed by sensor key and {@link MetricType#ordinal()}.
+ *
+ * <p>Sensor keys are small and dense (see
+ * {@link com.example.weather.api.repository.SensorRegistry}), so a series is two
+ * array indexes away instead of a hash lookup on a boxed key object. Each
+ * sensor has one row of slots, one per metric; rows are created on first use
+ * and never replaced, so growing the outer array cannot lose a concurrent
+ * update.</p>
+ */
+final class SeriesTable<T> {
+
+    private static final MetricType[] METRICS = MetricType.values();
+
+    @SuppressWarnings("unchecked")
+    private volatile AtomicReferenceArray<T>[] rows = new AtomicReferenceArray[64];
+
+    /**
+     * The value of a series, or null.
+     */
+    T get(int sensorKey, MetricType metric) {
+        AtomicReferenceArray<T> row = row(sensorKey);
+        return row == null ? null : row.get(metric.ordinal());
+    }
+
+    /**
+     * The value of a series, created by {@code factory} if absent. The factory
+     * may run more than once under contention; only one result is kept.
+     */
+    T computeIfAbsent(int sensorKey, MetricType metric, Supplier<T> factory) {
+        AtomicReferenceArray<T> row = rowFor(sensorKey);
+        T current = row.get(metric.ordinal());
+        if (current != null) {
+            return current;
+        }
+        T created = factory.get();
+        return row.compareAndSet(metric.ordinal(), null, created) ? created : row.get(metric.ordinal());
+    }
+
+    /**
+     * Replaces the value of a series with {@code update} applied to the current
+     * one (null if absent). {@code update} must be side-effect free; it is
+     * retried if another thread changed the value in between.
+     */
+    void update(int sensorKey, MetricType metric, UnaryOperator<T> update) {
+        AtomicReferenceArray<T> row = rowFor(sensorKey);
+        int slot = metric.ordinal();
+        T current;
+        do {
+            current = row.get(slot);
+        } while (!row.compareAndSet(slot, current, update.apply(current)));
+    }
+
+    /**
+     * Visits every series that has a value, in key order.
+     */
+    void forEach(SeriesConsumer<T> consumer) {
+        AtomicReferenceArray<T>[] current = rows;
+        for (int key = 0; key < current.length; key++) {
+            AtomicReferenceArray<T> row = current[key];
+            if (row == null) {
+                continue;
+            }
+            for (MetricType metric : METRICS) {
+                T value = row.get(metric.ordinal());
+                if (value != null) {
+                    consumer.accept(key, metric, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of series that have a value.
+     */
+    int size() {
+        int[] size = new int[1];
+        forEach((key, metric, value) -> size[0]++);
+        return size[0];
+    }
+
+    private AtomicReferenceArray<T> row(int sensorKey) {
+        AtomicReferenceArray<T>[] current = rows;
+        return sensorKey < current.length ? current[sensorKey] : null;
+    }
+
+    private AtomicReferenceArray<T> rowFor(int sensorKey) {
+        AtomicReferenceArray<T> row = row(sensorKey);
+        return row != null ? row : createRow(sensorKey);
+    }
+
+    private synchronized AtomicReferenceArray<T> createRow(int sensorKey) {
+        AtomicReferenceArray<T>[] current = rows;
+        if (sensorKey >= current.length) {
+            current = Arrays.copyOf(current, Math.max(sensorKey + 1, current.length * 2));
+        }
+        if (current[sensorKey] == null) {
+            current[sensorKey] = new AtomicReferenceArray<>(METRICS.length);
+        }
+        // publishes the new row (and the grown array) to readers
+        rows = current;
+        return current[sensorKey];
+    }
+
+    @FunctionalInterface
+    interface SeriesConsumer<T> {
+        void accept(int sensorKey, MetricType metric, T value);
+    }
+}
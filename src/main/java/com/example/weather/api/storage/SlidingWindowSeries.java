@@ -0,0 +1,339 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.aggregation.FixedPoint;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Readings of one sensor + metric over the last few trailing windows, with
+ * count, sum, min and max of every window maintained as readings arrive and
+ * expire.
+ *
+ * <p>Readings are held once, in time order, in a ring of primitive arrays
+ * covering the longest window; each reading has a sequence number that stays
+ * valid while it is in the ring. Every window keeps the sequence number of
+ * its oldest reading, a running count and sum, and two monotonic deques of
+ * sequence numbers: for the minimum, readings with no later reading of a
+ * lower or equal value (values ascending), and the same for the maximum
+ * (values descending). The front of each deque is the window's min or max.
+ * Appending a reading pops dominated entries off the back, and expiring one
+ * pops it off the front, so each reading enters and leaves every structure
+ * once: O(1) amortized per reading and window.</p>
+ *
+ * <p>A reading older than the newest one already held is inserted in place
+ * and the windows are rebuilt from the ring. That costs time linear in the
+ * readings held and is meant for the occasional late reading, not for
+ * unordered bulk input; {@link #load} plus {@link #finishLoad} handles that.</p>
+ *
+ * <p>Values are scaled longs, see {@link FixedPoint}; timestamps are epoch
+ * microseconds. Thread-safe; every method holds the series' monitor.</p>
+ */
+final class SlidingWindowSeries {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // window lengths in microseconds, ascending
+    private final long[] lengths;
+    private final Window[] windows;
+
+    // ring of readings with sequence numbers [first, end), in time order
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private long first;
+    private long end;
+
+    SlidingWindowSeries(long[] lengthsMicros) {
+        this.lengths = lengthsMicros;
+        this.windows = new Window[lengthsMicros.length];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new Window();
+        }
+    }
+
+    /**
+     * Adds a reading, expiring everything older than the windows as of
+     * {@code nowMicros}. Readings older than the longest window are ignored.
+     */
+    synchronized void add(long micros, long value, long nowMicros) {
+        expire(nowMicros);
+        if (micros < nowMicros - lengths[lengths.length - 1]) {
+            return;
+        }
+        if (end == first || micros >= timestamps[slot(end - 1)]) {
+            long seq = append(micros, value);
+            for (Window window : windows) {
+                window.push(seq, value, values, mask);
+            }
+        } else {
+            insert(micros, value);
+            rebuild(nowMicros);
+        }
+    }
+
+    /**
+     * Adds a reading at warm-up, in any order. The windows are stale until
+     * {@link #finishLoad} is called.
+     */
+    synchronized void load(long micros, long value) {
+        if (end == first || micros >= timestamps[slot(end - 1)]) {
+            append(micros, value);
+        } else {
+            insert(micros, value);
+        }
+    }
+
+    /**
+     * Computes the windows as of {@code nowMicros} after warm-up.
+     */
+    synchronized void finishLoad(long nowMicros) {
+        rebuild(nowMicros);
+    }
+
+    /**
+     * Drops readings older than {@code beforeMicros}, except the newest one,
+     * as the retention purge does in the database.
+     */
+    synchronized void purge(long beforeMicros) {
+        for (Window window : windows) {
+            window.expire(beforeMicros, end - 1, timestamps, values, mask);
+        }
+        dropUnused();
+    }
+
+    /**
+     * Folds the window at {@code index} (ending now, at {@code nowMicros})
+     * into {@code target}.
+     *
+     * @return the newest timestamp in the window, or {@code Long.MIN_VALUE} if it is empty
+     */
+    synchronized long aggregate(int index, long nowMicros, WindowAggregate target) {
+        expire(nowMicros);
+        Window window = windows[index];
+        if (window.count == 0) {
+            return Long.MIN_VALUE;
+        }
+        target.count = window.count;
+        target.sum = window.sum();
+        target.min = values[slot(window.mins.first())];
+        target.max = values[slot(window.maxs.first())];
+        return timestamps[slot(end - 1)];
+    }
+
+    /**
+     * Number of readings held, for the longest window.
+     */
+    synchronized int size() {
+        return (int) (end - first);
+    }
+
+    private void expire(long nowMicros) {
+        for (int i = 0; i < windows.length; i++) {
+            windows[i].expire(nowMicros - lengths[i], end, timestamps, values, mask);
+        }
+        dropUnused();
+    }
+
+    /**
+     * Releases readings no window holds any more; the longest window starts earliest.
+     */
+    private void dropUnused() {
+        first = windows[windows.length - 1].start;
+    }
+
+    private long append(long micros, long value) {
+        if (end - first == timestamps.length) {
+            grow();
+        }
+        long seq = end++;
+        timestamps[slot(seq)] = micros;
+        values[slot(seq)] = value;
+        return seq;
+    }
+
+    /**
+     * Inserts a reading after every reading of the same or an earlier time,
+     * shifting the newer ones up by one sequence number.
+     */
+    private void insert(long micros, long value) {
+        if (end - first == timestamps.length) {
+            grow();
+        }
+        long seq = end;
+        while (seq > first && timestamps[slot(seq - 1)] > micros) {
+            timestamps[slot(seq)] = timestamps[slot(seq - 1)];
+            values[slot(seq)] = values[slot(seq - 1)];
+            seq--;
+        }
+        timestamps[slot(seq)] = micros;
+        values[slot(seq)] = value;
+        end++;
+    }
+
+    /**
+     * Recomputes every window from the ring.
+     */
+    private void rebuild(long nowMicros) {
+        for (int i = 0; i < windows.length; i++) {
+            Window window = windows[i];
+            window.clear(first);
+            long cutoff = nowMicros - lengths[i];
+            for (long seq = first; seq < end; seq++) {
+                if (timestamps[slot(seq)] >= cutoff) {
+                    window.push(seq, values[slot(seq)], values, mask);
+                } else {
+                    window.start = seq + 1;
+                }
+            }
+        }
+        dropUnused();
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        long[] grownTimestamps = new long[capacity];
+        long[] grownValues = new long[capacity];
+        int grownMask = capacity - 1;
+        for (long seq = first; seq < end; seq++) {
+            grownTimestamps[(int) (seq & grownMask)] = timestamps[slot(seq)];
+            grownValues[(int) (seq & grownMask)] = values[slot(seq)];
+        }
+        timestamps = grownTimestamps;
+        values = grownValues;
+        mask = grownMask;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq & mask);
+    }
+
+    /**
+     * Count, sum, min and max of one window, as scaled longs (the sum may exceed a long).
+     */
+    static final class WindowAggregate {
+        long count;
+        BigDecimal sum;
+        long min;
+        long max;
+    }
+
+    /**
+     * State of one trailing window: readings with sequence numbers
+     * {@code [start, end)} of the ring.
+     */
+    private static final class Window {
+
+        long start;
+        long count;
+        // the sum as a 128-bit two's complement integer, so removing values stays exact
+        long sumLow;
+        long sumHigh;
+        final LongDeque mins = new LongDeque();
+        final LongDeque maxs = new LongDeque();
+
+        void push(long seq, long value, long[] values, int mask) {
+            count++;
+            add(value);
+            while (!mins.isEmpty() && values[(int) (mins.last() & mask)] >= value) {
+                mins.removeLast();
+            }
+            mins.addLast(seq);
+            while (!maxs.isEmpty() && values[(int) (maxs.last() & mask)] <= value) {
+                maxs.removeLast();
+            }
+            maxs.addLast(seq);
+        }
+
+        /**
+         * Removes readings older than {@code cutoff} from the front, stopping at {@code limit}.
+         */
+        void expire(long cutoff, long limit, long[] timestamps, long[] values, int mask) {
+            while (start < limit && timestamps[(int) (start & mask)] < cutoff) {
+                count--;
+                add(-values[(int) (start & mask)]);
+                if (mins.first() == start) {
+                    mins.removeFirst();
+                }
+                if (maxs.first() == start) {
+                    maxs.removeFirst();
+                }
+                start++;
+            }
+        }
+
+        void clear(long first) {
+            start = first;
+            count = 0;
+            sumLow = 0;
+            sumHigh = 0;
+            mins.clear();
+            maxs.clear();
+        }
+
+        BigDecimal sum() {
+            if (sumHigh == sumLow >> 63) {
+                return FixedPoint.toDecimal(sumLow);
+            }
+            BigInteger low = new BigInteger(Long.toUnsignedString(sumLow));
+            return new BigDecimal(BigInteger.valueOf(sumHigh).shiftLeft(Long.SIZE).add(low), FixedPoint.SCALE);
+        }
+
+        private void add(long value) {
+            long low = sumLow + value;
+            // sign extension of value, plus the carry out of the low word
+            sumHigh += (value >> 63) + (Long.compareUnsigned(low, sumLow) < 0 ? 1 : 0);
+            sumLow = low;
+        }
+    }
+
+    /**
+     * Growable ring of longs, used as a double-ended queue of sequence numbers.
+     */
+    private static final class LongDeque {
+
+        private long[] elements = new long[8];
+        private int head;
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long first() {
+            return elements[head];
+        }
+
+        long last() {
+            return elements[(head + size - 1) & (elements.length - 1)];
+        }
+
+        void addLast(long value) {
+            if (size == elements.length) {
+                long[] grown = new long[elements.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = elements[(head + i) & (elements.length - 1)];
+                }
+                elements = grown;
+                head = 0;
+            }
+            elements[(head + size) & (elements.length - 1)] = value;
+            size++;
+        }
+
+        void removeFirst() {
+            head = (head + 1) & (elements.length - 1);
+            size--;
+        }
+
+        void removeLast() {
+            size--;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.weather.api.subscription;
+
+import com.example.weather.api.dto.SubscriptionRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.StatisticType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One open subscription: its filter, its SSE connection and the groups
+ * changed since its last update.
+ *
+ * <p>Pending changes are conflated: a sensor + metric group is pending at
+ * most once, however many readings arrive for it, and its value is computed
+ * only when the update is sent. The pending set is bounded; when it
+ * overflows it collapses into one full refresh of the filter. A slow
+ * consumer therefore costs bounded memory and receives fewer, fresher
+ * updates instead of a backlog.</p>
+ */
+final class Subscription {
+
+    final long id;
+    // empty: every sensor / metric
+    final Set<String> sensorIds;
+    final Set<MetricType> metrics;
+    final StatisticType statistic;
+    final Duration window;
+    final SseEmitter emitter;
+    private final int capacity;
+
+    // guarded by this
+    private Set<Group> pending = new LinkedHashSet<>();
+    private boolean fullRefresh = true;
+    private boolean draining;
+    private boolean closed;
+    // since the last take()
+    private long overflows;
+
+    Subscription(long id, SubscriptionRequest request, SseEmitter emitter, int capacity) {
+        this.id = id;
+        this.sensorIds = request.sensorIds() == null ? Set.of() : Set.copyOf(request.sensorIds());
+        this.metrics = request.metrics() == null || request.metrics().isEmpty()
+                ? Set.of()
+                : Collections.unmodifiableSet(EnumSet.copyOf(request.metrics()));
+        this.statistic = request.statistic();
+        this.window = request.window();
+        this.emitter = emitter;
+        this.capacity = capacity;
+    }
+
+    boolean wants(MetricType metric) {
+        return metrics.isEmpty() || metrics.contains(metric);
+    }
+
+    /**
+     * Records a change of one group.
+     *
+     * @return true if the group was not already covered by a pending update
+     */
+    synchronized boolean changed(String sensorId, MetricType metric) {
+        if (closed || fullRefresh) {
+            return false;
+        }
+        Group group = new Group(sensorId, metric);
+        if (pending.contains(group)) {
+            return false;
+        }
+        if (pending.size() == capacity) {
+            pending = new LinkedHashSet<>();
+            fullRefresh = true;
+            overflows++;
+            return true;
+        }
+        pending.add(group);
+        return true;
+    }
+
+    /**
+     * Claims the right to send updates, if there is something to send and
+     * nobody is sending yet.
+     */
+    synchronized boolean startDraining() {
+        if (closed || draining || !fullRefresh && pending.isEmpty()) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    /**
+     * The pending changes, cleared; or null, ending the drain, when there are none.
+     */
+    synchronized Update take() {
+        if (closed || !fullRefresh && pending.isEmpty()) {
+            draining = false;
+            return null;
+        }
+        Update update = new Update(fullRefresh ? null : List.copyOf(pending), overflows);
+        pending = new LinkedHashSet<>();
+        fullRefresh = false;
+        overflows = 0;
+        return update;
+    }
+
+    synchronized void close() {
+        closed = true;
+        pending = Set.of();
+    }
+
+    record Group(String sensorId, MetricType metric) { }
+
+    /**
+     * Groups to send, or every group of the filter when {@code groups} is null,
+     * and how often the pending buffer overflowed since the previous update.
+     */
+    record Update(List<Group> groups, long overflows) {
+
+        boolean full() {
+            return groups == null;
+        }
+    }
+}
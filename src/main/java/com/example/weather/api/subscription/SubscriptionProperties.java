@@ -0,0 +1,26 @@
+package com.example.weather.api.subscription;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for {@link SubscriptionRegistry}.
+ *
+ * @param enabled        accept live subscriptions at all
+ * @param maxSubscribers open subscriptions allowed at once
+ * @param bufferSize     changed sensor + metric groups a subscriber may have
+ *                       pending; past that, the next update is a full refresh
+ * @param minInterval    least time between two updates to one subscriber
+ * @param timeout        how long a subscription stays open before the client
+ *                       has to reconnect
+ */
+@ConfigurationProperties(prefix = "weather.subscriptions")
+public record SubscriptionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1000") int maxSubscribers,
+        @DefaultValue("1024") int bufferSize,
+        @DefaultValue("250ms") Duration minInterval,
+        @DefaultValue("30m") Duration timeout
+) { }
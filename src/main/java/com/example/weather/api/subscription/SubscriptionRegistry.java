@@ -0,0 +1,243 @@
+package com.example.weather.api.subscription;
+
+import com.example.weather.api.dto.MetricStatisticResponse;
+import com.example.weather.api.dto.SubscriptionRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.exception.SubscriptionRejectedException;
+import com.example.weather.api.model.MetricRecord;
+import com.example.weather.api.service.MetricIngestionListener;
+import com.example.weather.api.service.MetricQueryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live subscriptions: pushes the statistic of every sensor + metric group
+ * that received new readings to the subscribers interested in it, as
+ * server-sent events.
+ *
+ * <p>Matching an ingested reading is a lookup of its sensor id in an index
+ * of subscriptions by sensor (plus the subscriptions without a sensor
+ * filter) and a metric check, so its cost does not grow with the number of
+ * unrelated subscriptions. On the ingesting thread a match only marks the
+ * group pending (see {@link Subscription}); values are computed and sent by
+ * one virtual thread per subscriber with pending changes, at most every
+ * {@code weather.subscriptions.min-interval}. A slow client therefore only
+ * slows its own updates.</p>
+ *
+ * <p>Every subscription starts with a full snapshot of its filter. Events
+ * are named {@code update} and carry a {@link MetricStatisticResponse}.
+ * Windowed values are refreshed when their group gets readings, not as old
+ * readings leave the window.</p>
+ *
+ * <p>Ordered last among the ingestion listeners, so in-memory stores have
+ * applied a reading before a subscriber's value is computed from them.</p>
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "weather.subscriptions", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SubscriptionRegistry implements MetricIngestionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionRegistry.class);
+
+    private final MetricQueryService queryService;
+    private final SubscriptionProperties properties;
+    private final VirtualThreadTaskExecutor senders = new VirtualThreadTaskExecutor("subscription-");
+    private final AtomicLong ids = new AtomicLong();
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    // subscriptions by sensor id; those without a sensor filter live in anySensor
+    private final Map<String, Set<Subscription>> bySensor = new ConcurrentHashMap<>();
+    private final Set<Subscription> anySensor = ConcurrentHashMap.newKeySet();
+
+    private final Counter updates;
+    private final Counter overflows;
+
+    public SubscriptionRegistry(MetricQueryService queryService,
+                                SubscriptionProperties properties,
+                                MeterRegistry registry) {
+        this.queryService = queryService;
+        this.properties = properties;
+        Gauge.builder("weather.subscriptions.active", subscriptions, Set::size)
+                .description("Open live subscriptions")
+                .register(registry);
+        this.updates = Counter.builder("weather.subscriptions.updates")
+                .description("Updates sent to live subscribers")
+                .register(registry);
+        this.overflows = Counter.builder("weather.subscriptions.overflows")
+                .description("Pending buffers collapsed into a full refresh because a subscriber fell behind")
+                .register(registry);
+    }
+
+    /**
+     * Opens a subscription; its first event(s) are a snapshot of the filter.
+     */
+    public SseEmitter subscribe(SubscriptionRequest request) {
+        queryService.validateWindow(request.window());
+        if (request.sensorIds() != null && request.sensorIds().contains(null)
+                || request.metrics() != null && request.metrics().contains(null)) {
+            throw new IllegalArgumentException("Sensor ids and metrics must not be null.");
+        }
+        if (subscriptions.size() >= properties.maxSubscribers()) {
+            throw new SubscriptionRejectedException("Too many open subscriptions, the limit is "
+                    + properties.maxSubscribers() + ".");
+        }
+
+        SseEmitter emitter = new SseEmitter(properties.timeout().toMillis());
+        Subscription subscription = new Subscription(ids.incrementAndGet(), request, emitter, properties.bufferSize());
+        emitter.onCompletion(() -> remove(subscription));
+        emitter.onTimeout(() -> remove(subscription));
+        emitter.onError(ex -> remove(subscription));
+        add(subscription);
+        startSending(subscription);
+        return emitter;
+    }
+
+    @Override
+    public void onIngested(List<MetricRecord> records) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        Set<Subscription> changed = new HashSet<>();
+        for (MetricRecord record : records) {
+            match(bySensor.get(record.getSensorId()), record, changed);
+            match(anySensor, record, changed);
+        }
+        for (Subscription subscription : changed) {
+            startSending(subscription);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Subscription subscription : List.copyOf(subscriptions)) {
+            remove(subscription);
+            subscription.emitter.complete();
+        }
+    }
+
+    private static void match(Set<Subscription> candidates, MetricRecord record, Set<Subscription> changed) {
+        if (candidates == null) {
+            return;
+        }
+        for (Subscription subscription : candidates) {
+            if (subscription.wants(record.getMetricType())
+                    && subscription.changed(record.getSensorId(), record.getMetricType())) {
+                changed.add(subscription);
+            }
+        }
+    }
+
+    private void startSending(Subscription subscription) {
+        if (subscription.startDraining()) {
+            senders.execute(() -> send(subscription));
+        }
+    }
+
+    /**
+     * Sends pending changes until there are none left, pausing between updates.
+     */
+    private void send(Subscription subscription) {
+        try {
+            Subscription.Update update;
+            while ((update = subscription.take()) != null) {
+                overflows.increment(update.overflows());
+                for (MetricStatisticResponse response : compute(subscription, update)) {
+                    subscription.emitter.send(SseEmitter.event()
+                            .name("update")
+                            .data(response, MediaType.APPLICATION_JSON));
+                    updates.increment();
+                }
+                Thread.sleep(properties.minInterval().toMillis());
+            }
+        } catch (IOException | IllegalStateException ex) {
+            // the client went away or the emitter was completed
+            remove(subscription);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            remove(subscription);
+        } catch (RuntimeException ex) {
+            log.warn("Live subscription {} failed", subscription.id, ex);
+            remove(subscription);
+            subscription.emitter.completeWithError(ex);
+        }
+    }
+
+    private List<MetricStatisticResponse> compute(Subscription subscription, Subscription.Update update) {
+        if (update.full()) {
+            return queryService.queryTrailing(
+                    subscription.sensorIds.isEmpty() ? null : List.copyOf(subscription.sensorIds),
+                    subscription.metrics.isEmpty() ? null : List.copyOf(subscription.metrics),
+                    subscription.statistic, subscription.window);
+        }
+        // one query for every changed group; the cross product may add groups that did not change
+        Set<String> sensors = new LinkedHashSet<>();
+        Set<MetricType> metrics = new LinkedHashSet<>();
+        for (Subscription.Group group : update.groups()) {
+            sensors.add(group.sensorId());
+            metrics.add(group.metric());
+        }
+        Set<Subscription.Group> groups = Set.copyOf(update.groups());
+        List<MetricStatisticResponse> responses = new ArrayList<>(groups.size());
+        for (MetricStatisticResponse response : queryService.queryTrailing(List.copyOf(sensors),
+                List.copyOf(metrics), subscription.statistic, subscription.window)) {
+            if (groups.contains(new Subscription.Group(response.sensorId(), response.metric()))) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    private void add(Subscription subscription) {
+        subscriptions.add(subscription);
+        if (subscription.sensorIds.isEmpty()) {
+            anySensor.add(subscription);
+            return;
+        }
+        for (String sensorId : subscription.sensorIds) {
+            // inside compute, so a concurrent remove cannot drop the set under us
+            bySensor.compute(sensorId, (id, subscribers) -> {
+                Set<Subscription> updated = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+                updated.add(subscription);
+                return updated;
+            });
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        subscription.close();
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        if (subscription.sensorIds.isEmpty()) {
+            anySensor.remove(subscription);
+            return;
+        }
+        for (String sensorId : subscription.sensorIds) {
+            bySensor.computeIfPresent(sensorId, (id, subscribers) -> {
+                subscribers.remove(subscription);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.weather.api.telemetry;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest meters:
+ * - {@code weather.ingest}: latency of one ingest call, commit included,
+ *   tagged by {@code mode} (single / batch) and {@code outcome}
+ *   (committed / rolled-back)
+ * - {@code weather.ingest.readings}: readings per call, tagged by {@code mode}
+ *
+ * <p>Meters are registered up front, so recording is a plain array lookup.</p>
+ */
+@Component
+public class IngestTelemetry {
+
+    private final Timer[] latency = new Timer[4];
+    private final DistributionSummary[] readings = new DistributionSummary[2];
+
+    public IngestTelemetry(MeterRegistry registry) {
+        for (int batch = 0; batch < 2; batch++) {
+            String mode = batch == 1 ? "batch" : "single";
+            for (int committed = 0; committed < 2; committed++) {
+                latency[batch * 2 + committed] = Timer.builder("weather.ingest")
+                        .description("Latency of ingest calls, commit included")
+                        .tag("mode", mode)
+                        .tag("outcome", committed == 1 ? "committed" : "rolled-back")
+                        .register(registry);
+            }
+            readings[batch] = DistributionSummary.builder("weather.ingest.readings")
+                    .description("Readings per ingest call")
+                    .baseUnit("readings")
+                    .tag("mode", mode)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Records one ingest call that started at {@code startedNanos} ({@link System#nanoTime()}).
+     */
+    public void record(boolean batch, int count, long startedNanos, boolean committed) {
+        int mode = batch ? 1 : 0;
+        latency[mode * 2 + (committed ? 1 : 0)].record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        readings[mode].record(count);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.weather.api.telemetry;
+
+import com.example.weather.api.dto.MetricQueryRequest;
+import com.example.weather.api.enums.StatisticType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics query meters, all tagged by {@code statistic} and {@code mode}
+ * (range / latest):
+ * - {@code weather.query}: end-to-end latency
+ * - {@code weather.query.phase}: time per {@link Phase}, tagged by {@code phase}
+ * - {@code weather.query.readings}: readings the returned aggregates cover
+ *   (an upper bound for the rows scanned: rollups and in-memory engines read fewer)
+ * - {@code weather.query.groups}: sensor + metric groups returned
+ *
+ * <p>Queries slower than {@code weather.telemetry.slow-query} are logged at
+ * WARN with their filters and phase timings. Meters are registered on first
+ * use of a statistic + mode and then looked up by ordinal.</p>
+ */
+@Component
+public class QueryTelemetry {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryTelemetry.class);
+
+    /**
+     * Where a query spends its time.
+     */
+    public enum Phase {
+        /** Filtering, grouping and aggregating in the storage engine, cache or latest-value index. */
+        LOAD,
+        /** Turning aggregates into the requested statistic. */
+        STATISTIC,
+        /** Handing results to the caller; for streamed responses this includes writing them out. */
+        SERIALIZE;
+
+        private final String tag = name().toLowerCase();
+    }
+
+    private final MeterRegistry registry;
+    private final long slowQueryNanos;
+    // index: statistic ordinal * 2 + (range ? 1 : 0); racing registrations return the same meters
+    private final Meters[] meters = new Meters[StatisticType.values().length * 2];
+
+    public QueryTelemetry(MeterRegistry registry, TelemetryProperties properties) {
+        this.registry = registry;
+        this.slowQueryNanos = properties.slowQuery().isZero() ? Long.MAX_VALUE : properties.slowQuery().toNanos();
+    }
+
+    /**
+     * Starts timing a query; the clock runs from here.
+     */
+    public Recording start(MetricQueryRequest request) {
+        return new Recording(request, System.nanoTime());
+    }
+
+    private Meters meters(StatisticType statistic, boolean range) {
+        int index = statistic.ordinal() * 2 + (range ? 1 : 0);
+        Meters m = meters[index];
+        if (m == null) {
+            m = new Meters(registry, statistic.name(), range ? "range" : "latest");
+            meters[index] = m;
+        }
+        return m;
+    }
+
+    /**
+     * Timings of one query. Not thread-safe: a query runs on one thread.
+     */
+    public final class Recording {
+
+        private final MetricQueryRequest request;
+        private final long started;
+        private final long[] phaseNanos = new long[Phase.values().length];
+        private long lap;
+
+        private Recording(MetricQueryRequest request, long started) {
+            this.request = request;
+            this.started = started;
+            this.lap = started;
+        }
+
+        /**
+         * Charges the time since the previous lap (or the start) to {@code phase}.
+         */
+        public void lap(Phase phase) {
+            long now = System.nanoTime();
+            phaseNanos[phase.ordinal()] += now - lap;
+            lap = now;
+        }
+
+        /**
+         * Records the query, returning {@code groups} aggregates that cover {@code readings} readings.
+         */
+        public void finish(int groups, long readings) {
+            long total = System.nanoTime() - started;
+            Meters m = meters(request.statistic(), request.from() != null);
+            m.latency.record(total, TimeUnit.NANOSECONDS);
+            for (Phase phase : Phase.values()) {
+                m.phases[phase.ordinal()].record(phaseNanos[phase.ordinal()], TimeUnit.NANOSECONDS);
+            }
+            m.readings.record(readings);
+            m.groups.record(groups);
+
+            if (total >= slowQueryNanos) {
+                log.warn("Slow query took {} ms (load {} ms, statistic {} ms, serialize {} ms): "
+                                + "statistic={} sensors={} metrics={} from={} to={}, {} group(s) over {} reading(s)",
+                        millis(total), millis(phaseNanos[Phase.LOAD.ordinal()]),
+                        millis(phaseNanos[Phase.STATISTIC.ordinal()]), millis(phaseNanos[Phase.SERIALIZE.ordinal()]),
+                        request.statistic(), request.sensorIds(), request.metrics(), request.from(), request.to(),
+                        groups, readings);
+            }
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class Meters {
+
+        final Timer latency;
+        final Timer[] phases = new Timer[Phase.values().length];
+        final DistributionSummary readings;
+        final DistributionSummary groups;
+
+        Meters(MeterRegistry registry, String statistic, String mode) {
+            latency = Timer.builder("weather.query")
+                    .description("Latency of statistics queries")
+                    .tag("statistic", statistic)
+                    .tag("mode", mode)
+                    .register(registry);
+            for (Phase phase : Phase.values()) {
+                phases[phase.ordinal()] = Timer.builder("weather.query.phase")
+                        .description("Time statistics queries spend per phase")
+                        .tag("statistic", statistic)
+                        .tag("mode", mode)
+                        .tag("phase", phase.tag)
+                        .register(registry);
+            }
+            readings = DistributionSummary.builder("weather.query.readings")
+                    .description("Readings covered by the aggregates of a statistics query")
+                    .baseUnit("readings")
+                    .tag("statistic", statistic)
+                    .tag("mode", mode)
+                    .register(registry);
+            groups = DistributionSummary.builder("weather.query.groups")
+                    .description("Sensor + metric groups returned by a statistics query")
+                    .baseUnit("groups")
+                    .tag("statistic", statistic)
+                    .tag("mode", mode)
+                    .register(registry);
+        }
+    }
+}
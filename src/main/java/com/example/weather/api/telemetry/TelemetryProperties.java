@@ -0,0 +1,17 @@
+package com.example.weather.api.telemetry;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for {@link QueryTelemetry} and {@link IngestTelemetry}.
+ *
+ * @param slowQuery queries taking at least this long are logged with their
+ *                  filters and phase timings; zero disables the log
+ */
+@ConfigurationProperties(prefix = "weather.telemetry")
+public record TelemetryProperties(
+        @DefaultValue("1s") Duration slowQuery
+) { }
@@ -0,0 +1,121 @@
+package com.example.weather.api.wal;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.enums.MetricType;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary layout of one WAL record.
+ *
+ * <pre>
+ * int    payload length (0 marks the end of the written part of a segment)
+ * int    CRC32C of the payload
+ * byte   MetricType ordinal
+ * long   epoch seconds
+ * int    nanos
+ * long   value, unscaled at scale 4
+ * short  sensorId length
+ * byte[] sensorId, UTF-8
+ * </pre>
+ *
+ * Values are stored as a scaled long, which is exact because
+ * {@code @Digits(integer = 14, fraction = 4)} bounds them to 18 digits.
+ */
+final class WalRecordCodec {
+
+    static final int HEADER_BYTES = Integer.BYTES * 2;
+    static final int VALUE_SCALE = 4;
+
+    private static final int FIXED_PAYLOAD_BYTES =
+            Byte.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES + Short.BYTES;
+
+    private WalRecordCodec() {
+    }
+
+    /**
+     * Size of the whole record (header + payload) for the given reading.
+     */
+    static int recordSize(byte[] sensorId) {
+        return HEADER_BYTES + FIXED_PAYLOAD_BYTES + sensorId.length;
+    }
+
+    static byte[] sensorIdBytes(MetricIngestionRequest request) {
+        byte[] bytes = request.sensorId().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("sensorId is too long for the write-ahead log.");
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the record at the buffer's position and advances it.
+     */
+    static void write(ByteBuffer target, MetricIngestionRequest request, byte[] sensorId) {
+        int start = target.position();
+        int payloadLength = FIXED_PAYLOAD_BYTES + sensorId.length;
+
+        target.position(start + HEADER_BYTES);
+        target.put((byte) request.metric().ordinal());
+        target.putLong(request.timestamp().getEpochSecond());
+        target.putInt(request.timestamp().getNano());
+        target.putLong(request.value().setScale(VALUE_SCALE).unscaledValue().longValueExact());
+        target.putShort((short) sensorId.length);
+        target.put(sensorId);
+        int end = target.position();
+
+        CRC32C crc = new CRC32C();
+        crc.update(target.duplicate().position(start + HEADER_BYTES).limit(end));
+
+        // The length goes in last: a record only becomes visible to replay
+        // once it is completely written.
+        target.putInt(start + Integer.BYTES, (int) crc.getValue());
+        target.putInt(start, payloadLength);
+    }
+
+    /**
+     * Reads the record at the buffer's position and advances past it.
+     *
+     * @return the reading, or {@code null} at the end of the written data
+     *         or at a torn / corrupt record
+     */
+    static MetricIngestionRequest read(ByteBuffer source) {
+        if (source.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int start = source.position();
+        int payloadLength = source.getInt(start);
+        if (payloadLength < FIXED_PAYLOAD_BYTES || payloadLength > source.remaining() - HEADER_BYTES) {
+            return null;
+        }
+        int checksum = source.getInt(start + Integer.BYTES);
+
+        ByteBuffer payload = source.duplicate()
+                .position(start + HEADER_BYTES)
+                .limit(start + HEADER_BYTES + payloadLength);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        int ordinal = payload.get();
+        long seconds = payload.getLong();
+        int nanos = payload.getInt();
+        long unscaled = payload.getLong();
+        byte[] sensorId = new byte[payload.getShort()];
+        payload.get(sensorId);
+
+        source.position(start + HEADER_BYTES + payloadLength);
+        return new MetricIngestionRequest(
+                new String(sensorId, StandardCharsets.UTF_8),
+                MetricType.values()[ordinal],
+                BigDecimal.valueOf(unscaled, VALUE_SCALE),
+                Instant.ofEpochSecond(seconds, nanos)
+        );
+    }
+}
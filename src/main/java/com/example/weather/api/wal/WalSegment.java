@@ -0,0 +1,83 @@
+package com.example.weather.api.wal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One pre-allocated, memory-mapped segment file of the write-ahead log.
+ *
+ * A segment can be deleted once it is sealed (no more appends) and every
+ * record in it has been acknowledged as stored in the database.
+ */
+final class WalSegment {
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private volatile boolean sealed;
+
+    private WalSegment(long id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static WalSegment create(long id, Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed.
+            return new WalSegment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    static MappedByteBuffer mapForReplay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    long id() {
+        return id;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Only touched while holding the log's append lock.
+     */
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void recordAppended() {
+        appended.incrementAndGet();
+    }
+
+    void seal() {
+        sealed = true;
+    }
+
+    /**
+     * @return true when the segment is sealed and fully acknowledged
+     */
+    boolean acknowledge(long records) {
+        return acknowledged.addAndGet(records) >= appended.get() && sealed;
+    }
+
+    boolean isComplete() {
+        return sealed && acknowledged.get() >= appended.get();
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.weather.api.wal;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.service.IngestionFailures;
+import com.example.weather.api.service.IngestionProperties;
+import com.example.weather.api.service.MetricIngestionService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only write-ahead log for readings accepted by the write-behind buffer.
+ *
+ * <p>Readings are appended to memory-mapped segment files before the client
+ * gets its 202. Durability uses group commit: the first appender that needs
+ * a sync forces the segment, and every appender whose record was written
+ * before that force returns without forcing again.</p>
+ *
+ * <p>After the database has stored a batch, the buffer acknowledges it here;
+ * a segment that is sealed and fully acknowledged is deleted. At startup,
+ * any segments left over from a crash are replayed into the database before
+ * new readings are accepted. Delivery is therefore at-least-once: a crash
+ * between the database commit and the acknowledgement replays those
+ * readings again.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "weather.ingestion.wal", name = "enabled", havingValue = "true")
+public class WriteAheadLog implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{20})\\.seg");
+    private static final int REPLAY_BATCH_SIZE = 1_000;
+
+    private final MetricIngestionService ingestionService;
+    private final IngestionProperties.Wal properties;
+    private final Path directory;
+    private final int segmentSize;
+
+    private final Map<Long, WalSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    // guarded by appendLock
+    private WalSegment current;
+    // log sequence numbers: segment id in the high 32 bits, end offset in the low 32 bits
+    private volatile long writtenLsn;
+    private volatile long durableLsn;
+
+    public WriteAheadLog(MetricIngestionService ingestionService, IngestionProperties properties) {
+        this.ingestionService = ingestionService;
+        this.properties = properties.wal();
+        this.directory = Paths.get(this.properties.directory());
+        this.segmentSize = Math.toIntExact(this.properties.segmentSize().toBytes());
+    }
+
+    /**
+     * Replays leftover segments once all beans (and the transaction
+     * infrastructure) exist, but before the buffer and web server start.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            Files.createDirectories(directory);
+            long nextId = replay() + 1;
+            appendLock.lock();
+            try {
+                current = openSegment(nextId);
+            } finally {
+                appendLock.unlock();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + directory, ex);
+        }
+    }
+
+    /**
+     * Appends the readings and, if fsync is enabled, waits until they are on disk.
+     *
+     * @return the segment id of each reading, to be passed to {@link #acknowledge}
+     * @throws IllegalArgumentException if a reading does not fit into a segment;
+     *         nothing is appended then
+     */
+    public long[] appendAll(List<MetricIngestionRequest> requests) {
+        byte[][] sensorIds = new byte[requests.size()][];
+        for (int i = 0; i < requests.size(); i++) {
+            sensorIds[i] = WalRecordCodec.sensorIdBytes(requests.get(i));
+            if (WalRecordCodec.recordSize(sensorIds[i]) > segmentSize) {
+                throw new IllegalArgumentException("Reading does not fit into a write-ahead log segment.");
+            }
+        }
+
+        long[] segmentIds = new long[requests.size()];
+        long lsn;
+        appendLock.lock();
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                segmentIds[i] = appendLocked(requests.get(i), sensorIds[i]);
+            }
+            lsn = writtenLsn;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot append to write-ahead log", ex);
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (properties.fsync()) {
+            sync(lsn);
+        }
+        return segmentIds;
+    }
+
+    /**
+     * Marks readings as stored in the database and deletes segments that
+     * are no longer needed.
+     */
+    public void acknowledge(long[] segmentIds) {
+        int i = 0;
+        while (i < segmentIds.length) {
+            long id = segmentIds[i];
+            int run = 1;
+            while (i + run < segmentIds.length && segmentIds[i + run] == id) {
+                run++;
+            }
+            WalSegment segment = segments.get(id);
+            if (segment != null && segment.acknowledge(run)) {
+                delete(segment);
+            }
+            i += run;
+        }
+    }
+
+    /**
+     * Deletes the active segment on a clean shutdown if everything in it
+     * was stored; otherwise it is replayed on the next start.
+     */
+    @PreDestroy
+    public void close() {
+        appendLock.lock();
+        try {
+            if (current != null) {
+                current.force();
+                current.seal();
+                if (current.isComplete()) {
+                    delete(current);
+                }
+                current = null;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long appendLocked(MetricIngestionRequest request, byte[] sensorId) throws IOException {
+        if (current == null) {
+            throw new IllegalStateException("Write-ahead log is closed.");
+        }
+        if (current.buffer().remaining() < WalRecordCodec.recordSize(sensorId)) {
+            roll();
+        }
+        WalRecordCodec.write(current.buffer(), request, sensorId);
+        current.recordAppended();
+        writtenLsn = lsn(current.id(), current.buffer().position());
+        return current.id();
+    }
+
+    /**
+     * Seals the full segment and continues in a new one. The old segment is
+     * forced right away so that {@link #sync} only ever has to force the
+     * current segment.
+     */
+    private void roll() throws IOException {
+        WalSegment full = current;
+        full.force();
+        full.seal();
+        durableLsn = Math.max(durableLsn, lsn(full.id(), full.buffer().position()));
+        current = openSegment(full.id() + 1);
+        if (full.isComplete()) {
+            delete(full);
+        }
+    }
+
+    /**
+     * Group commit: whoever holds the sync lock forces everything written
+     * so far; waiting appenders usually find their record already covered.
+     */
+    private void sync(long lsn) {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durableLsn >= lsn) {
+                return;
+            }
+            WalSegment segment;
+            long target;
+            appendLock.lock();
+            try {
+                segment = current;
+                target = writtenLsn;
+            } finally {
+                appendLock.unlock();
+            }
+            if (segment != null) {
+                segment.force();
+            }
+            durableLsn = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private WalSegment openSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("wal-%020d.seg", id));
+        WalSegment segment = WalSegment.create(id, path, segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void delete(WalSegment segment) {
+        segments.remove(segment.id());
+        try {
+            Files.deleteIfExists(segment.path());
+        } catch (IOException ex) {
+            log.warn("Could not delete write-ahead log segment {}", segment.path(), ex);
+        }
+    }
+
+    /**
+     * Stores every record of the leftover segments, oldest first, and
+     * deletes each segment once its records are committed.
+     *
+     * @return the highest segment id found, or 0 if there were none
+     */
+    private long replay() throws IOException {
+        List<Path> leftovers;
+        try (Stream<Path> files = Files.list(directory)) {
+            leftovers = files.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+
+        long lastId = 0;
+        long replayed = 0;
+        for (Path path : leftovers) {
+            Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+            matcher.matches();
+            lastId = Math.max(lastId, Long.parseLong(matcher.group(1)));
+
+            ByteBuffer buffer = WalSegment.mapForReplay(path);
+            List<MetricIngestionRequest> batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+            MetricIngestionRequest request;
+            while ((request = WalRecordCodec.read(buffer)) != null) {
+                batch.add(request);
+                if (batch.size() == REPLAY_BATCH_SIZE) {
+                    replayed += replayBatch(batch, replayed);
+                    batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+                }
+            }
+            replayed += replayBatch(batch, replayed);
+            Files.delete(path);
+        }
+
+        if (replayed > 0) {
+            log.info("Replayed {} reading(s) from {} write-ahead log segment(s)", replayed, leftovers.size());
+        }
+        return lastId;
+    }
+
+    /**
+     * Stores a batch of replayed readings. A transient failure aborts the
+     * startup as before; any other failure is narrowed down by splitting the
+     * batch, and readings that fail on their own are dead-lettered, so one
+     * bad reading cannot block every later start. They are only blamed if
+     * some replayed reading was stored, though: if none was, the database
+     * refuses every write, and the startup is aborted with the log intact.
+     *
+     * @param storedBefore readings of this replay stored by earlier batches
+     * @return the number of readings stored
+     */
+    private int replayBatch(List<MetricIngestionRequest> batch, long storedBefore) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            ingestionService.ingestAll(batch);
+            return batch.size();
+        } catch (RuntimeException ex) {
+            if (IngestionFailures.isTransient(ex)) {
+                throw ex;
+            }
+            List<FailedReading> failed = new ArrayList<>();
+            int stored = replayOrSplit(batch, ex, failed);
+            if (stored == 0 && storedBefore == 0) {
+                throw ex;
+            }
+            failed.forEach(f -> IngestionFailures.deadLetter(f.request(), f.failure()));
+            return stored;
+        }
+    }
+
+    /**
+     * Stores what it can of a batch that failed with {@code failure}, collecting
+     * the readings that fail on their own.
+     */
+    private int replayOrSplit(List<MetricIngestionRequest> batch, RuntimeException failure, List<FailedReading> failed) {
+        if (batch.size() == 1) {
+            failed.add(new FailedReading(batch.get(0), failure));
+            return 0;
+        }
+        int stored = 0;
+        int half = batch.size() / 2;
+        for (List<MetricIngestionRequest> part : List.of(batch.subList(0, half), batch.subList(half, batch.size()))) {
+            try {
+                ingestionService.ingestAll(part);
+                stored += part.size();
+            } catch (RuntimeException ex) {
+                if (IngestionFailures.isTransient(ex)) {
+                    throw ex;
+                }
+                stored += replayOrSplit(part, ex, failed);
+            }
+        }
+        return stored;
+    }
+
+    private static long lsn(long segmentId, int offset) {
+        return (segmentId << 32) | offset;
+    }
+
+    private record FailedReading(MetricIngestionRequest request, RuntimeException failure) { }
+}
@@ -0,0 +1,13 @@
+package com.example.weather.api.wire;
+
+import java.io.IOException;
+
+/**
+ * A binary body that does not follow {@link MetricWireFormat}.
+ */
+public class MalformedWireException extends IOException {
+
+    public MalformedWireException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.weather.api.wire;
+
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.enums.MetricType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes readings from a {@link MetricWireFormat} body, straight from the
+ * request stream into {@link MetricIngestionRequest}s. Not thread-safe.
+ *
+ * <p>Framing errors (truncated records, bad varints, unknown version) make
+ * the rest of the body unreadable and throw {@link MalformedWireException}.
+ * A metric ordinal that does not exist is left as a null metric, so the
+ * caller's validation rejects just that reading.</p>
+ */
+public final class MetricWireReader {
+
+    // longest sensor id accepted, far above anything a real sensor sends
+    private static final int MAX_SENSOR_ID_BYTES = 1024;
+    private static final MetricType[] METRICS = MetricType.values();
+
+    private final InputStream in;
+    private final List<String> sensorIds = new ArrayList<>();
+    private long lastMicros;
+    private boolean started;
+
+    public MetricWireReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * The next reading, or null at the end of the body.
+     */
+    public MetricIngestionRequest next() throws IOException {
+        if (!started) {
+            started = true;
+            int version = in.read();
+            if (version == -1) {
+                return null;
+            }
+            if (version != MetricWireFormat.VERSION) {
+                throw new MalformedWireException("Unsupported binary format version " + version + ".");
+            }
+        }
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        String sensorId = sensorId(readVarint(first));
+        int ordinal = readByte();
+        long scaled = readZigzag();
+        lastMicros += readZigzag();
+        return new MetricIngestionRequest(
+                sensorId,
+                ordinal < METRICS.length ? METRICS[ordinal] : null,
+                FixedPoint.toDecimal(scaled),
+                MetricWireFormat.fromMicros(lastMicros)
+        );
+    }
+
+    private String sensorId(long reference) throws IOException {
+        if (reference > 0) {
+            if (reference > sensorIds.size()) {
+                throw new MalformedWireException("Sensor reference " + reference + " was never introduced.");
+            }
+            return sensorIds.get((int) reference - 1);
+        }
+        long length = readVarint(readByte());
+        if (length > MAX_SENSOR_ID_BYTES) {
+            throw new MalformedWireException("Sensor id of " + length + " bytes is too long.");
+        }
+        byte[] bytes = in.readNBytes((int) length);
+        if (bytes.length < length) {
+            throw new EOFException("Body ends inside a sensor id.");
+        }
+        String sensorId = new String(bytes, StandardCharsets.UTF_8);
+        sensorIds.add(sensorId);
+        return sensorId;
+    }
+
+    private long readZigzag() throws IOException {
+        long encoded = readVarint(readByte());
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    private long readVarint(int first) throws IOException {
+        long value = first & 0x7F;
+        int b = first;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift > 63) {
+                throw new MalformedWireException("Varint longer than 10 bytes.");
+            }
+            b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Body ends inside a record.");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.weather.api.wire;
+
+import com.example.weather.api.aggregation.FixedPoint;
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.dto.MetricSeriesResponse;
+import com.example.weather.api.dto.MetricStatisticResponse;
+import com.example.weather.api.dto.SeriesPoint;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes records of a {@link MetricWireFormat} body onto a stream. The
+ * version byte is written before the first record. Not thread-safe; wrap
+ * {@code out} in a buffered stream, every field is written byte by byte.
+ */
+public final class MetricWireWriter {
+
+    private final OutputStream out;
+    private final Map<String, Integer> sensorIds = new HashMap<>();
+    private long lastMicros;
+    private boolean started;
+
+    public MetricWireWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void write(MetricIngestionRequest reading) throws IOException {
+        start();
+        writeSensor(reading.sensorId());
+        out.write(reading.metric().ordinal());
+        writeValue(reading.value());
+        writeTime(reading.timestamp());
+    }
+
+    public void write(MetricStatisticResponse statistic) throws IOException {
+        start();
+        writeSensor(statistic.sensorId());
+        out.write(statistic.metric().ordinal());
+        out.write(statistic.statistic().ordinal());
+        writeValue(statistic.value());
+        writeTime(statistic.from());
+        writeTime(statistic.to());
+    }
+
+    public void write(MetricSeriesResponse series) throws IOException {
+        start();
+        writeSensor(series.sensorId());
+        out.write(series.metric().ordinal());
+        out.write(series.statistic().ordinal());
+        out.write(series.interval().ordinal());
+        writeTime(series.from());
+        writeTime(series.to());
+        writeVarint(series.points().size());
+        for (SeriesPoint point : series.points()) {
+            writeTime(point.start());
+            writeValue(point.value());
+        }
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            started = true;
+            out.write(MetricWireFormat.VERSION);
+        }
+    }
+
+    private void writeSensor(String sensorId) throws IOException {
+        Integer reference = sensorIds.get(sensorId);
+        if (reference != null) {
+            writeVarint(reference);
+            return;
+        }
+        sensorIds.put(sensorId, sensorIds.size() + 1);
+        byte[] bytes = sensorId.getBytes(StandardCharsets.UTF_8);
+        writeVarint(0);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Values are at most scale 4; sums beyond a scaled long (about 9 * 10^14)
+     * cannot be sent in this format.
+     */
+    private void writeValue(BigDecimal value) throws IOException {
+        writeZigzag(FixedPoint.toScaled(value));
+    }
+
+    private void writeTime(Instant instant) throws IOException {
+        long micros = MetricWireFormat.toMicros(instant);
+        writeZigzag(micros - lastMicros);
+        lastMicros = micros;
+    }
+
+    private void writeZigzag(long value) throws IOException {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,17 @@
+-- Raw sensor readings.
+CREATE TABLE metric_records (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    sensor_id    VARCHAR(255)               NOT NULL,
+    metric_type  VARCHAR(32)                NOT NULL,
+    metric_value NUMERIC(18, 4)             NOT NULL,
+    recorded_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+-- Range queries: equality on sensor + metric, range on time.
+CREATE INDEX idx_metric_records_key_time
+    ON metric_records (sensor_id, metric_type, recorded_at);
+
+-- Latest-value lookups: newest timestamp first, value carried in the index
+-- so the latest reading can be answered without touching the table.
+CREATE INDEX idx_metric_records_latest
+    ON metric_records (sensor_id, metric_type, recorded_at DESC, metric_value);
@@ -0,0 +1,5 @@
+-- Ids come from a sequence with a pooled allocation of 100, so Hibernate can
+-- assign ids up front and send inserts as JDBC batches.
+CREATE SEQUENCE metric_records_seq START WITH 1 INCREMENT BY 100;
+
+ALTER TABLE metric_records ALTER COLUMN id DROP IDENTITY;
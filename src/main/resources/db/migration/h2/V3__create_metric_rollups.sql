@@ -0,0 +1,37 @@
+-- Pre-aggregated readings per sensor, metric and time bucket (MINUTE, HOUR, DAY; UTC).
+-- Maintained incrementally on every ingest, in the same transaction as the raw rows.
+CREATE TABLE metric_rollups (
+    sensor_id        VARCHAR(255)                NOT NULL,
+    metric_type      VARCHAR(32)                 NOT NULL,
+    bucket_size      VARCHAR(16)                 NOT NULL,
+    bucket_start     TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    reading_count    BIGINT                      NOT NULL,
+    value_sum        NUMERIC(38, 4)              NOT NULL,
+    min_value        NUMERIC(18, 4)              NOT NULL,
+    max_value        NUMERIC(18, 4)              NOT NULL,
+    last_recorded_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (sensor_id, metric_type, bucket_size, bucket_start)
+);
+
+-- Range scans per bucket size when no sensor filter is given.
+CREATE INDEX idx_metric_rollups_bucket
+    ON metric_rollups (bucket_size, bucket_start);
+
+-- Backfill from readings stored before this migration.
+INSERT INTO metric_rollups
+SELECT sensor_id, metric_type, 'MINUTE', DATE_TRUNC(MINUTE, recorded_at),
+       COUNT(*), SUM(metric_value), MIN(metric_value), MAX(metric_value), MAX(recorded_at)
+FROM metric_records
+GROUP BY sensor_id, metric_type, DATE_TRUNC(MINUTE, recorded_at);
+
+INSERT INTO metric_rollups
+SELECT sensor_id, metric_type, 'HOUR', DATE_TRUNC(HOUR, recorded_at),
+       COUNT(*), SUM(metric_value), MIN(metric_value), MAX(metric_value), MAX(recorded_at)
+FROM metric_records
+GROUP BY sensor_id, metric_type, DATE_TRUNC(HOUR, recorded_at);
+
+INSERT INTO metric_rollups
+SELECT sensor_id, metric_type, 'DAY', DATE_TRUNC(DAY, recorded_at),
+       COUNT(*), SUM(metric_value), MIN(metric_value), MAX(metric_value), MAX(recorded_at)
+FROM metric_records
+GROUP BY sensor_id, metric_type, DATE_TRUNC(DAY, recorded_at);
@@ -0,0 +1,55 @@
+-- Variance and quantile state per rollup bucket, for STDDEV and percentile queries.
+
+-- Sum of squared differences from the bucket mean (Welford); buckets combine with Chan's formula.
+ALTER TABLE metric_rollups ADD COLUMN value_m2 DOUBLE PRECISION DEFAULT 0 NOT NULL;
+
+-- Quantile sketch per bucket: readings per logarithmic value bin (see QuantileSketch.binOf).
+CREATE TABLE metric_rollup_bins (
+    sensor_id    VARCHAR(255)                NOT NULL,
+    metric_type  VARCHAR(32)                 NOT NULL,
+    bucket_size  VARCHAR(16)                 NOT NULL,
+    bucket_start TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    bin_key      INTEGER                     NOT NULL,
+    bin_count    BIGINT                      NOT NULL,
+    PRIMARY KEY (sensor_id, metric_type, bucket_size, bucket_start, bin_key)
+);
+
+CREATE INDEX idx_metric_rollup_bins_bucket
+    ON metric_rollup_bins (bucket_size, bucket_start);
+
+-- Backfill from readings stored before this migration.
+UPDATE metric_rollups r SET value_m2 = COALESCE((
+    SELECT SUM(POWER(CAST(m.metric_value AS DOUBLE PRECISION)
+                     - CAST(r.value_sum AS DOUBLE PRECISION) / r.reading_count, 2))
+    FROM metric_records m
+    WHERE m.sensor_id = r.sensor_id AND m.metric_type = r.metric_type
+      AND m.recorded_at >= r.bucket_start
+      AND m.recorded_at < CASE r.bucket_size
+                              WHEN 'MINUTE' THEN DATEADD(MINUTE, 1, r.bucket_start)
+                              WHEN 'HOUR' THEN DATEADD(HOUR, 1, r.bucket_start)
+                              ELSE DATEADD(DAY, 1, r.bucket_start) END), 0);
+
+CREATE VIEW metric_record_bins AS
+SELECT sensor_id, metric_type, recorded_at,
+       CASE WHEN metric_value = 0 THEN 0
+            ELSE CAST(SIGN(metric_value)
+                      * (GREATEST(CEIL(LN(ABS(metric_value) * 10000) / LN(1.01 / 0.99)), 0) + 1) AS INTEGER)
+       END AS bin_key
+FROM metric_records;
+
+INSERT INTO metric_rollup_bins
+SELECT sensor_id, metric_type, 'MINUTE', DATE_TRUNC(MINUTE, recorded_at), bin_key, COUNT(*)
+FROM metric_record_bins
+GROUP BY sensor_id, metric_type, DATE_TRUNC(MINUTE, recorded_at), bin_key;
+
+INSERT INTO metric_rollup_bins
+SELECT sensor_id, metric_type, 'HOUR', DATE_TRUNC(HOUR, recorded_at), bin_key, COUNT(*)
+FROM metric_record_bins
+GROUP BY sensor_id, metric_type, DATE_TRUNC(HOUR, recorded_at), bin_key;
+
+INSERT INTO metric_rollup_bins
+SELECT sensor_id, metric_type, 'DAY', DATE_TRUNC(DAY, recorded_at), bin_key, COUNT(*)
+FROM metric_record_bins
+GROUP BY sensor_id, metric_type, DATE_TRUNC(DAY, recorded_at), bin_key;
+
+DROP VIEW metric_record_bins;
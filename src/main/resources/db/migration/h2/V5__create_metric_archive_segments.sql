@@ -0,0 +1,13 @@
+-- Chunk files holding readings moved out of metric_records (see ChunkArchive).
+-- A file only counts once its row here is committed, in the same transaction
+-- that deletes the readings it holds.
+CREATE TABLE metric_archive_segments (
+    segment_id    BIGINT                      PRIMARY KEY,
+    file_name     VARCHAR(255)                NOT NULL,
+    range_start   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    range_end     TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    reading_count BIGINT                      NOT NULL,
+    chunk_count   INTEGER                     NOT NULL,
+    byte_size     BIGINT                      NOT NULL,
+    sealed_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,31 @@
+-- Dictionary of sensor ids: metric_records stores a 4-byte key per reading
+-- instead of repeating the id string in every row and index entry.
+CREATE TABLE sensors (
+    sensor_key INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    sensor_id  VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_sensors_sensor_id UNIQUE (sensor_id)
+);
+
+INSERT INTO sensors (sensor_id)
+SELECT DISTINCT sensor_id FROM metric_records ORDER BY sensor_id;
+
+ALTER TABLE metric_records ADD COLUMN sensor_key INTEGER;
+
+UPDATE metric_records r
+SET sensor_key = (SELECT s.sensor_key FROM sensors s WHERE s.sensor_id = r.sensor_id);
+
+ALTER TABLE metric_records ALTER COLUMN sensor_key SET NOT NULL;
+
+DROP INDEX idx_metric_records_key_time;
+DROP INDEX idx_metric_records_latest;
+ALTER TABLE metric_records DROP COLUMN sensor_id;
+
+ALTER TABLE metric_records ADD CONSTRAINT fk_metric_records_sensor
+    FOREIGN KEY (sensor_key) REFERENCES sensors (sensor_key);
+
+-- Same indexes as before, on the key.
+CREATE INDEX idx_metric_records_key_time
+    ON metric_records (sensor_key, metric_type, recorded_at);
+
+CREATE INDEX idx_metric_records_latest
+    ON metric_records (sensor_key, metric_type, recorded_at DESC, metric_value);
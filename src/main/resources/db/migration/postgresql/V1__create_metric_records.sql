@@ -0,0 +1,53 @@
+-- Raw sensor readings, range-partitioned by recorded_at.
+--
+-- The partition size is controlled by the Flyway placeholder
+-- ${partition_interval} ('day' or 'month'). Queries are limited to at most
+-- one month, so the planner only has to visit one or two partitions.
+CREATE TABLE metric_records (
+    -- serial rather than IDENTITY: works on partitioned tables on every PostgreSQL version
+    id           BIGSERIAL,
+    sensor_id    VARCHAR(255)   NOT NULL,
+    metric_type  VARCHAR(32)    NOT NULL,
+    metric_value NUMERIC(18, 4) NOT NULL,
+    recorded_at  TIMESTAMPTZ    NOT NULL,
+    -- the partition key has to be part of every unique constraint
+    PRIMARY KEY (id, recorded_at)
+) PARTITION BY RANGE (recorded_at);
+
+-- Catches readings outside every pre-created partition.
+CREATE TABLE metric_records_default PARTITION OF metric_records DEFAULT;
+
+-- Range queries: equality on sensor + metric, range on time.
+CREATE INDEX idx_metric_records_key_time
+    ON metric_records (sensor_id, metric_type, recorded_at);
+
+-- Latest-value lookups: index-only scan for the newest reading.
+CREATE INDEX idx_metric_records_latest
+    ON metric_records (sensor_id, metric_type, recorded_at DESC) INCLUDE (metric_value);
+
+-- Creates any missing partitions covering [p_from, p_to) and returns how
+-- many were created. Called once below and then periodically by the
+-- application (see PartitionMaintenanceTask).
+CREATE OR REPLACE FUNCTION ensure_metric_records_partitions(p_from TIMESTAMPTZ, p_to TIMESTAMPTZ)
+RETURNS INTEGER AS $$
+DECLARE
+    step    INTERVAL    := INTERVAL '1 ${partition_interval}';
+    bound   TIMESTAMPTZ := date_trunc('${partition_interval}', p_from AT TIME ZONE 'UTC') AT TIME ZONE 'UTC';
+    name    TEXT;
+    created INTEGER     := 0;
+BEGIN
+    WHILE bound < p_to LOOP
+        name := 'metric_records_' || to_char(bound AT TIME ZONE 'UTC',
+                CASE WHEN '${partition_interval}' = 'day' THEN 'YYYYMMDD' ELSE 'YYYYMM' END);
+        IF to_regclass(name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF metric_records FOR VALUES FROM (%L) TO (%L)',
+                    name, bound, bound + step);
+            created := created + 1;
+        END IF;
+        bound := bound + step;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT ensure_metric_records_partitions(now() - INTERVAL '1 month', now() + INTERVAL '2 months');
@@ -0,0 +1,10 @@
+-- Ids come from a sequence with a pooled allocation of 100, so Hibernate can
+-- assign ids up front and send inserts as JDBC batches.
+CREATE SEQUENCE metric_records_seq INCREMENT BY 100;
+
+-- The pooled optimizer hands out (value - 99) .. value, so start one block
+-- above the highest existing id.
+SELECT setval('metric_records_seq', COALESCE((SELECT max(id) FROM metric_records), 0) + 100, false);
+
+ALTER TABLE metric_records ALTER COLUMN id DROP DEFAULT;
+DROP SEQUENCE IF EXISTS metric_records_id_seq;
@@ -0,0 +1,43 @@
+-- Variance and quantile state per rollup bucket, for STDDEV and percentile queries.
+
+-- Sum of squared differences from the bucket mean (Welford); buckets combine with Chan's formula.
+ALTER TABLE metric_rollups ADD COLUMN value_m2 DOUBLE PRECISION NOT NULL DEFAULT 0;
+
+-- Quantile sketch per bucket: readings per logarithmic value bin (see QuantileSketch.binOf).
+CREATE TABLE metric_rollup_bins (
+    sensor_id    VARCHAR(255) NOT NULL,
+    metric_type  VARCHAR(32)  NOT NULL,
+    bucket_size  VARCHAR(16)  NOT NULL,
+    bucket_start TIMESTAMPTZ  NOT NULL,
+    bin_key      INTEGER      NOT NULL,
+    bin_count    BIGINT       NOT NULL,
+    PRIMARY KEY (sensor_id, metric_type, bucket_size, bucket_start, bin_key)
+);
+
+CREATE INDEX idx_metric_rollup_bins_bucket
+    ON metric_rollup_bins (bucket_size, bucket_start);
+
+-- Backfill from readings stored before this migration.
+UPDATE metric_rollups r SET value_m2 = COALESCE((
+    SELECT SUM(power(m.metric_value::double precision - r.value_sum::double precision / r.reading_count, 2))
+    FROM metric_records m
+    WHERE m.sensor_id = r.sensor_id AND m.metric_type = r.metric_type
+      AND m.recorded_at >= r.bucket_start
+      AND m.recorded_at < r.bucket_start + CASE r.bucket_size
+                                               WHEN 'MINUTE' THEN INTERVAL '1 minute'
+                                               WHEN 'HOUR' THEN INTERVAL '1 hour'
+                                               ELSE INTERVAL '24 hours' END), 0);
+
+INSERT INTO metric_rollup_bins
+SELECT sensor_id, metric_type, b.bucket_size,
+       date_trunc(lower(b.bucket_size), recorded_at AT TIME ZONE 'UTC') AT TIME ZONE 'UTC',
+       bin_key, COUNT(*)
+FROM (SELECT sensor_id, metric_type, recorded_at,
+             CASE WHEN metric_value = 0 THEN 0
+                  ELSE (sign(metric_value)
+                        * (greatest(ceil(ln(abs(metric_value) * 10000) / ln(1.01 / 0.99)), 0) + 1))::integer
+             END AS bin_key
+      FROM metric_records) r
+CROSS JOIN (VALUES ('MINUTE'), ('HOUR'), ('DAY')) AS b(bucket_size)
+GROUP BY sensor_id, metric_type, b.bucket_size,
+         date_trunc(lower(b.bucket_size), recorded_at AT TIME ZONE 'UTC'), bin_key;
@@ -0,0 +1,42 @@
+-- A partition cannot be created while the default partition holds rows of its
+-- range, and late or future-dated readings land there whenever no partition
+-- covers them yet. Such rows are now moved into the new partition: taken out
+-- of the default partition, the partition created, and the rows inserted again,
+-- all in the caller's transaction.
+CREATE OR REPLACE FUNCTION ensure_metric_records_partitions(p_from TIMESTAMPTZ, p_to TIMESTAMPTZ)
+RETURNS INTEGER AS $$
+DECLARE
+    step    INTERVAL    := INTERVAL '1 ${partition_interval}';
+    bound   TIMESTAMPTZ := date_trunc('${partition_interval}', p_from AT TIME ZONE 'UTC') AT TIME ZONE 'UTC';
+    name    TEXT;
+    moved   BIGINT;
+    created INTEGER     := 0;
+BEGIN
+    WHILE bound < p_to LOOP
+        name := 'metric_records_' || to_char(bound AT TIME ZONE 'UTC',
+                CASE WHEN '${partition_interval}' = 'day' THEN 'YYYYMMDD' ELSE 'YYYYMM' END);
+        IF to_regclass(name) IS NULL THEN
+            CREATE TEMP TABLE metric_records_moving (LIKE metric_records) ON COMMIT DROP;
+            WITH taken AS (
+                DELETE FROM metric_records_default
+                WHERE recorded_at >= bound AND recorded_at < bound + step
+                RETURNING *
+            )
+            INSERT INTO metric_records_moving SELECT * FROM taken;
+            GET DIAGNOSTICS moved = ROW_COUNT;
+
+            EXECUTE format('CREATE TABLE %I PARTITION OF metric_records FOR VALUES FROM (%L) TO (%L)',
+                    name, bound, bound + step);
+
+            IF moved > 0 THEN
+                INSERT INTO metric_records SELECT * FROM metric_records_moving;
+                RAISE NOTICE 'Moved % row(s) from metric_records_default into %', moved, name;
+            END IF;
+            DROP TABLE metric_records_moving;
+            created := created + 1;
+        END IF;
+        bound := bound + step;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
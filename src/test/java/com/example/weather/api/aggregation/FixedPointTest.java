@@ -0,0 +1,57 @@
+package com.example.weather.api.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The fixed-point average must be indistinguishable from the BigDecimal one.
+ */
+class FixedPointTest {
+
+    @Test
+    void averageMatchesBigDecimalDivisionIncludingTies() {
+        String[] sums = {"0", "1", "-1", "0.0001", "-0.0001", "0.00015", "2.5", "-2.5", "12.5", "99999999999999.9999"};
+        for (String sum : sums) {
+            for (long count = 1; count <= 16; count++) {
+                assertSameAverage(new BigDecimal(sum), count);
+            }
+        }
+    }
+
+    @Test
+    void averageMatchesBigDecimalDivisionForRandomSums() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal sum = BigDecimal.valueOf(random.nextLong() / 1_000, 4);
+            assertSameAverage(sum, 1 + random.nextInt(1_000_000));
+        }
+    }
+
+    @Test
+    void sumsBeyondALongFallBackToBigDecimal() {
+        BigDecimal sum = new BigDecimal("123456789012345678901.2345");
+        assertSameAverage(sum, 7);
+    }
+
+    @Test
+    void accumulatorSpillsIntoBigIntegerOnOverflow() {
+        ScaledAccumulator acc = new ScaledAccumulator();
+        acc.add(Long.MAX_VALUE);
+        acc.add(Long.MAX_VALUE);
+
+        assertThat(acc.sum()).isEqualTo(BigDecimal.valueOf(Long.MAX_VALUE, 4).multiply(BigDecimal.valueOf(2)));
+        assertThat(acc.count()).isEqualTo(2);
+    }
+
+    private static void assertSameAverage(BigDecimal sum, long count) {
+        BigDecimal expected = sum.divide(BigDecimal.valueOf(count), 4, RoundingMode.HALF_UP);
+        assertThat(FixedPoint.average(sum, count))
+                .as("%s / %d", sum, count)
+                .isEqualTo(expected);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.weather.api.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Quantile estimates must stay within the sketch's relative accuracy, and
+ * merged sketches must answer exactly like one sketch over all values.
+ */
+class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.25, 0.5, 0.9, 0.95, 0.99, 1};
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        Random random = new Random(7);
+        long[] values = new long[20_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // mixed signs and magnitudes from 0.0001 to about 10^6
+            values[i] = (long) (Math.exp(random.nextDouble() * 23) * (random.nextInt(10) == 0 ? -1 : 1));
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : QUANTILES) {
+            long exact = values[(int) (q * (values.length - 1))];
+            double estimate = sketch.quantile(q);
+            assertThat(estimate).as("q=%s", q)
+                    .isCloseTo(exact, within(Math.abs(exact) * QuantileSketch.RELATIVE_ACCURACY + 1e-9));
+        }
+    }
+
+    @Test
+    void mergedSketchesMatchASinglePass() {
+        Random random = new Random(11);
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        for (int i = 0; i < 5_000; i++) {
+            long value = random.nextLong(-1_000_000, 1_000_000);
+            all.add(value);
+            (i % 3 == 0 ? left : right).add(value);
+        }
+        left.merge(right);
+
+        assertThat(left.count()).isEqualTo(all.count());
+        for (double q : QUANTILES) {
+            assertThat(left.quantile(q)).isEqualTo(all.quantile(q));
+        }
+    }
+
+    @Test
+    void mergedDistributionsMatchASinglePass() {
+        Distribution all = new Distribution();
+        Distribution left = new Distribution();
+        Distribution right = new Distribution();
+        for (long value = 1; value <= 100; value++) {
+            all.add(value * 10_000);
+            (value <= 30 ? left : right).add(value * 10_000);
+        }
+        left.merge(right);
+
+        // population standard deviation of 1..100
+        double expected = Math.sqrt((100.0 * 100.0 - 1) / 12);
+        assertThat(all.standardDeviation()).isCloseTo(expected, within(1e-9));
+        assertThat(left.standardDeviation()).isCloseTo(expected, within(1e-9));
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.weather.api.archive;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricArchiveRepository;
+import com.example.weather.api.repository.MetricArchiveRepository.ArchivableReadingHandler;
+import com.example.weather.api.repository.MetricArchiveRepository.ArchiveSegmentRow;
+import com.example.weather.api.repository.MetricReading;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the chunk codec, segment files and sealing, without a database.
+ */
+class ChunkArchiveTest {
+
+    private static final Instant BASE = Instant.parse("2025-06-01T00:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void chunksRoundTripAndCompress() throws IOException {
+        List<long[]> regular = new ArrayList<>();
+        Random random = new Random(7);
+        long value = 215_000;
+        for (int i = 0; i < 5_000; i++) {
+            // every 10 s with up to 3 ms of jitter, temperature moving by a tenth of a degree
+            long micros = toMicros(BASE) + i * 10_000_000L + random.nextInt(3_000);
+            value += (random.nextInt(3) - 1) * 1_000L;
+            regular.add(new long[] {micros, value});
+        }
+        List<long[]> extremes = List.of(
+                new long[] {toMicros(BASE), 999_999_999_999_999_999L},
+                new long[] {toMicros(BASE), -999_999_999_999_999_999L},
+                new long[] {toMicros(BASE) + 1, 0},
+                new long[] {toMicros(BASE) + 86_400_000_000L * 30, -1},
+                new long[] {toMicros(BASE) + 86_400_000_000L * 30, 1});
+
+        Path path = directory.resolve("segment.chunks");
+        long bytes;
+        try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(path, 1024)) {
+            for (long[] reading : regular) {
+                writer.add("sensor-1", MetricType.TEMPERATURE, reading[0], reading[1]);
+            }
+            for (long[] reading : extremes) {
+                writer.add("sensor-ü", MetricType.HUMIDITY, reading[0], reading[1]);
+            }
+            bytes = writer.finish();
+        }
+
+        ArchiveSegment segment = ArchiveSegment.open(1, path);
+        assertThat(decode(segment, "sensor-1")).containsExactlyElementsOf(regular);
+        assertThat(decode(segment, "sensor-ü")).containsExactlyElementsOf(extremes);
+        assertThat(segment.chunks("sensor-1")).hasSize(5);
+        // a row in metric_records takes well over 100 bytes
+        assertThat((double) bytes / regular.size()).isLessThan(4.0);
+    }
+
+    @Test
+    void sealedReadingsAreAggregatedFromChunks() {
+        List<MetricReading> readings = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            readings.add(new MetricReading("sensor-1", MetricType.WIND_SPEED,
+                    BigDecimal.valueOf(i + 1), BASE.plusSeconds(i * 60L)));
+        }
+        MetricArchiveRepository repository = repository(readings);
+        ChunkArchive archive = archive(repository);
+
+        assertThat(archive.sealBefore(BASE.plus(Duration.ofDays(2)))).isEqualTo(100);
+        verify(repository).deleteReadings(any(), anyInt(), any(), any());
+
+        // readings 10..89: inner chunks from their headers, the two cut chunks decoded
+        List<MetricAggregate> partials = new ArrayList<>();
+        archive.aggregate(List.of("sensor-1"), null, BASE.plusSeconds(9 * 60), BASE.plusSeconds(88 * 60),
+                false, partials::add);
+        MetricAggregate merged = partials.stream().reduce(MetricAggregate::merge).orElseThrow();
+        assertThat(merged.count()).isEqualTo(80);
+        assertThat(merged.sum()).isEqualByComparingTo("3960");
+        assertThat(merged.min()).isEqualByComparingTo("10");
+        assertThat(merged.max()).isEqualByComparingTo("89");
+        assertThat(merged.latestTimestamp()).isEqualTo(BASE.plusSeconds(88 * 60));
+
+        List<MetricAggregate> withDistribution = new ArrayList<>();
+        archive.aggregate(null, List.of(MetricType.WIND_SPEED), BASE, BASE.plus(Duration.ofDays(1)),
+                true, withDistribution::add);
+        assertThat(withDistribution).allSatisfy(partial -> assertThat(partial.distribution()).isNotNull());
+        assertThat(withDistribution.stream().mapToLong(MetricAggregate::count).sum()).isEqualTo(100);
+
+        List<MetricAggregate> otherMetric = new ArrayList<>();
+        archive.aggregate(null, List.of(MetricType.HUMIDITY), BASE, BASE.plus(Duration.ofDays(1)),
+                false, otherMetric::add);
+        assertThat(otherMetric).isEmpty();
+    }
+
+    @Test
+    void reopeningKeepsRegisteredSegmentsOnly() throws IOException {
+        MetricArchiveRepository repository = repository(List.of(
+                new MetricReading("sensor-1", MetricType.TEMPERATURE, new BigDecimal("-3.5"), BASE)));
+        archive(repository).sealBefore(BASE.plus(Duration.ofDays(2)));
+        ArgumentCaptor<ArchiveSegmentRow> registered = ArgumentCaptor.forClass(ArchiveSegmentRow.class);
+        verify(repository).insertSegment(registered.capture());
+        Path orphan = Files.createFile(directory.resolve(String.format("segment-%020d.chunks", 99)));
+
+        MetricArchiveRepository restarted = mock(MetricArchiveRepository.class);
+        when(restarted.findSegments()).thenReturn(List.of(registered.getValue()));
+        ChunkArchive archive = archive(restarted);
+
+        List<MetricAggregate> partials = new ArrayList<>();
+        archive.aggregate(null, null, BASE, BASE, false, partials::add);
+        assertThat(partials).singleElement()
+                .satisfies(partial -> assertThat(partial.max()).isEqualByComparingTo("-3.5"));
+        assertThat(orphan).doesNotExist();
+    }
+
+    private MetricArchiveRepository repository(List<MetricReading> readings) {
+        MetricArchiveRepository repository = mock(MetricArchiveRepository.class);
+        when(repository.oldestArchivable(any())).thenReturn(readings.get(0).timestamp(), (Instant) null);
+        doAnswer(invocation -> {
+            ArchivableReadingHandler handler = invocation.getArgument(2);
+            for (int i = 0; i < readings.size(); i++) {
+                handler.accept(i + 1, readings.get(i));
+            }
+            return null;
+        }).when(repository).streamArchivable(any(), any(), any());
+        when(repository.deleteReadings(any(), anyInt(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Integer>getArgument(1).longValue());
+        return repository;
+    }
+
+    private ChunkArchive archive(MetricArchiveRepository repository) {
+        ChunkArchive archive = new ChunkArchive(repository, mock(PlatformTransactionManager.class),
+                new ArchiveProperties(true, directory.toString(), Duration.ofDays(7), Duration.ofDays(1), 16));
+        archive.open();
+        return archive;
+    }
+
+    private static List<long[]> decode(ArchiveSegment segment, String sensorId) {
+        List<long[]> readings = new ArrayList<>();
+        for (ChunkHeader chunk : segment.chunks(sensorId)) {
+            ChunkDecoder decoder = segment.decode(chunk);
+            while (decoder.next()) {
+                readings.add(new long[] {decoder.time(), decoder.value()});
+            }
+        }
+        return readings;
+    }
+
+    private static long toMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.weather.api.cache;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.model.MetricRecord;
+import com.example.weather.api.repository.MetricAggregate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for keying and ingest-driven invalidation of the result cache.
+ */
+class QueryResultCacheTest {
+
+    private static final Instant FROM = Instant.parse("2024-03-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2024-03-08T00:00:00Z");
+
+    private final QueryResultCache cache = new QueryResultCache(new QueryCacheProperties(true, 1_000, Duration.ofMinutes(5)));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void equivalentSelectionsShareOneEntry() {
+        query(List.of("s1", "s2"), List.of(MetricType.TEMPERATURE));
+        query(List.of("s2", "s1", "s2"), List.of(MetricType.TEMPERATURE, MetricType.TEMPERATURE));
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void ingestOutsideTheSelectionKeepsTheEntry() {
+        query(List.of("s1"), List.of(MetricType.TEMPERATURE));
+
+        cache.onIngested(List.of(
+                reading("s2", MetricType.TEMPERATURE, "2024-03-02T00:00:00Z"),   // other sensor
+                reading("s1", MetricType.HUMIDITY, "2024-03-02T00:00:00Z"),      // other metric
+                reading("s1", MetricType.TEMPERATURE, "2024-03-09T00:00:00Z"))); // after the range
+        query(List.of("s1"), List.of(MetricType.TEMPERATURE));
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().invalidations()).isZero();
+    }
+
+    @Test
+    void ingestInsideTheSelectionDropsTheEntry() {
+        query(List.of("s1"), List.of(MetricType.TEMPERATURE));
+        query(List.of(), List.of());
+
+        cache.onIngested(List.of(reading("s1", MetricType.TEMPERATURE, "2024-03-08T00:00:00Z")));
+        query(List.of("s1"), List.of(MetricType.TEMPERATURE));
+        query(List.of(), List.of());
+
+        assertThat(loads).hasValue(4);
+        assertThat(cache.stats().invalidations()).isEqualTo(2);
+    }
+
+    @Test
+    void ingestWhileLoadingKeepsTheResultOutOfTheCache() {
+        List<MetricAggregate> result = cache.get(List.of("s1"), List.of(MetricType.TEMPERATURE), FROM, TO, false, () -> {
+            loads.incrementAndGet();
+            cache.onIngested(List.of(reading("s1", MetricType.TEMPERATURE, "2024-03-02T00:00:00Z")));
+            return List.of();
+        });
+        query(List.of("s1"), List.of(MetricType.TEMPERATURE));
+
+        assertThat(result).isEmpty();
+        assertThat(loads).hasValue(2);
+        assertThat(cache.stats().invalidations()).isEqualTo(1);
+    }
+
+    private void query(List<String> sensorIds, List<MetricType> metrics) {
+        cache.get(sensorIds, metrics, FROM, TO, false, () -> {
+            loads.incrementAndGet();
+            return List.of(new MetricAggregate("s1", MetricType.TEMPERATURE, 1,
+                    BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, FROM));
+        });
+    }
+
+    private static MetricRecord reading(String sensorId, MetricType metric, String timestamp) {
+        return new MetricRecord(0, sensorId, metric, BigDecimal.TEN, Instant.parse(timestamp));
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.weather.api.controller;
 
+import com.example.weather.api.dto.MetricIngestionRequest;
 import com.example.weather.api.enums.MetricType;
 import com.example.weather.api.enums.StatisticType;
+import com.example.weather.api.wire.MetricWireFormat;
+import com.example.weather.api.wire.MetricWireWriter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,13 +12,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -56,4 +67,198 @@ class MetricsControllerTest {
                         .content(json.writeValueAsString(queryBody)))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    void shouldIngestBatchAndReportInvalidItems() throws Exception {
+        String now = Instant.now().toString();
+        var batch = List.of(
+                Map.of("sensorId", "B1", "metric", "TEMPERATURE", "value", 20.5, "timestamp", now),
+                Map.of("sensorId", "", "metric", "TEMPERATURE", "value", 21.0, "timestamp", now),
+                Map.of("sensorId", "B1", "metric", "HUMIDITY", "value", 40.0, "timestamp", now)
+        );
+
+        mockMvc.perform(post("/api/metrics/ingest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(batch)))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].index").value(1));
+    }
+
+    @Test
+    void shouldRejectJsonBatchOverMaxItemsOrMalformed() throws Exception {
+        // one item over weather.ingestion.batch.max-items
+        String oversized = "[" + "{},".repeat(10_000) + "{}]";
+        mockMvc.perform(post("/api/metrics/ingest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(oversized))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Batch must not contain more than 10000 items."));
+
+        mockMvc.perform(post("/api/metrics/ingest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"sensorId\": \"B1\"},"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldIngestNdjsonBatch() throws Exception {
+        String now = Instant.now().toString();
+        String body = json.writeValueAsString(
+                Map.of("sensorId", "B2", "metric", "WIND_SPEED", "value", 3.5, "timestamp", now))
+                + "\n\n"
+                + json.writeValueAsString(
+                Map.of("sensorId", "B2", "metric", "WIND_SPEED", "value", 4.5, "timestamp", now))
+                + "\n";
+
+        mockMvc.perform(post("/api/metrics/ingest/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+    }
+
+    @Test
+    void shouldIngestAndQueryBinaryBodies() throws Exception {
+        Instant now = Instant.now();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        MetricWireWriter writer = new MetricWireWriter(body);
+        writer.write(new MetricIngestionRequest("W1", MetricType.TEMPERATURE, new BigDecimal("12.5"), now));
+        writer.write(new MetricIngestionRequest("W1", MetricType.TEMPERATURE, new BigDecimal("13.5"), now));
+
+        mockMvc.perform(post("/api/metrics/ingest/batch")
+                        .contentType(MetricWireFormat.MEDIA_TYPE)
+                        .content(body.toByteArray()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        var queryBody = Map.of(
+                "sensorIds", List.of("W1"),
+                "metrics", List.of(MetricType.TEMPERATURE.name()),
+                "statistic", StatisticType.MAX.name()
+        );
+
+        MvcResult started = mockMvc.perform(post("/api/metrics/query")
+                        .accept(MetricWireFormat.MEDIA_TYPE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(queryBody)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MetricWireFormat.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // version byte, then a new sensor id "W1"
+        assertThat(Arrays.copyOf(result, 5)).isEqualTo(new byte[] {1, 0, 2, 'W', '1'});
+    }
+
+    @Test
+    void shouldRejectMalformedBinaryBody() throws Exception {
+        mockMvc.perform(post("/api/metrics/ingest/batch")
+                        .contentType(MetricWireFormat.MEDIA_TYPE)
+                        .content(new byte[] {1, 0, 9, 'W'}))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnDownsampledSeriesAsCompactPoints() throws Exception {
+        var batch = List.of(
+                Map.of("sensorId", "C1", "metric", "TEMPERATURE", "value", 10.0, "timestamp", "2025-09-01T10:05:00Z"),
+                Map.of("sensorId", "C1", "metric", "TEMPERATURE", "value", 20.0, "timestamp", "2025-09-01T10:55:00Z"),
+                Map.of("sensorId", "C1", "metric", "TEMPERATURE", "value", 30.0, "timestamp", "2025-09-01T12:30:00Z")
+        );
+        mockMvc.perform(post("/api/metrics/ingest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(batch)))
+                .andExpect(status().isCreated());
+
+        var seriesBody = Map.of(
+                "sensorIds", List.of("C1"),
+                "statistic", StatisticType.AVG.name(),
+                "interval", "1h",
+                "from", "2025-09-01T10:20:00Z",
+                "to", "2025-09-01T13:00:00Z"
+        );
+
+        mockMvc.perform(post("/api/metrics/query/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(seriesBody)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].interval").value("1h"))
+                .andExpect(jsonPath("$[0].from").value("2025-09-01T10:00:00Z"))
+                .andExpect(jsonPath("$[0].points.length()").value(2))
+                .andExpect(jsonPath("$[0].points[0][0]").value("2025-09-01T10:00:00Z"))
+                .andExpect(jsonPath("$[0].points[0][1]").value(15.0))
+                .andExpect(jsonPath("$[0].points[1][0]").value("2025-09-01T12:00:00Z"))
+                .andExpect(jsonPath("$[0].points[1][1]").value(30.0));
+    }
+
+    @Test
+    void shouldRejectSeriesWithTooManyPoints() throws Exception {
+        var seriesBody = Map.of(
+                "statistic", StatisticType.MAX.name(),
+                "interval", "1m",
+                "from", "2025-09-01T00:00:00Z",
+                "to", "2025-09-08T00:00:00Z"
+        );
+
+        mockMvc.perform(post("/api/metrics/query/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(seriesBody)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldStreamQueryResultsAsNdjson() throws Exception {
+        String now = Instant.now().toString();
+        var batch = List.of(
+                Map.of("sensorId", "N1", "metric", "HUMIDITY", "value", 41.0, "timestamp", now),
+                Map.of("sensorId", "N2", "metric", "HUMIDITY", "value", 42.0, "timestamp", now)
+        );
+        mockMvc.perform(post("/api/metrics/ingest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(batch)))
+                .andExpect(status().isCreated());
+
+        var queryBody = Map.of(
+                "sensorIds", List.of("N1", "N2"),
+                "metrics", List.of(MetricType.HUMIDITY.name()),
+                "statistic", StatisticType.MAX.name()
+        );
+
+        MvcResult started = mockMvc.perform(post("/api/metrics/query")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(queryBody)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        List<String> lines = body.lines().toList();
+        assertThat(lines).hasSize(2);
+        assertThat(json.readTree(lines.get(0)).get("sensorId").asText()).isEqualTo("N1");
+        assertThat(json.readTree(lines.get(1)).get("value").decimalValue()).isEqualByComparingTo("42");
+    }
+
+    @Test
+    void shouldRejectInvalidStreamedQueryBeforeStreaming() throws Exception {
+        var queryBody = Map.of(
+                "statistic", StatisticType.AVG.name(),
+                "from", "2025-09-01T00:00:00Z"
+        );
+
+        mockMvc.perform(post("/api/metrics/query")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.writeValueAsString(queryBody)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
 }
@@ -0,0 +1,81 @@
+package com.example.weather.api.maintenance;
+
+import com.example.weather.api.dto.RetentionReport;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.RollupBucket;
+import com.example.weather.api.repository.RetentionRepository;
+import com.example.weather.api.service.MetricIngestionListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the purge loop, without a database.
+ */
+class RetentionPurgeTaskTest {
+
+    private final RetentionRepository repository = mock(RetentionRepository.class);
+    private final MetricIngestionListener listener = mock(MetricIngestionListener.class);
+
+    @Test
+    void deletesReadingsInBatchesUntilABatchComesBackShort() {
+        when(repository.findSensorKeys()).thenReturn(List.of(1, 2));
+        when(repository.deleteReadings(eq(1), eq(MetricType.TEMPERATURE), any(), eq(10))).thenReturn(10, 10, 3);
+
+        RetentionReport report = task(Map.of()).purge();
+
+        assertThat(report.completed()).isTrue();
+        assertThat(report.readings()).isEqualTo(23);
+        verify(repository, times(3)).deleteReadings(eq(1), eq(MetricType.TEMPERATURE), any(), anyInt());
+        verify(repository, times(1)).deleteReadings(eq(2), eq(MetricType.TEMPERATURE), any(), anyInt());
+        verify(listener).onPurged(eq(MetricType.TEMPERATURE), any());
+        verify(listener, never()).onPurged(eq(MetricType.HUMIDITY), any());
+    }
+
+    @Test
+    void deletesExpiredRollupsSliceBySliceUpToTheirOwnHorizon() {
+        Instant oldest = Instant.parse("2020-01-01T00:00:00Z");
+        when(repository.findSensorKeys()).thenReturn(List.of(1, 2, 3, 4, 5));
+        when(repository.oldestRollup(eq(MetricType.HUMIDITY), eq(RollupBucket.HOUR), any()))
+                .thenReturn(oldest, oldest.plus(Duration.ofHours(2)), null);
+        when(repository.deleteRollups(eq(MetricType.HUMIDITY), eq(RollupBucket.HOUR), any(), any())).thenReturn(5);
+        when(repository.deleteRollupBins(eq(MetricType.HUMIDITY), eq(RollupBucket.HOUR), any(), any())).thenReturn(20);
+
+        Instant now = Instant.parse("2025-06-01T12:34:56Z");
+        RetentionReport report = task(Map.of(MetricType.HUMIDITY,
+                new RetentionProperties.Policy(Duration.ofDays(7), Duration.ofDays(90)))).purge(now);
+
+        assertThat(report.rollups()).isEqualTo(10);
+        assertThat(report.rollupBins()).isEqualTo(40);
+        // 10 rows per batch and 5 sensors: two hourly buckets per slice
+        verify(repository).deleteRollups(MetricType.HUMIDITY, RollupBucket.HOUR,
+                oldest, oldest.plus(Duration.ofHours(2)));
+        verify(repository).oldestRollup(eq(MetricType.HUMIDITY), eq(RollupBucket.DAY),
+                eq(Instant.parse("2025-03-03T00:00:00Z")));
+        verify(repository).deleteReadings(1, MetricType.HUMIDITY, Instant.parse("2025-05-25T12:34:56Z"), 10);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RetentionPurgeTask task(Map<MetricType, RetentionProperties.Policy> metrics) {
+        ObjectProvider<MetricIngestionListener> listeners = mock(ObjectProvider.class);
+        when(listeners.orderedStream()).thenAnswer(invocation -> Stream.of(listener));
+        RetentionProperties properties = new RetentionProperties(true, Duration.ofDays(30), Duration.ofDays(730),
+                metrics, 10, Duration.ZERO);
+        return new RetentionPurgeTask(repository, properties, listeners, mock(ObjectProvider.class));
+    }
+}
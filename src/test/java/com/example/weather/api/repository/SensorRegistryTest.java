@@ -0,0 +1,57 @@
+package com.example.weather.api.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for the sensor dictionary against the migrated schema.
+ */
+@SpringBootTest
+class SensorRegistryTest {
+
+    @Autowired
+    private SensorRegistry registry;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void registrationIsIdempotentAndSurvivesRestart() {
+        int key = registry.register("registry-1");
+        assertThat(registry.register("registry-1")).isEqualTo(key);
+        assertThat(registry.register("registry-2")).isNotEqualTo(key);
+        assertThat(registry.idOf(key)).isEqualTo("registry-1");
+
+        SensorRegistry restarted = new SensorRegistry(jdbc, transactionManager);
+        assertThat(restarted.keyOf("registry-1")).isEqualTo(key);
+        assertThat(restarted.idOf(key)).isSameAs(restarted.idOf(key)).isEqualTo("registry-1");
+    }
+
+    @Test
+    void unknownSensorsHaveNoKey() {
+        int key = registry.register("registry-3");
+
+        assertThat(registry.keyOf("never-ingested")).isNull();
+        assertThat(registry.keysOf(List.of("never-ingested", "registry-3"))).containsExactly(key);
+    }
+
+    @Test
+    void keysRegisteredElsewhereAreLoadedOnFirstUse() {
+        jdbc.update("INSERT INTO sensors (sensor_id) VALUES (?)", "registry-elsewhere");
+        Integer key = jdbc.queryForObject("SELECT sensor_key FROM sensors WHERE sensor_id = ?",
+                Integer.class, "registry-elsewhere");
+
+        assertThat(registry.idOf(key)).isEqualTo("registry-elsewhere");
+        assertThat(registry.keyOf("registry-elsewhere")).isEqualTo(key);
+    }
+}
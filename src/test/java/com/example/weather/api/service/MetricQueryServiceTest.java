@@ -5,6 +5,7 @@ import com.example.weather.api.dto.MetricQueryRequest;
 import com.example.weather.api.dto.MetricStatisticResponse;
 import com.example.weather.api.enums.MetricType;
 import com.example.weather.api.enums.StatisticType;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -12,9 +13,11 @@ import org.springframework.test.annotation.DirtiesContext;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
 
 /**
  * Service-level tests for MetricQueryService.
@@ -30,6 +33,9 @@ class MetricQueryServiceTest {
     @Autowired
     private MetricQueryService queryService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      *  Test AVG statistic for TEMPERATURE within valid date range (1 day)
      */
@@ -143,4 +149,168 @@ class MetricQueryServiceTest {
         assertThat(response.statistic()).isEqualTo(StatisticType.AVG);
         assertThat(response.value()).isEqualByComparingTo("60.0000");
     }
-}
\ No newline at end of file
+
+    /**
+     *  Test SUM statistic without sensor filter: every sensor gets its own group
+     */
+    @Test
+    void sumTemperatureForAllSensorsInRange_shouldGroupPerSensor() {
+        // no sensor filter, so the range must be one no other test writes to:
+        // the in-memory database outlives every application context
+        Instant now = Instant.parse("2025-08-15T12:00:00Z");
+
+        ingestionService.ingest(new MetricIngestionRequest(
+                "sensor-4", MetricType.TEMPERATURE,
+                new BigDecimal("10.5"), now.minusSeconds(3600)));
+
+        ingestionService.ingest(new MetricIngestionRequest(
+                "sensor-4", MetricType.TEMPERATURE,
+                new BigDecimal("4.5"), now.minusSeconds(1800)));
+
+        ingestionService.ingest(new MetricIngestionRequest(
+                "sensor-5", MetricType.TEMPERATURE,
+                new BigDecimal("7.25"), now.minusSeconds(1800)));
+
+        ingestionService.ingest(new MetricIngestionRequest(
+                "sensor-5", MetricType.HUMIDITY,
+                new BigDecimal("99.0"), now.minusSeconds(1800))); // other metric, filtered out
+
+        ingestionService.ingest(new MetricIngestionRequest(
+                "sensor-5", MetricType.TEMPERATURE,
+                new BigDecimal("100.0"), now.minusSeconds(3 * 24 * 3600))); // outside range
+
+        MetricQueryRequest request = new MetricQueryRequest(
+                null,  // no sensor filter
+                List.of(MetricType.TEMPERATURE),
+                StatisticType.SUM,
+                now.minusSeconds(24 * 3600),
+                now
+        );
+
+        List<MetricStatisticResponse> responses = queryService.query(request);
+
+        assertThat(responses).hasSize(2);
+        assertThat(responses.get(0).sensorId()).isEqualTo("sensor-4");
+        assertThat(responses.get(0).value()).isEqualByComparingTo("15.0000");
+        assertThat(responses.get(1).sensorId()).isEqualTo("sensor-5");
+        assertThat(responses.get(1).value()).isEqualByComparingTo("7.2500");
+    }
+
+    /**
+     *  Test latest-data mode when several readings share the latest timestamp
+     */
+    @Test
+    void latestWithoutRange_shouldAggregateAllReadingsAtLatestTimestamp() {
+        Instant latest = Instant.parse("2025-11-10T10:15:30Z");
+
+        ingestionService.ingest(new MetricIngestionRequest(
+                "sensor-6", MetricType.TEMPERATURE,
+                new BigDecimal("30.0"), latest.minusSeconds(60)));
+
+        ingestionService.ingest(new MetricIngestionRequest(
+                "sensor-6", MetricType.TEMPERATURE,
+                new BigDecimal("10.0"), latest));
+
+        ingestionService.ingest(new MetricIngestionRequest(
+                "sensor-6", MetricType.TEMPERATURE,
+                new BigDecimal("11.0"), latest));
+
+        MetricQueryRequest request = new MetricQueryRequest(
+                List.of("sensor-6"),
+                null,  // all metrics
+                StatisticType.MIN,
+                null,
+                null
+        );
+
+        List<MetricStatisticResponse> responses = queryService.query(request);
+
+        assertThat(responses).hasSize(1);
+        assertThat(responses.get(0).value()).isEqualByComparingTo("10.0000");
+        assertThat(responses.get(0).from()).isEqualTo(latest);
+        assertThat(responses.get(0).to()).isEqualTo(latest);
+    }
+
+    /**
+     *  Test a range that does not start or end on a minute: the edges are read
+     *  from the raw readings, both bounds inclusive
+     */
+    @Test
+    void sumWithRaggedRange_shouldIncludeBothBoundsFromRawReadings() {
+        Instant from = Instant.parse("2025-10-01T00:00:30.500Z");
+        Instant to = from.plusSeconds(24 * 3600);
+
+        ingestionService.ingestAll(List.of(
+                new MetricIngestionRequest("sensor-7", MetricType.HUMIDITY, new BigDecimal("1.0001"), from),
+                new MetricIngestionRequest("sensor-7", MetricType.HUMIDITY, new BigDecimal("2.0"), from.plusSeconds(3600)),
+                new MetricIngestionRequest("sensor-7", MetricType.HUMIDITY, new BigDecimal("4.0"), to),
+                new MetricIngestionRequest("sensor-7", MetricType.HUMIDITY, new BigDecimal("8.0"), from.minusMillis(1)),
+                new MetricIngestionRequest("sensor-7", MetricType.HUMIDITY, new BigDecimal("16.0"), to.plusMillis(1))));
+
+        MetricQueryRequest request = new MetricQueryRequest(
+                List.of("sensor-7"),
+                List.of(MetricType.HUMIDITY),
+                StatisticType.SUM,
+                from,
+                to
+        );
+
+        List<MetricStatisticResponse> responses = queryService.query(request);
+
+        assertThat(responses).hasSize(1);
+        assertThat(responses.get(0).value()).isEqualByComparingTo("7.0001");
+    }
+
+    /**
+     *  Test COUNT, STDDEV and percentiles over a range served from rollups
+     *  and raw edges: 1..100 spread over the day
+     */
+    @Test
+    void distributionStatisticsInRange_shouldCombineRollupsAndRawEdges() {
+        Instant from = Instant.parse("2025-10-02T00:00:30Z");
+        Instant to = from.plusSeconds(24 * 3600);
+
+        List<MetricIngestionRequest> readings = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            readings.add(new MetricIngestionRequest("sensor-8", MetricType.WIND_SPEED,
+                    BigDecimal.valueOf(i), from.plusSeconds(i * 853L)));
+        }
+        ingestionService.ingestAll(readings);
+
+        assertThat(statistic("sensor-8", StatisticType.COUNT, from, to)).isEqualByComparingTo("100");
+        // population standard deviation of 1..100: sqrt((100² - 1) / 12)
+        assertThat(statistic("sensor-8", StatisticType.STDDEV, from, to)).isEqualByComparingTo("28.8661");
+        assertThat(statistic("sensor-8", StatisticType.P50, from, to).doubleValue())
+                .isCloseTo(50.0, withinPercentage(1));
+        assertThat(statistic("sensor-8", StatisticType.P99, from, to).doubleValue())
+                .isCloseTo(99.0, withinPercentage(1));
+    }
+
+    @Test
+    void queriesAndIngestsAreRecordedInMeters() {
+        Instant now = Instant.now();
+        ingestionService.ingestAll(List.of(
+                new MetricIngestionRequest("sensor-9", MetricType.WIND_SPEED, new BigDecimal("3.0"), now.minusSeconds(60)),
+                new MetricIngestionRequest("sensor-9", MetricType.WIND_SPEED, new BigDecimal("5.0"), now.minusSeconds(30))));
+
+        statistic("sensor-9", StatisticType.MAX, now.minusSeconds(24 * 3600), now);
+
+        assertThat(meterRegistry.get("weather.ingest").tag("mode", "batch").tag("outcome", "committed")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("weather.query").tag("statistic", "MAX").tag("mode", "range")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("weather.query.phase").tag("statistic", "MAX").tag("phase", "load")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("weather.query.readings").tag("statistic", "MAX")
+                .summary().totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get("weather.query.groups").tag("statistic", "MAX")
+                .summary().totalAmount()).isEqualTo(1);
+    }
+
+    private BigDecimal statistic(String sensorId, StatisticType statistic, Instant from, Instant to) {
+        List<MetricStatisticResponse> responses = queryService.query(new MetricQueryRequest(
+                List.of(sensorId), List.of(MetricType.WIND_SPEED), statistic, from, to));
+        assertThat(responses).hasSize(1);
+        return responses.get(0).value();
+    }
+}
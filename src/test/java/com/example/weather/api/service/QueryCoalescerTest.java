@@ -0,0 +1,95 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.dto.MetricQueryRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.StatisticType;
+import com.example.weather.api.model.MetricRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for single-flight query execution.
+ */
+class QueryCoalescerTest {
+
+    private static final Instant FROM = Instant.parse("2024-03-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2024-03-08T00:00:00Z");
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final QueryCoalescer coalescer = new QueryCoalescer(registry);
+    private final AtomicInteger runs = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    void equivalentConcurrentRequestsShareOneRun() throws Exception {
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(
+                () -> coalescer.execute(request(List.of("s1", "s2")), this::blockingRun));
+        waitUntilRunning();
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(
+                () -> coalescer.execute(request(List.of("s2", "s1")), this::blockingRun));
+        waitUntilCoalesced(1);
+
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(runs).hasValue(1);
+        assertThat(count("executed")).isEqualTo(1);
+    }
+
+    @Test
+    void ingestIntoTheSelectionStartsAFreshRun() throws Exception {
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(
+                () -> coalescer.execute(request(List.of("s1")), this::blockingRun));
+        waitUntilRunning();
+
+        coalescer.onIngested(List.of(new MetricRecord(0, "s1", MetricType.TEMPERATURE, BigDecimal.TEN,
+                Instant.parse("2024-03-02T00:00:00Z"))));
+        int second = coalescer.execute(request(List.of("s1")), runs::incrementAndGet);
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(second).isEqualTo(2);
+        assertThat(count("coalesced")).isZero();
+    }
+
+    private int blockingRun() {
+        int run = runs.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return run;
+    }
+
+    private void waitUntilRunning() throws InterruptedException {
+        while (runs.get() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    private void waitUntilCoalesced(int expected) throws InterruptedException {
+        while (count("coalesced") < expected) {
+            Thread.sleep(1);
+        }
+    }
+
+    private double count(String outcome) {
+        return registry.get("weather.query.coalescing").tag("outcome", outcome).counter().count();
+    }
+
+    private static MetricQueryRequest request(List<String> sensorIds) {
+        return new MetricQueryRequest(sensorIds, List.of(MetricType.TEMPERATURE), StatisticType.AVG, FROM, TO);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.weather.api.service;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.exception.IngestionRejectedException;
+import com.example.weather.api.wal.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the write-behind buffer, without a Spring context.
+ */
+class WriteBehindIngestionBufferTest {
+
+    private static final MetricIngestionRequest READING = new MetricIngestionRequest(
+            "sensor-1", MetricType.TEMPERATURE, new BigDecimal("21.5"), Instant.now());
+
+    private static IngestionProperties properties(int capacity) {
+        return new IngestionProperties(
+                new IngestionProperties.Batch(10_000),
+                new IngestionProperties.Async(true, capacity, 1, 10,
+                        Duration.ofMillis(10), Duration.ofSeconds(2), Duration.ofSeconds(5)),
+                new IngestionProperties.Wal(false, "unused", DataSize.ofMegabytes(1), true));
+    }
+
+    @Test
+    void acceptedReadingsAreFlushedInBatches() {
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        WriteBehindIngestionBuffer buffer = new WriteBehindIngestionBuffer(service, properties(100), (WriteAheadLog) null);
+        buffer.start();
+
+        buffer.submitAll(List.of(READING, READING, READING));
+
+        verify(service, timeout(2_000)).ingestAll(List.of(READING, READING, READING));
+        buffer.stop();
+        assertThat(buffer.stats().persisted()).isEqualTo(3);
+        assertThat(buffer.stats().queueDepth()).isZero();
+    }
+
+    @Test
+    void aReadingThatCannotBeStoredIsDeadLetteredAndTheRestStored() {
+        MetricIngestionRequest poison = new MetricIngestionRequest(
+                "sensor-2", MetricType.TEMPERATURE, new BigDecimal("1.0"), Instant.now());
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        doAnswer(invocation -> {
+            if (invocation.<List<MetricIngestionRequest>>getArgument(0).contains(poison)) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            return null;
+        }).when(service).ingestAll(anyList());
+
+        WriteBehindIngestionBuffer buffer = new WriteBehindIngestionBuffer(service, properties(100), (WriteAheadLog) null);
+        buffer.start();
+        buffer.submitAll(List.of(READING, poison, READING, READING));
+        buffer.stop();
+
+        assertThat(buffer.stats().persisted()).isEqualTo(3);
+        assertThat(buffer.stats().deadLettered()).isEqualTo(1);
+        assertThat(buffer.stats().queueDepth()).isZero();
+    }
+
+    @Test
+    void aFailureNoReadingCanBeStoredIsRetriedNotDeadLettered() {
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            // the batch and both of its halves
+            if (attempts.incrementAndGet() <= 3) {
+                throw new BadSqlGrammarException("insert", "INSERT INTO metric_records ...",
+                        new SQLException("relation does not exist"));
+            }
+            return null;
+        }).when(service).ingestAll(anyList());
+
+        WriteBehindIngestionBuffer buffer = new WriteBehindIngestionBuffer(service, properties(100), (WriteAheadLog) null);
+        buffer.start();
+        buffer.submitAll(List.of(READING, READING));
+
+        verify(service, timeout(2_000).times(2)).ingestAll(List.of(READING, READING));
+        buffer.stop();
+        verify(service, times(2)).ingestAll(List.of(READING));
+        assertThat(buffer.stats().persisted()).isEqualTo(2);
+        assertThat(buffer.stats().deadLettered()).isZero();
+    }
+
+    @Test
+    void aLoneBadReadingIsDeadLetteredOnceAnotherReadingIsStored() {
+        MetricIngestionRequest poison = new MetricIngestionRequest(
+                "sensor-2", MetricType.TEMPERATURE, new BigDecimal("1.0"), Instant.now());
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        doAnswer(invocation -> {
+            if (invocation.<List<MetricIngestionRequest>>getArgument(0).contains(poison)) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            return null;
+        }).when(service).ingestAll(anyList());
+
+        WriteBehindIngestionBuffer buffer = new WriteBehindIngestionBuffer(service, properties(100), (WriteAheadLog) null);
+        buffer.start();
+        buffer.submit(poison);
+        verify(service, timeout(2_000)).ingestAll(List.of(poison));
+        assertThat(buffer.stats().deadLettered()).isZero();
+
+        buffer.submit(READING);
+        verify(service, timeout(2_000)).ingestAll(List.of(READING));
+        buffer.stop();
+        assertThat(buffer.stats().persisted()).isEqualTo(1);
+        assertThat(buffer.stats().deadLettered()).isEqualTo(1);
+        assertThat(buffer.stats().queueDepth()).isZero();
+    }
+
+    @Test
+    void transientFailuresAreRetried() {
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new QueryTimeoutException("timeout");
+            }
+            return null;
+        }).when(service).ingestAll(anyList());
+
+        WriteBehindIngestionBuffer buffer = new WriteBehindIngestionBuffer(service, properties(100), (WriteAheadLog) null);
+        buffer.start();
+        buffer.submitAll(List.of(READING, READING));
+
+        verify(service, timeout(2_000).times(2)).ingestAll(List.of(READING, READING));
+        buffer.stop();
+        assertThat(buffer.stats().persisted()).isEqualTo(2);
+        assertThat(buffer.stats().deadLettered()).isZero();
+    }
+
+    @Test
+    void aReadingTooLargeForTheWriteAheadLogIsRefusedWithoutHoldingSlots(@TempDir Path directory) {
+        IngestionProperties properties = new IngestionProperties(
+                new IngestionProperties.Batch(10_000),
+                new IngestionProperties.Async(true, 2, 1, 10,
+                        Duration.ofMillis(10), Duration.ofSeconds(2), Duration.ofSeconds(5)),
+                new IngestionProperties.Wal(true, directory.toString(), DataSize.ofBytes(128), true));
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        WriteAheadLog wal = new WriteAheadLog(service, properties);
+        wal.afterSingletonsInstantiated();
+        WriteBehindIngestionBuffer buffer = new WriteBehindIngestionBuffer(service, properties, wal);
+        buffer.start();
+
+        MetricIngestionRequest oversized = new MetricIngestionRequest(
+                "x".repeat(200), MetricType.TEMPERATURE, new BigDecimal("1.0"), Instant.now());
+        assertThatThrownBy(() -> buffer.submitAll(List.of(READING, oversized)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(buffer.stats().queueDepth()).isZero();
+        assertThat(buffer.stats().rejected()).isEqualTo(2);
+
+        // both slots are still free
+        buffer.submitAll(List.of(READING, READING));
+        verify(service, timeout(2_000)).ingestAll(List.of(READING, READING));
+        buffer.stop();
+        wal.close();
+    }
+
+    @Test
+    void fullBufferRejectsWithRetryAfter() throws Exception {
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(service).ingestAll(anyList());
+
+        WriteBehindIngestionBuffer buffer = new WriteBehindIngestionBuffer(service, properties(2), (WriteAheadLog) null);
+        buffer.start();
+        buffer.submit(READING);
+        buffer.submit(READING);
+
+        assertThatThrownBy(() -> buffer.submit(READING))
+                .isInstanceOf(IngestionRejectedException.class)
+                .extracting(ex -> ((IngestionRejectedException) ex).getRetryAfter())
+                .isEqualTo(Duration.ofSeconds(2));
+        assertThat(buffer.stats().rejected()).isEqualTo(1);
+
+        release.countDown();
+        buffer.stop();
+        assertThat(buffer.stats().persisted()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.model.MetricRecord;
+import com.example.weather.api.repository.MetricAggregate;
+import com.example.weather.api.repository.MetricRecordRepository;
+import com.example.weather.api.repository.SensorRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the columnar engine, without a database.
+ */
+class ColumnarMetricStorageEngineTest {
+
+    private static final Instant BASE = Instant.now().minus(2, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+
+    @Test
+    void parallelAggregationMatchesSequential() throws Exception {
+        ParallelAggregator aggregator = new ParallelAggregator(new ParallelQueryProperties(true, 1, 4, 7));
+        try {
+            ColumnarMetricStorageEngine sequential = engine(null);
+            ColumnarMetricStorageEngine parallel = engine(aggregator);
+
+            List<MetricRecord> records = new ArrayList<>();
+            for (int sensor = 0; sensor < 5; sensor++) {
+                for (int i = 0; i < 100; i++) {
+                    BigDecimal value = BigDecimal.valueOf((sensor + 1) * 1_000L - i * 37L, 2);
+                    records.add(new MetricRecord(sensor, "sensor-" + sensor, MetricType.TEMPERATURE, value, BASE.plusSeconds(i)));
+                    records.add(new MetricRecord(sensor, "sensor-" + sensor, MetricType.HUMIDITY, value.negate(), BASE.plusSeconds(i)));
+                }
+            }
+            sequential.onIngested(records);
+            parallel.onIngested(records);
+
+            Instant from = BASE.plusSeconds(3);
+            Instant to = BASE.plusSeconds(91);
+            List<MetricAggregate> expected = sequential.aggregate(null, null, from, to, false);
+
+            assertThat(expected).hasSize(10);
+            assertThat(expected.get(0).count()).isEqualTo(89);
+            assertThat(parallel.aggregate(null, null, from, to, false)).isEqualTo(expected);
+        } finally {
+            aggregator.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ColumnarMetricStorageEngine engine(ParallelAggregator aggregator) {
+        ObjectProvider<ParallelAggregator> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(aggregator);
+        SensorRegistry sensors = mock(SensorRegistry.class);
+        when(sensors.idOf(anyInt())).thenAnswer(invocation -> "sensor-" + invocation.getArgument(0));
+        ColumnarMetricStorageEngine engine = new ColumnarMetricStorageEngine(
+                mock(MetricRecordRepository.class),
+                sensors,
+                mock(PlatformTransactionManager.class),
+                new ColumnarProperties(Duration.ofDays(35), 16),
+                provider,
+                mock(ObjectProvider.class));
+        engine.afterSingletonsInstantiated();
+        return engine;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.aggregation.Distribution;
+import com.example.weather.api.aggregation.ScaledAccumulator;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for the chunked primitive-array series.
+ */
+class ColumnarSeriesTest {
+
+    private static final long NO_EVICTION = Long.MIN_VALUE;
+
+    @Test
+    void rangeAggregateIsInclusiveOnBothEnds() {
+        ColumnarSeries series = new ColumnarSeries(4);
+        for (long t = 1; t <= 10; t++) {
+            series.append(t, t * 10_000, NO_EVICTION); // values 1.0000 .. 10.0000
+        }
+
+        ScaledAccumulator acc = new ScaledAccumulator();
+        long newest = series.aggregate(3, 7, acc, null);
+
+        assertThat(newest).isEqualTo(7);
+        assertThat(acc.count()).isEqualTo(5);
+        assertThat(acc.sum()).isEqualByComparingTo("25");
+        assertThat(acc.min()).isEqualByComparingTo("3");
+        assertThat(acc.max()).isEqualByComparingTo("7");
+    }
+
+    @Test
+    void outOfOrderReadingsSplitFullChunksAndStaySorted() {
+        ColumnarSeries series = new ColumnarSeries(2);
+        series.append(10, 1, NO_EVICTION);
+        series.append(20, 2, NO_EVICTION);
+        series.append(30, 3, NO_EVICTION);
+        series.append(15, 4, NO_EVICTION); // goes into the full first chunk
+        series.append(5, 5, NO_EVICTION);
+
+        ScaledAccumulator acc = new ScaledAccumulator();
+        assertThat(series.aggregate(12, 25, acc, null)).isEqualTo(20);
+        assertThat(acc.count()).isEqualTo(2);
+        assertThat(acc.sum()).isEqualByComparingTo("0.0006");
+
+        ScaledAccumulator all = new ScaledAccumulator();
+        series.aggregate(Long.MIN_VALUE, Long.MAX_VALUE, all, null);
+        assertThat(all.count()).isEqualTo(5);
+    }
+
+    @Test
+    void latestGroupKeepsAllReadingsOfTheNewestTimestamp() {
+        ColumnarSeries series = new ColumnarSeries(4);
+        series.append(100, 10_000, NO_EVICTION);
+        series.append(200, 20_000, NO_EVICTION);
+        series.append(200, 40_000, NO_EVICTION);
+        series.append(150, 90_000, NO_EVICTION); // older, ignored for latest
+
+        ScaledAccumulator acc = new ScaledAccumulator();
+        assertThat(series.latest(acc, null)).isEqualTo(200);
+        assertThat(acc.count()).isEqualTo(2);
+        assertThat(acc.sum()).isEqualByComparingTo("6");
+    }
+
+    @Test
+    void distributionSeesExactlyTheReadingsAggregated() {
+        ColumnarSeries series = new ColumnarSeries(4);
+        for (long t = 1; t <= 10; t++) {
+            series.append(t, t * 10_000, NO_EVICTION);
+        }
+
+        Distribution distribution = new Distribution();
+        series.aggregate(1, 5, new ScaledAccumulator(), distribution);
+        assertThat(distribution.sketch().count()).isEqualTo(5);
+        assertThat(distribution.standardDeviation()).isCloseTo(Math.sqrt(2), within(1e-9));
+
+        Distribution latest = new Distribution();
+        series.latest(new ScaledAccumulator(), latest);
+        assertThat(latest.sketch().count()).isEqualTo(1);
+        assertThat(latest.standardDeviation()).isZero();
+    }
+
+    @Test
+    void countMatchesTheReadingsAggregated() {
+        ColumnarSeries series = new ColumnarSeries(4);
+        for (long t = 1; t <= 10; t++) {
+            series.append(t * 10, t, NO_EVICTION);
+        }
+
+        assertThat(series.count(25, 75)).isEqualTo(5);
+        assertThat(series.count(30, 30)).isEqualTo(1);
+        assertThat(series.count(31, 39)).isZero();
+        assertThat(series.count(Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(10);
+    }
+
+    @Test
+    void evictionDropsOlderReadingsButKeepsTheLatestGroup() {
+        ColumnarSeries series = new ColumnarSeries(4);
+        for (long t = 1; t <= 10; t++) {
+            series.append(t * 10, t, NO_EVICTION);
+        }
+
+        series.evictBefore(55);
+        assertThat(series.count(Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(5);
+        assertThat(series.count(Long.MIN_VALUE, 55)).isZero();
+
+        series.evictBefore(Long.MAX_VALUE);
+        assertThat(series.count(Long.MIN_VALUE, Long.MAX_VALUE)).isZero();
+        ScaledAccumulator acc = new ScaledAccumulator();
+        assertThat(series.latest(acc, null)).isEqualTo(100);
+        assertThat(acc.count()).isEqualTo(1);
+
+        series.append(110, 11, NO_EVICTION);
+        assertThat(series.count(Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(1);
+    }
+
+    @Test
+    void sumSpillsIntoBigIntegerOnOverflow() {
+        ScaledAccumulator acc = new ScaledAccumulator();
+        acc.add(Long.MAX_VALUE);
+        acc.add(Long.MAX_VALUE);
+
+        assertThat(acc.sum().unscaledValue())
+                .isEqualTo(java.math.BigInteger.valueOf(Long.MAX_VALUE).shiftLeft(1));
+    }
+}
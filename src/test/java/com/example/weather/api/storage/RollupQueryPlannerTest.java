@@ -0,0 +1,46 @@
+package com.example.weather.api.storage;
+
+import com.example.weather.api.enums.RollupBucket;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for splitting a window into rollup buckets and raw edges.
+ */
+class RollupQueryPlannerTest {
+
+    @Test
+    void coversWindowWithCoarsestBucketsAndRawEdges() {
+        Instant from = Instant.parse("2025-11-10T22:58:30Z");
+        Instant to = Instant.parse("2025-11-13T01:02:15Z");
+
+        List<RollupQueryPlanner.Step> steps = RollupQueryPlanner.plan(from, to);
+
+        assertThat(steps).containsExactly(
+                step(null, "2025-11-10T22:58:30Z", "2025-11-10T22:59:00Z"),
+                step(RollupBucket.MINUTE, "2025-11-10T22:59:00Z", "2025-11-10T23:00:00Z"),
+                step(RollupBucket.HOUR, "2025-11-10T23:00:00Z", "2025-11-11T00:00:00Z"),
+                step(RollupBucket.DAY, "2025-11-11T00:00:00Z", "2025-11-13T00:00:00Z"),
+                step(RollupBucket.HOUR, "2025-11-13T00:00:00Z", "2025-11-13T01:00:00Z"),
+                step(RollupBucket.MINUTE, "2025-11-13T01:00:00Z", "2025-11-13T01:02:00Z"),
+                step(null, "2025-11-13T01:02:00Z", "2025-11-13T01:02:15.000001Z"));
+    }
+
+    @Test
+    void alignedWindowNeedsNoRawReadings() {
+        List<RollupQueryPlanner.Step> steps = RollupQueryPlanner.plan(
+                Instant.parse("2025-11-01T00:00:00Z"),
+                Instant.parse("2025-11-02T23:59:59.999999Z"));
+
+        assertThat(steps).containsExactly(
+                step(RollupBucket.DAY, "2025-11-01T00:00:00Z", "2025-11-03T00:00:00Z"));
+    }
+
+    private static RollupQueryPlanner.Step step(RollupBucket bucket, String start, String end) {
+        return new RollupQueryPlanner.Step(bucket, Instant.parse(start), Instant.parse(end));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.weather.api.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the incrementally maintained trailing windows.
+ */
+class SlidingWindowSeriesTest {
+
+    private static final int SHORT = 0;
+    private static final int LONG = 1;
+
+    private final SlidingWindowSeries series = new SlidingWindowSeries(new long[] {10, 100});
+
+    @Test
+    void windowsExpireReadingsAndKeepMinAndMax() {
+        series.add(100, 50_000, 100);
+        series.add(105, 10_000, 105);
+        series.add(112, 30_000, 112);
+
+        SlidingWindowSeries.WindowAggregate acc = new SlidingWindowSeries.WindowAggregate();
+        assertThat(series.aggregate(SHORT, 115, acc)).isEqualTo(112);
+        // 100 is older than 115 - 10; 105 is exactly on the inclusive lower bound
+        assertThat(acc.count).isEqualTo(2);
+        assertThat(acc.sum).isEqualByComparingTo("4");
+        assertThat(acc.min).isEqualTo(10_000);
+        assertThat(acc.max).isEqualTo(30_000);
+
+        assertThat(series.aggregate(SHORT, 120, acc)).isEqualTo(112);
+        assertThat(acc.count).isEqualTo(1);
+        assertThat(acc.min).isEqualTo(30_000);
+
+        assertThat(series.aggregate(LONG, 120, acc)).isEqualTo(112);
+        assertThat(acc.count).isEqualTo(3);
+        assertThat(acc.max).isEqualTo(50_000);
+
+        assertThat(series.aggregate(SHORT, 200, acc)).isEqualTo(Long.MIN_VALUE);
+    }
+
+    @Test
+    void lateReadingsAreInsertedInTimeOrder() {
+        series.add(100, 10_000, 100);
+        series.add(110, 20_000, 110);
+        series.add(95, 90_000, 110);  // late, only in the long window
+        series.add(105, 5_000, 110);  // late, in both
+
+        SlidingWindowSeries.WindowAggregate acc = new SlidingWindowSeries.WindowAggregate();
+        assertThat(series.aggregate(SHORT, 110, acc)).isEqualTo(110);
+        assertThat(acc.count).isEqualTo(3);
+        assertThat(acc.min).isEqualTo(5_000);
+        assertThat(acc.max).isEqualTo(20_000);
+
+        assertThat(series.aggregate(LONG, 110, acc)).isEqualTo(110);
+        assertThat(acc.count).isEqualTo(4);
+        assertThat(acc.max).isEqualTo(90_000);
+    }
+
+    @Test
+    void sumsBeyondALongStayExact() {
+        series.add(100, Long.MAX_VALUE / 2, 100);
+        series.add(101, Long.MAX_VALUE / 2, 101);
+        series.add(102, Long.MAX_VALUE / 2, 102);
+
+        SlidingWindowSeries.WindowAggregate acc = new SlidingWindowSeries.WindowAggregate();
+        series.aggregate(LONG, 102, acc);
+        assertThat(acc.sum.unscaledValue())
+                .isEqualTo(BigInteger.valueOf(Long.MAX_VALUE / 2).multiply(BigInteger.valueOf(3)));
+
+        // back within a long once the older readings expire
+        series.aggregate(SHORT, 112, acc);
+        assertThat(acc.count).isEqualTo(1);
+        assertThat(acc.sum.unscaledValue().longValueExact()).isEqualTo(Long.MAX_VALUE / 2);
+    }
+
+    @Test
+    void purgeKeepsTheNewestReading() {
+        series.add(100, 10_000, 100);
+        series.add(150, 20_000, 150);
+
+        series.purge(200);
+
+        SlidingWindowSeries.WindowAggregate acc = new SlidingWindowSeries.WindowAggregate();
+        assertThat(series.aggregate(LONG, 150, acc)).isEqualTo(150);
+        assertThat(acc.count).isEqualTo(1);
+        assertThat(acc.max).isEqualTo(20_000);
+    }
+}
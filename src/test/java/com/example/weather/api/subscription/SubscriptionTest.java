@@ -0,0 +1,66 @@
+package com.example.weather.api.subscription;
+
+import com.example.weather.api.dto.SubscriptionRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.enums.StatisticType;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for conflating and bounding the pending changes of a subscriber.
+ */
+class SubscriptionTest {
+
+    private final Subscription subscription = new Subscription(1,
+            new SubscriptionRequest(List.of("s1", "s2"), List.of(MetricType.TEMPERATURE), StatisticType.AVG, null),
+            new SseEmitter(), 2);
+
+    @Test
+    void startsWithAFullRefreshThenConflatesRepeatedChanges() {
+        assertThat(subscription.startDraining()).isTrue();
+        assertThat(subscription.take().full()).isTrue();
+
+        assertThat(subscription.changed("s1", MetricType.TEMPERATURE)).isTrue();
+        assertThat(subscription.changed("s1", MetricType.TEMPERATURE)).isFalse();
+        assertThat(subscription.changed("s2", MetricType.TEMPERATURE)).isTrue();
+
+        Subscription.Update update = subscription.take();
+        assertThat(update.groups()).containsExactly(
+                new Subscription.Group("s1", MetricType.TEMPERATURE),
+                new Subscription.Group("s2", MetricType.TEMPERATURE));
+        assertThat(update.overflows()).isZero();
+        assertThat(subscription.take()).isNull();
+    }
+
+    @Test
+    void overflowingTheBufferCollapsesIntoAFullRefresh() {
+        subscription.startDraining();
+        subscription.take();
+
+        subscription.changed("s1", MetricType.TEMPERATURE);
+        subscription.changed("s2", MetricType.TEMPERATURE);
+        assertThat(subscription.changed("s3", MetricType.TEMPERATURE)).isTrue();
+        assertThat(subscription.changed("s4", MetricType.TEMPERATURE)).isFalse();
+
+        Subscription.Update update = subscription.take();
+        assertThat(update.full()).isTrue();
+        assertThat(update.overflows()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyOneSenderDrainsAtATime() {
+        assertThat(subscription.startDraining()).isTrue();
+        assertThat(subscription.startDraining()).isFalse();
+
+        subscription.take();
+        assertThat(subscription.take()).isNull();
+        assertThat(subscription.startDraining()).isFalse();
+
+        subscription.changed("s1", MetricType.TEMPERATURE);
+        assertThat(subscription.startDraining()).isTrue();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.weather.api.wal;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.enums.MetricType;
+import com.example.weather.api.service.IngestionProperties;
+import com.example.weather.api.service.MetricIngestionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for segment handling and crash replay of the write-ahead log.
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private IngestionProperties properties(DataSize segmentSize) {
+        return new IngestionProperties(
+                new IngestionProperties.Batch(10_000),
+                new IngestionProperties.Async(true, 100, 1, 10,
+                        Duration.ofMillis(10), Duration.ofSeconds(1), Duration.ofSeconds(5)),
+                new IngestionProperties.Wal(true, directory.toString(), segmentSize, true));
+    }
+
+    private static MetricIngestionRequest reading(String sensorId, String value) {
+        return new MetricIngestionRequest(sensorId, MetricType.WIND_SPEED,
+                new BigDecimal(value), Instant.parse("2025-11-10T10:15:30.123456Z"));
+    }
+
+    @Test
+    void unacknowledgedReadingsAreReplayedOnStartup() {
+        List<MetricIngestionRequest> readings = List.of(
+                reading("sensor-1", "12.5000"),
+                reading("sensor-ü", "-0.0001"),
+                reading("sensor-3", "99999999999999.9999"));
+
+        WriteAheadLog crashed = new WriteAheadLog(mock(MetricIngestionService.class), properties(DataSize.ofKilobytes(64)));
+        crashed.afterSingletonsInstantiated();
+        crashed.appendAll(readings);
+        // no acknowledge, no close: simulates a crash
+
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        WriteAheadLog restarted = new WriteAheadLog(service, properties(DataSize.ofKilobytes(64)));
+        restarted.afterSingletonsInstantiated();
+
+        verify(service).ingestAll(readings);
+    }
+
+    @Test
+    void acknowledgedSegmentsAreDeleted() throws Exception {
+        MetricIngestionService service = mock(MetricIngestionService.class);
+        // small segments so that a handful of readings spans several files
+        WriteAheadLog wal = new WriteAheadLog(service, properties(DataSize.ofBytes(128)));
+        wal.afterSingletonsInstantiated();
+
+        long[] segmentIds = wal.appendAll(List.of(
+                reading("sensor-1", "1"), reading("sensor-1", "2"),
+                reading("sensor-1", "3"), reading("sensor-1", "4")));
+        assertThat(segmentIds[0]).isLessThan(segmentIds[3]);
+
+        wal.acknowledge(segmentIds);
+        wal.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+
+        WriteAheadLog restarted = new WriteAheadLog(service, properties(DataSize.ofBytes(128)));
+        restarted.afterSingletonsInstantiated();
+        verify(service, never()).ingestAll(anyList());
+    }
+}
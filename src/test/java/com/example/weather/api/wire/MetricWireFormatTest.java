@@ -0,0 +1,90 @@
+package com.example.weather.api.wire;
+
+import com.example.weather.api.dto.MetricIngestionRequest;
+import com.example.weather.api.enums.MetricType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Readings must survive a write / read round trip unchanged.
+ */
+class MetricWireFormatTest {
+
+    private static final Instant BASE = Instant.parse("2025-10-01T12:00:00.123456Z");
+
+    @Test
+    void readingsRoundTrip() throws IOException {
+        List<MetricIngestionRequest> readings = List.of(
+                new MetricIngestionRequest("sensor-1", MetricType.TEMPERATURE, new BigDecimal("21.5000"), BASE),
+                new MetricIngestionRequest("sensor-2", MetricType.HUMIDITY, new BigDecimal("-0.0001"), BASE.minusSeconds(90)),
+                new MetricIngestionRequest("sensor-1", MetricType.WIND_SPEED,
+                        new BigDecimal("99999999999999.9999"), BASE.plusSeconds(3600)),
+                new MetricIngestionRequest("sensor-ü", MetricType.TEMPERATURE, new BigDecimal("0.0000"), Instant.EPOCH));
+
+        byte[] body = encode(readings);
+
+        assertThat(decode(body)).isEqualTo(readings);
+    }
+
+    @Test
+    void repeatedSensorIdsAreSentOnce() throws IOException {
+        List<MetricIngestionRequest> readings = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            readings.add(new MetricIngestionRequest("a-rather-long-sensor-identifier", MetricType.TEMPERATURE,
+                    new BigDecimal("20.0000"), BASE.plusSeconds(i)));
+        }
+
+        byte[] body = encode(readings);
+
+        // the id alone is 31 bytes; a reading referencing it takes 8
+        assertThat(body.length).isLessThan(31 + 100 * 10);
+        assertThat(decode(body)).isEqualTo(readings);
+    }
+
+    @Test
+    void truncatedBodyIsRejected() throws IOException {
+        byte[] body = encode(List.of(
+                new MetricIngestionRequest("sensor-1", MetricType.TEMPERATURE, BigDecimal.ONE.setScale(4), BASE)));
+
+        assertThatThrownBy(() -> decode(Arrays.copyOf(body, body.length - 1)))
+                .isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void unknownSensorReferenceIsRejected() {
+        byte[] body = {1, 5, 0, 0, 0};
+
+        assertThatThrownBy(() -> decode(body)).isInstanceOf(MalformedWireException.class);
+    }
+
+    private static byte[] encode(List<MetricIngestionRequest> readings) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MetricWireWriter writer = new MetricWireWriter(out);
+        for (MetricIngestionRequest reading : readings) {
+            writer.write(reading);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<MetricIngestionRequest> decode(byte[] body) throws IOException {
+        MetricWireReader reader = new MetricWireReader(new ByteArrayInputStream(body));
+        List<MetricIngestionRequest> readings = new ArrayList<>();
+        MetricIngestionRequest reading;
+        while ((reading = reader.next()) != null) {
+            readings.add(reading);
+        }
+        return readings;
+    }
+}